@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bench.org.pgptool.gui.cli;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pgptool.gui.app.EntryPoint;
+import org.pgptool.gui.cli.CliArgs;
+import org.pgptool.gui.config.impl.ConfigRepositoryImpl;
+import org.pgptool.gui.encryption.implpgp.KeyFilesOperationsPgpImpl;
+import org.pgptool.gui.encryption.implpgp.PgpKeysRing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.eventbus.EventBus;
+
+import integr.org.pgptool.gui.TestTools;
+
+/**
+ * Wall time of headless invocation, i.e. <code>pgptool --encrypt file</code>,
+ * including start of the JVM. Each invocation is a separate process, so it
+ * measures cold start which is what user experiences when application is used
+ * from scripts. Process uses temp folder as user home, so that user's keys and
+ * configs are not touched
+ * 
+ * @author Sergey Karpushin
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HeadlessStartupBenchmark {
+	@Param({ "1024" })
+	public int payloadSize;
+
+	private File userHome;
+	private List<String> command;
+	private File output;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		userHome = Files.createTempDirectory("pgptool-bench-home").toFile();
+		String configsBasePath = userHome.getAbsolutePath() + File.separator + ".pgptool";
+		ConfigRepositoryImpl configRepository = new ConfigRepositoryImpl();
+		configRepository.setConfigsBasePathResolver(() -> configsBasePath);
+		configRepository.setEventBus(new EventBus());
+		configRepository.afterPropertiesSet();
+		PgpKeysRing keys = new PgpKeysRing();
+		keys.add(new KeyFilesOperationsPgpImpl().readKeyFromFile(TestTools.getFileNameForResource("keys/Alice.asc")));
+		configRepository.persist(keys);
+
+		File source = new File(userHome, "payload.txt");
+		StringBuilder payload = new StringBuilder(payloadSize);
+		while (payload.length() < payloadSize) {
+			payload.append((char) ('a' + payload.length() % 26));
+		}
+		FileUtils.write(source, payload, StandardCharsets.UTF_8);
+
+		output = new File(userHome, "output.txt");
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		command = new ArrayList<>(Arrays.asList(java, "-Duser.home=" + userHome.getAbsolutePath(), "-cp",
+				System.getProperty("java.class.path"), EntryPoint.class.getName(), CliArgs.ENCRYPT,
+				source.getAbsolutePath(), CliArgs.RECIPIENTS, "Alice", CliArgs.OVERWRITE));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(userHome);
+	}
+
+	@Benchmark
+	public void encrypt() throws Exception {
+		ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output);
+		// NOTE: On Windows it takes precedence over user.home
+		processBuilder.environment().remove("USERPROFILE");
+		int exitCode = processBuilder.start().waitFor();
+		Preconditions.checkState(exitCode == 0, "Headless encryption failed with exit code %s, see %s", exitCode,
+				output);
+	}
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bench.org.pgptool.gui.config;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pgptool.gui.config.impl.ConfigRepositoryImpl;
+import org.pgptool.gui.configpairs.impl.ConfigPairsEnvelop;
+
+/**
+ * Read and write time of {@link ConfigPairsEnvelop} persisted by
+ * {@link ConfigRepositoryImpl}. LEGACY format is plain java serialization which
+ * was used before, it's measured for comparison
+ * 
+ * @author Sergey Karpushin
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConfigRepositoryBenchmark {
+	public enum Format {
+		LEGACY, CURRENT
+	}
+
+	@Param({ "1000", "100000" })
+	public int entriesCount;
+	@Param
+	public Format format;
+
+	private File tempDir;
+	private String fileName;
+	private ConfigPairsEnvelop configPairs;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("pgptool-bench").toFile();
+		fileName = new File(tempDir, "ConfigPairsEnvelop").getAbsolutePath();
+		configPairs = new ConfigPairsEnvelop();
+		for (int i = 0; i < entriesCount; i++) {
+			// NOTE: Mix of value types similar to what application stores
+			switch (i % 4) {
+			case 0:
+				configPairs.put("browse.folder." + i, "/home/user/Documents/folder" + i);
+				break;
+			case 1:
+				configPairs.put("hints.suppress." + i, Boolean.TRUE);
+				break;
+			case 2:
+				configPairs.put("timestamp." + i, System.currentTimeMillis() + i);
+				break;
+			default:
+				configPairs.put("window.size." + i, new Dimension(i % 1920, i % 1080));
+			}
+		}
+		write();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tempDir);
+	}
+
+	/**
+	 * NOTE: Current format is also fsync'ed and atomically moved in place, legacy
+	 * format is written the way it used to be, without that
+	 */
+	@Benchmark
+	public void write() throws Exception {
+		if (format == Format.CURRENT) {
+			ConfigRepositoryImpl.writeObject(configPairs, fileName);
+			return;
+		}
+		try (FileOutputStream fos = new FileOutputStream(fileName);
+				ObjectOutputStream oos = new ObjectOutputStream(fos)) {
+			oos.writeObject(configPairs);
+		}
+	}
+
+	@Benchmark
+	public ConfigPairsEnvelop read() {
+		// NOTE: Legacy files are recognized and read by same method
+		return ConfigRepositoryImpl.readObject(fileName, ConfigPairsEnvelop.class);
+	}
+}
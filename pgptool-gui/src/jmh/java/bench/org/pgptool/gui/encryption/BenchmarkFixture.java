@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bench.org.pgptool.gui.encryption;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.encryption.api.KeyFilesOperations;
+import org.pgptool.gui.encryption.api.KeyGeneratorService;
+import org.pgptool.gui.encryption.api.dto.CreateKeyParams;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.tools.TextFile;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import com.google.common.base.Preconditions;
+
+import integr.org.pgptool.gui.TestTools;
+
+/**
+ * Shared set up for benchmarks. It's using same spring context and keys as
+ * integration tests do, so what we measure is exactly what we test
+ * 
+ * @author Sergey Karpushin
+ */
+public class BenchmarkFixture implements AutoCloseable {
+	public static final String PASSWORD = "pass";
+
+	/**
+	 * Keys which are used as additional recipients. Only public part of these keys
+	 * are needed
+	 */
+	private static final String[] OTHER_RECIPIENTS = new String[] { "Bob.asc", "John.asc", "Paul.asc" };
+
+	public enum KeyType {
+		/**
+		 * DSA 1024 + ElGamal 1024 key imported from test resources
+		 */
+		IMPORTED,
+		/**
+		 * DSA 2048 + ElGamal key generated by {@link KeyGeneratorService}
+		 */
+		GENERATED
+	}
+
+	public enum Compressibility {
+		/**
+		 * Random bytes, compression won't help
+		 */
+		RANDOM,
+		/**
+		 * Human readable text, compresses well
+		 */
+		TEXT
+	}
+
+	private ClassPathXmlApplicationContext context;
+	private String tempDirPath;
+	private EncryptionService encryptionService;
+	private Key decryptionKey;
+	private List<Key> recipients;
+
+	public BenchmarkFixture(KeyType keyType, int recipientsCount) throws Exception {
+		Preconditions.checkArgument(recipientsCount > 0 && recipientsCount <= OTHER_RECIPIENTS.length + 1,
+				"recipientsCount must be in range [1.." + (OTHER_RECIPIENTS.length + 1) + "]");
+
+		context = new ClassPathXmlApplicationContext("integr-test-context.xml");
+		tempDirPath = context.getBean("tempDirPath", String.class);
+		encryptionService = context.getBean(EncryptionService.class);
+
+		decryptionKey = keyType == KeyType.GENERATED ? generateKey() : readKey("Alice.asc");
+		recipients = new ArrayList<>(recipientsCount);
+		recipients.add(decryptionKey);
+		for (int i = 0; i < recipientsCount - 1; i++) {
+			recipients.add(readKey(OTHER_RECIPIENTS[i]));
+		}
+	}
+
+	private Key readKey(String keyFileName) throws Exception {
+		KeyFilesOperations keyFilesOperations = context.getBean(KeyFilesOperations.class);
+		return keyFilesOperations.readKeyFromFile(TestTools.getFileNameForResource("keys/" + keyFileName));
+	}
+
+	private Key generateKey() throws Exception {
+		CreateKeyParams params = new CreateKeyParams();
+		params.setFullName("Benchmark");
+		params.setEmail("benchmark@email.com");
+		params.setPassphrase(PASSWORD);
+		params.setPassphraseAgain(PASSWORD);
+		return context.getBean(KeyGeneratorService.class).createNewKey(params);
+	}
+
+	/**
+	 * Create file of given size in the temp folder
+	 */
+	public String createPayloadFile(long size, Compressibility compressibility) throws IOException {
+		File ret = new File(tempDirPath, "payload-" + size + "-" + compressibility + ".bin");
+		byte[] pattern = buildPattern(compressibility);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(ret))) {
+			long remaining = size;
+			while (remaining > 0) {
+				int len = (int) Math.min(pattern.length, remaining);
+				os.write(pattern, 0, len);
+				remaining -= len;
+			}
+		}
+		return ret.getAbsolutePath();
+	}
+
+	/**
+	 * Create text of given length. For {@link Compressibility#RANDOM} it's random
+	 * latin letters and digits
+	 */
+	public String createPayloadText(int length, Compressibility compressibility) throws Exception {
+		StringBuilder ret = new StringBuilder(length);
+		if (compressibility == Compressibility.TEXT) {
+			String text = TextFile.read(TestTools.getFileNameForResource("testsubject.txt"));
+			while (ret.length() < length) {
+				ret.append(text, 0, Math.min(text.length(), length - ret.length()));
+			}
+		} else {
+			String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+			Random random = new Random(length);
+			for (int i = 0; i < length; i++) {
+				ret.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+		}
+		return ret.toString();
+	}
+
+	private byte[] buildPattern(Compressibility compressibility) throws IOException {
+		if (compressibility == Compressibility.TEXT) {
+			try {
+				return TextFile.read(TestTools.getFileNameForResource("testsubject.txt"))
+						.getBytes(StandardCharsets.UTF_8);
+			} catch (Exception e) {
+				throw new IOException("Failed to read text pattern", e);
+			}
+		}
+
+		// NOTE: 1MB of random data is enough to defeat any compression window
+		byte[] ret = new byte[1024 * 1024];
+		new Random(ret.length).nextBytes(ret);
+		return ret;
+	}
+
+	public String buildTargetFileName(String name) {
+		return tempDirPath + File.separator + name;
+	}
+
+	public PasswordDeterminedForKey buildPasswordDeterminedForKey(Set<String> decryptionKeys) {
+		String requestedKeyId = decryptionKeys.stream().filter(x -> decryptionKey.getKeyData().isHasAlternativeId(x))
+				.findFirst().orElseThrow(() -> new IllegalStateException("Not encrypted for decryption key"));
+		return new PasswordDeterminedForKey(requestedKeyId, decryptionKey, PASSWORD);
+	}
+
+	public EncryptionService getEncryptionService() {
+		return encryptionService;
+	}
+
+	public List<Key> getRecipients() {
+		return recipients;
+	}
+
+	@Override
+	public void close() throws Exception {
+		context.close();
+		FileUtils.deleteDirectory(new File(tempDirPath));
+	}
+}
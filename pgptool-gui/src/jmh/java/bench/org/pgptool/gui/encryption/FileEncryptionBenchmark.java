@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bench.org.pgptool.gui.encryption;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.encryption.api.OutputStreamSupervisor;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+
+import com.google.common.base.Throwables;
+
+import bench.org.pgptool.gui.encryption.BenchmarkFixture.Compressibility;
+import bench.org.pgptool.gui.encryption.BenchmarkFixture.KeyType;
+
+/**
+ * Benchmarks for {@link EncryptionService#encrypt} and
+ * {@link EncryptionService#decrypt} of files.
+ * 
+ * <p>
+ * Default payload sizes are kept reasonable for a developer machine. Bigger
+ * payloads (up to 4GB) can be requested from command line, i.e.
+ * <code>-Djmh.args="-p payloadSize=4294967296"</code>
+ * 
+ * @author Sergey Karpushin
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileEncryptionBenchmark {
+	@Param({ "1024", "1048576", "67108864" })
+	public long payloadSize;
+	@Param
+	public Compressibility compressibility;
+	@Param({ "1", "4" })
+	public int recipientsCount;
+	@Param
+	public KeyType keyType;
+
+	private BenchmarkFixture fixture;
+	private EncryptionService encryptionService;
+	private String sourceFile;
+	private String encryptedFile;
+	private String encryptionTarget;
+	private String decryptionTarget;
+	private PasswordDeterminedForKey keyAndPassword;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fixture = new BenchmarkFixture(keyType, recipientsCount);
+		encryptionService = fixture.getEncryptionService();
+		sourceFile = fixture.createPayloadFile(payloadSize, compressibility);
+		encryptedFile = fixture.buildTargetFileName("payload.pgp");
+		encryptionTarget = fixture.buildTargetFileName("encrypted.pgp");
+		decryptionTarget = fixture.buildTargetFileName("decrypted.bin");
+
+		encryptionService.encrypt(sourceFile, encryptedFile, fixture.getRecipients(), null, null, null);
+		keyAndPassword = fixture
+				.buildPasswordDeterminedForKey(encryptionService.findKeyIdsForDecryption(encryptedFile));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		fixture.close();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void encrypt(ProcessedBytes processedBytes) throws Exception {
+		encryptionService.encrypt(sourceFile, encryptionTarget, fixture.getRecipients(), null, null, null);
+		processedBytes.add(payloadSize);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void decrypt(ProcessedBytes processedBytes) throws Exception {
+		encryptionService.decrypt(encryptedFile, decryptionTarget, keyAndPassword, null, null, null);
+		processedBytes.add(payloadSize);
+	}
+
+	/**
+	 * Time from the beginning of the operation till first byte is written to
+	 * target. Operation is aborted right after that, so measurement also includes
+	 * cleanup of the aborted operation
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void encryptTimeToFirstByte() throws Exception {
+		try {
+			encryptionService.encrypt(sourceFile, encryptionTarget, fixture.getRecipients(), null, null,
+					FirstByteTrap.SUPERVISOR);
+		} catch (Throwable t) {
+			FirstByteTrap.rethrowIfNotTrapped(t);
+		}
+	}
+
+	/**
+	 * @see #encryptTimeToFirstByte()
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void decryptTimeToFirstByte() throws Exception {
+		try {
+			encryptionService.decrypt(encryptedFile, decryptionTarget, keyAndPassword, null, null,
+					FirstByteTrap.SUPERVISOR);
+		} catch (Throwable t) {
+			FirstByteTrap.rethrowIfNotTrapped(t);
+		}
+	}
+
+	/**
+	 * Output stream which aborts operation once first byte is written to it
+	 */
+	private static class FirstByteTrap extends OutputStream {
+		private static final OutputStreamSupervisor SUPERVISOR = new OutputStreamSupervisor() {
+			@Override
+			public OutputStream get(String fileName) throws FileNotFoundException {
+				return new FirstByteTrap();
+			}
+		};
+
+		@Override
+		public void write(int b) throws IOException {
+			throw new FirstByteWritten();
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len > 0) {
+				throw new FirstByteWritten();
+			}
+		}
+
+		private static void rethrowIfNotTrapped(Throwable t) throws Exception {
+			if (Throwables.getCausalChain(t).stream().noneMatch(x -> x instanceof FirstByteWritten)) {
+				Throwables.throwIfInstanceOf(t, Exception.class);
+				Throwables.throwIfUnchecked(t);
+				throw new RuntimeException(t);
+			}
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class FirstByteWritten extends IOException {
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			// stack trace is not needed, it's just a signal
+			return this;
+		}
+	}
+}
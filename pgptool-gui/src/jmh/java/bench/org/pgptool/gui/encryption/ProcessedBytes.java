@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bench.org.pgptool.gui.encryption;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts bytes processed by benchmark. JMH reports it normalized by time, so
+ * with output time unit set to seconds it's MB/s
+ * 
+ * @author Sergey Karpushin
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ProcessedBytes {
+	private static final double MEGABYTE = 1024 * 1024;
+
+	private long bytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		bytes = 0;
+	}
+
+	void add(long count) {
+		bytes += count;
+	}
+
+	public double megabytes() {
+		return bytes / MEGABYTE;
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bench.org.pgptool.gui.encryption;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+
+import bench.org.pgptool.gui.encryption.BenchmarkFixture.Compressibility;
+import bench.org.pgptool.gui.encryption.BenchmarkFixture.KeyType;
+
+/**
+ * Benchmarks for {@link EncryptionService#encryptText} and
+ * {@link EncryptionService#decryptText}. Text is held in memory, so payload
+ * sizes are smaller than for files
+ * 
+ * @author Sergey Karpushin
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TextEncryptionBenchmark {
+	@Param({ "1024", "65536", "16777216" })
+	public int payloadSize;
+	@Param
+	public Compressibility compressibility;
+	@Param({ "1", "4" })
+	public int recipientsCount;
+	@Param
+	public KeyType keyType;
+
+	private BenchmarkFixture fixture;
+	private EncryptionService encryptionService;
+	private String sourceText;
+	private String encryptedText;
+	private PasswordDeterminedForKey keyAndPassword;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fixture = new BenchmarkFixture(keyType, recipientsCount);
+		encryptionService = fixture.getEncryptionService();
+		sourceText = fixture.createPayloadText(payloadSize, compressibility);
+		encryptedText = encryptionService.encryptText(sourceText, fixture.getRecipients());
+		keyAndPassword = fixture.buildPasswordDeterminedForKey(encryptionService
+				.findKeyIdsForDecryption(new ByteArrayInputStream(encryptedText.getBytes(StandardCharsets.US_ASCII))));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		fixture.close();
+	}
+
+	@Benchmark
+	public String encryptText(ProcessedBytes processedBytes) {
+		String ret = encryptionService.encryptText(sourceText, fixture.getRecipients());
+		processedBytes.add(payloadSize);
+		return ret;
+	}
+
+	@Benchmark
+	public String decryptText(ProcessedBytes processedBytes) throws Exception {
+		String ret = encryptionService.decryptText(encryptedText, keyAndPassword);
+		processedBytes.add(payloadSize);
+		return ret;
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package bench.org.pgptool.gui.filecomparison;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pgptool.gui.filecomparison.ChecksumCalculationTask;
+import org.pgptool.gui.filecomparison.Fingerprint;
+import org.pgptool.gui.filecomparison.MessageDigestFactoryImpl;
+
+/**
+ * Time to calculate {@link Fingerprint} of a large file using
+ * {@link ChecksumCalculationTask} with each of supported algorithms. File is
+ * likely to be in OS cache after first iteration, so this measures digest and
+ * read overhead rather than disk speed.
+ * 
+ * <p>
+ * Bigger files can be requested from command line, i.e.
+ * <code>-Djmh.args="-p fileSize=4294967296"</code>
+ * 
+ * @author Sergey Karpushin
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FingerprintBenchmark {
+	@Param({ "67108864", "536870912" })
+	public long fileSize;
+	@Param({ "SHA-1", "SHA-256", MessageDigestFactoryImpl.CRC32 })
+	public String algorithm;
+
+	private File tempDir;
+	private String fileName;
+	private MessageDigestFactoryImpl messageDigestFactory;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		messageDigestFactory = new MessageDigestFactoryImpl();
+		messageDigestFactory.setAlgorithm(algorithm);
+		messageDigestFactory.afterPropertiesSet();
+
+		tempDir = Files.createTempDirectory("pgptool-bench").toFile();
+		fileName = new File(tempDir, "payload.bin").getAbsolutePath();
+		byte[] buf = new byte[1024 * 1024];
+		new Random(42).nextBytes(buf);
+		try (OutputStream os = new FileOutputStream(fileName)) {
+			for (long written = 0; written < fileSize; written += buf.length) {
+				os.write(buf, 0, (int) Math.min(buf.length, fileSize - written));
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tempDir);
+	}
+
+	@Benchmark
+	public Fingerprint calculate() throws Exception {
+		return new ChecksumCalculationTask(fileName, messageDigestFactory.createNew()).call();
+	}
+}
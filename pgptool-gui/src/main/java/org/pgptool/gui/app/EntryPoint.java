@@ -31,6 +31,8 @@ import javax.swing.JOptionPane;
 import org.apache.log4j.Logger;
 import org.apache.log4j.xml.DOMConfigurator;
 import org.pgptool.gui.autoupdate.impl.NewVersionCheckerGitHubImpl;
+import org.pgptool.gui.cli.CliArgs;
+import org.pgptool.gui.cli.CliEntryPoint;
 import org.pgptool.gui.encryption.api.KeyRingService;
 import org.pgptool.gui.tools.ConsoleExceptionUtils;
 import org.pgptool.gui.tools.osnative.OsNativeApiResolver;
@@ -61,6 +63,12 @@ public class EntryPoint {
 	private static Queue<String[]> postponedArgsFromSecondaryInstances = new ArrayDeque<>();
 
 	public static void main(String[] args) {
+		if (CliArgs.isHeadless(args)) {
+			// NOTE: Headless mode must not touch Swing, splash screen or single
+			// instance lock
+			System.exit(CliEntryPoint.run(args));
+		}
+
 		DOMConfigurator.configure(EntryPoint.class.getClassLoader().getResource("pgptool-gui-log4j.xml"));
 		log.info("EntryPoint first scream");
 
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.bkgoperation;
+
+import java.math.BigInteger;
+
+import org.pgptool.gui.bkgoperation.Progress.Updater;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Combines progress of several operations which are running concurrently into
+ * one {@link Progress}. This way single progress bar can render overall
+ * progress and ETA.
+ * 
+ * Each part (operation) must report through its own handler obtained from
+ * {@link #createPart(long)}. Size of each part must be known upfront and sum of
+ * all parts sizes has to be provided to constructor.
+ * 
+ * All notifications to target {@link ProgressHandler} are serialized, so it
+ * doesn't need to be thread-safe.
+ * 
+ * @author Sergey Karpushin
+ *
+ */
+public class ProgressAggregator {
+	private final Updater updater;
+	private final BigInteger totalSteps;
+	private BigInteger stepsTaken = BigInteger.ZERO;
+	private volatile boolean isCancelationRequested;
+
+	public ProgressAggregator(String operationCode, long totalSteps, ProgressHandler progressHandler) {
+		Preconditions.checkArgument(totalSteps >= 0, "totalSteps must not be negative");
+		this.totalSteps = BigInteger.valueOf(totalSteps);
+		updater = Progress.create(operationCode, progressHandler);
+		updater.updateTotalSteps(this.totalSteps);
+	}
+
+	/**
+	 * @param size
+	 *            amount of steps this part will contribute to overall progress
+	 * @return handler that should be used to report progress of this part
+	 */
+	public Part createPart(long size) {
+		return new Part(BigInteger.valueOf(size));
+	}
+
+	public synchronized void updateStepInfo(String stepCode, Object... stepArgs) {
+		updater.updateStepInfo(stepCode, stepArgs);
+	}
+
+	/**
+	 * Request cancellation of all parts. Each part will get this request next
+	 * time it will report progress
+	 */
+	public void requestCancelation() {
+		isCancelationRequested = true;
+	}
+
+	public boolean isCancelationRequested() {
+		return isCancelationRequested || updater.isCancelationRequested();
+	}
+
+	private synchronized void addStepsTaken(BigInteger delta) {
+		if (delta.signum() <= 0) {
+			return;
+		}
+		stepsTaken = stepsTaken.add(delta).min(totalSteps);
+		updater.updateStepsTaken(stepsTaken);
+	}
+
+	public class Part implements ProgressHandler {
+		private final BigInteger size;
+		private BigInteger reported = BigInteger.ZERO;
+		private boolean finished;
+
+		protected Part(BigInteger size) {
+			this.size = size;
+		}
+
+		@Override
+		public void onProgressUpdated(Progress progress) {
+			if (isCancelationRequested()) {
+				progress.requestCancelation();
+			}
+
+			if (progress.getStepsTaken() == null || progress.getTotalSteps() == null
+					|| progress.getTotalSteps().signum() == 0) {
+				return;
+			}
+
+			// NOTE: Part might report in its own units, so we scale it to the size
+			// declared for this part
+			BigInteger partStepsTaken = progress.getStepsTaken().multiply(size).divide(progress.getTotalSteps());
+			report(partStepsTaken.min(size));
+		}
+
+		/**
+		 * Mark this part as fully completed. Must be called regardless of whether
+		 * operation succeeded, failed or was skipped so that overall progress would
+		 * reach 100% eventually
+		 */
+		public void finish() {
+			report(size);
+			finished = true;
+		}
+
+		private synchronized void report(BigInteger partStepsTaken) {
+			if (finished || partStepsTaken.compareTo(reported) <= 0) {
+				return;
+			}
+			BigInteger delta = partStepsTaken.subtract(reported);
+			reported = partStepsTaken;
+			addStepsTaken(delta);
+		}
+	}
+}
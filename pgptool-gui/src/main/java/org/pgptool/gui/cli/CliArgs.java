@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.cli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.pgptool.gui.encryption.api.dto.CompressionAlgorithm;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
+import org.pgptool.gui.encryption.implpgp.CompressionPolicyAdaptiveImpl;
+import org.springframework.util.StringUtils;
+
+/**
+ * Parsed command line arguments for headless mode.
+ * 
+ * <pre>
+ * --encrypt &lt;file or glob&gt;... --recipients &lt;key id or user&gt;[,...] [--out &lt;file or folder&gt;]
+ *           [--cipher &lt;cipher&gt;] [--compression &lt;auto|none|zip|zlib|bzip2&gt;] [--overwrite]
+ * --decrypt &lt;file or glob&gt;... [--out &lt;file or folder&gt;] [--password-env &lt;VAR&gt;] [--overwrite]
+ * </pre>
+ * 
+ * Existing files are not replaced unless --overwrite is specified
+ * 
+ * @author Sergey Karpushin
+ */
+public class CliArgs {
+	public static final String ENCRYPT = "--encrypt";
+	public static final String DECRYPT = "--decrypt";
+	public static final String RECIPIENTS = "--recipients";
+	public static final String OUT = "--out";
+	public static final String PASSWORD_ENV = "--password-env";
+	public static final String CIPHER = "--cipher";
+	public static final String COMPRESSION = "--compression";
+	public static final String OVERWRITE = "--overwrite";
+
+	private boolean encrypt;
+	private boolean decrypt;
+	private List<String> sources = new ArrayList<>();
+	private List<String> recipients = new ArrayList<>();
+	private String out;
+	private String passwordEnv;
+	private SymmetricCipher cipher;
+	private String compression;
+	private boolean overwrite;
+
+	/**
+	 * @return true if arguments request headless operation, so that UI must not
+	 *         be started at all
+	 */
+	public static boolean isHeadless(String[] args) {
+		if (args == null) {
+			return false;
+		}
+		return Arrays.asList(args).contains(ENCRYPT) || Arrays.asList(args).contains(DECRYPT);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             in case arguments are not consistent. Message is suitable for
+	 *             the user
+	 */
+	public static CliArgs parse(String[] args) {
+		CliArgs ret = new CliArgs();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (ENCRYPT.equals(arg) || DECRYPT.equals(arg)) {
+				ret.encrypt |= ENCRYPT.equals(arg);
+				ret.decrypt |= DECRYPT.equals(arg);
+				while (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+					ret.sources.add(args[++i]);
+				}
+			} else if (RECIPIENTS.equals(arg)) {
+				String value = requireValue(args, ++i, arg);
+				for (String recipient : value.split(",")) {
+					if (StringUtils.hasText(recipient)) {
+						ret.recipients.add(recipient.trim());
+					}
+				}
+			} else if (OUT.equals(arg)) {
+				ret.out = requireValue(args, ++i, arg);
+			} else if (PASSWORD_ENV.equals(arg)) {
+				ret.passwordEnv = requireValue(args, ++i, arg);
+			} else if (CIPHER.equals(arg)) {
+				ret.cipher = parseCipher(requireValue(args, ++i, arg));
+			} else if (COMPRESSION.equals(arg)) {
+				ret.compression = parseCompression(requireValue(args, ++i, arg));
+			} else if (OVERWRITE.equals(arg)) {
+				ret.overwrite = true;
+			} else {
+				throw new IllegalArgumentException("Unexpected argument: " + arg);
+			}
+		}
+
+		if (ret.encrypt == ret.decrypt) {
+			throw new IllegalArgumentException("Exactly one of " + ENCRYPT + " or " + DECRYPT + " must be specified");
+		}
+		if (ret.sources.isEmpty()) {
+			throw new IllegalArgumentException("At least one source file or glob must be specified");
+		}
+		if (ret.encrypt && ret.recipients.isEmpty()) {
+			throw new IllegalArgumentException(RECIPIENTS + " must be specified for encryption");
+		}
+		return ret;
+	}
+
+	private static SymmetricCipher parseCipher(String value) {
+		for (SymmetricCipher cipher : SymmetricCipher.values()) {
+			if (cipher.name().equalsIgnoreCase(value) || cipher.getDisplayName().equalsIgnoreCase(value)) {
+				return cipher;
+			}
+		}
+		throw new IllegalArgumentException(
+				"Unknown cipher " + value + ", supported: " + Arrays.toString(SymmetricCipher.values()));
+	}
+
+	private static String parseCompression(String value) {
+		if (CompressionPolicyAdaptiveImpl.AUTO.equalsIgnoreCase(value)) {
+			return value;
+		}
+		for (CompressionAlgorithm algorithm : CompressionAlgorithm.values()) {
+			if (algorithm.name().equalsIgnoreCase(value)) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Unknown compression " + value + ", supported: auto, "
+				+ Arrays.toString(CompressionAlgorithm.values()));
+	}
+
+	private static String requireValue(String[] args, int idx, String option) {
+		if (idx >= args.length || args[idx].startsWith("--")) {
+			throw new IllegalArgumentException("Value expected for " + option);
+		}
+		return args[idx];
+	}
+
+	public static String getUsage() {
+		return "Usage:\n" //
+				+ "  " + ENCRYPT + " <file or glob>... " + RECIPIENTS + " <key id or user>[,...] [" + OUT
+				+ " <file or folder>] [" + CIPHER + " " + Arrays.toString(SymmetricCipher.values()) + "] ["
+				+ COMPRESSION + " <auto|none|zip|zlib|bzip2>] [" + OVERWRITE + "]\n" //
+				+ "  " + DECRYPT + " <file or glob>... [" + OUT + " <file or folder>] [" + PASSWORD_ENV
+				+ " <ENV_VAR_NAME>] [" + OVERWRITE + "]\n";
+	}
+
+	public boolean isEncrypt() {
+		return encrypt;
+	}
+
+	public boolean isDecrypt() {
+		return decrypt;
+	}
+
+	public List<String> getSources() {
+		return sources;
+	}
+
+	public List<String> getRecipients() {
+		return recipients;
+	}
+
+	public String getOut() {
+		return out;
+	}
+
+	public String getPasswordEnv() {
+		return passwordEnv;
+	}
+
+	/**
+	 * @return cipher requested by user or null if default should be used
+	 */
+	public SymmetricCipher getCipher() {
+		return cipher;
+	}
+
+	/**
+	 * @return compression override requested by user or null if configured
+	 *         policy should be used
+	 */
+	public String getCompression() {
+		return compression;
+	}
+
+	/**
+	 * @return true if existing target files are allowed to be replaced
+	 */
+	public boolean isOverwrite() {
+		return overwrite;
+	}
+}
@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.cli;
+
+import java.io.Console;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.encryption.api.KeyRingService;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.MatchedKey;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
+import org.pgptool.gui.encryption.implpgp.CompressionPolicyAdaptiveImpl;
+import org.pgptool.gui.tools.FileUtilsEx;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.util.StringUtils;
+import org.summerb.approaches.security.api.exceptions.InvalidPasswordException;
+
+/**
+ * Headless entry point. It's used when application is invoked with
+ * {@link CliArgs#ENCRYPT} or {@link CliArgs#DECRYPT}. It loads only minimal
+ * context (see cli-context.xml) and doesn't touch Swing at all so it can be
+ * used in scripts and on machines without display.
+ * 
+ * @author Sergey Karpushin
+ */
+public class CliEntryPoint {
+	private static Logger log = Logger.getLogger(CliEntryPoint.class);
+
+	public static final int EXIT_OK = 0;
+	public static final int EXIT_FAILED = 1;
+	public static final int EXIT_USAGE = 2;
+
+	private static final String ENCRYPTED_EXT = "pgp";
+	private static final String GLOB_CHARS = "*?[{";
+
+	private EncryptionService encryptionService;
+	private KeyRingService keyRingService;
+	private Map<String, String> passwords = new HashMap<>();
+	private boolean overwrite;
+	/**
+	 * Files written in this run. They're never replaced, even if
+	 * {@link CliArgs#OVERWRITE} is specified, since it would mean result for one
+	 * of sources is lost
+	 */
+	private Set<String> writtenTargets = new HashSet<>();
+
+	public CliEntryPoint(EncryptionService encryptionService, KeyRingService keyRingService) {
+		this.encryptionService = encryptionService;
+		this.keyRingService = keyRingService;
+	}
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * @return process exit code
+	 */
+	public static int run(String[] args) {
+		DOMConfigurator.configure(CliEntryPoint.class.getClassLoader().getResource("pgptool-gui-log4j-cli.xml"));
+
+		CliArgs cliArgs;
+		try {
+			cliArgs = CliArgs.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(CliArgs.getUsage());
+			return EXIT_USAGE;
+		}
+
+		try (ClassPathXmlApplicationContext ac = buildApplicationContext()) {
+			if (cliArgs.getCompression() != null) {
+				ac.getBean(CompressionPolicyAdaptiveImpl.class).setCompressionOverride(cliArgs.getCompression());
+			}
+			CliEntryPoint cli = new CliEntryPoint(ac.getBean(EncryptionService.class),
+					ac.getBean(KeyRingService.class));
+			return cli.execute(cliArgs);
+		} catch (Throwable t) {
+			log.error("Headless operation failed", t);
+			return EXIT_FAILED;
+		}
+	}
+
+	/**
+	 * NOTE: cli-context.xml is shipped with the application, so it's not validated
+	 * against XML schemas. Loading schemas takes noticeable part of the headless
+	 * invocation time, see HeadlessStartupBenchmark
+	 */
+	private static ClassPathXmlApplicationContext buildApplicationContext() {
+		ClassPathXmlApplicationContext ret = new ClassPathXmlApplicationContext(new String[] { "cli-context.xml" },
+				false);
+		ret.setValidating(false);
+		ret.refresh();
+		return ret;
+	}
+
+		public int execute(CliArgs args) {
+		overwrite = args.isOverwrite();
+		List<String> sourceFiles = expandSources(args.getSources());
+		if (sourceFiles.isEmpty()) {
+			System.err.println("No files found matching " + args.getSources());
+			return EXIT_USAGE;
+		}
+
+		File outFolder = null;
+		String outFile = null;
+		if (StringUtils.hasText(args.getOut())) {
+			File out = new File(args.getOut());
+			if (sourceFiles.size() > 1 || out.isDirectory() || args.getOut().endsWith(File.separator)) {
+				if (!out.exists() && !out.mkdirs()) {
+					System.err.println("Failed to create output folder " + out);
+					return EXIT_FAILED;
+				}
+				outFolder = out;
+			} else {
+				outFile = out.getAbsolutePath();
+			}
+		}
+
+		Collection<Key> recipients = null;
+		if (args.isEncrypt()) {
+			recipients = resolveRecipients(args.getRecipients());
+			if (recipients == null) {
+				return EXIT_USAGE;
+			}
+		}
+
+		int failed = 0;
+		for (String sourceFile : sourceFiles) {
+			try {
+				String target;
+				if (args.isEncrypt()) {
+					target = outFile != null ? outFile : buildEncryptedFileName(sourceFile, outFolder);
+					ensureTargetCanBeWritten(target);
+					encrypt(sourceFile, target, recipients, args.getCipher());
+				} else {
+					target = decrypt(sourceFile, outFile, outFolder, args.getPasswordEnv());
+				}
+				writtenTargets.add(new File(target).getAbsolutePath());
+				System.out.println(sourceFile + " -> " + target);
+			} catch (Throwable t) {
+				failed++;
+				log.warn("Failed to process " + sourceFile, t);
+				System.err.println(sourceFile + ": " + describe(t));
+			}
+		}
+		return failed == 0 ? EXIT_OK : EXIT_FAILED;
+	}
+
+	private void encrypt(String sourceFile, String targetFile, Collection<Key> recipients,
+			SymmetricCipher optionalCipher) throws Exception {
+		FileUtilsEx.baitAndSwitch(targetFile,
+				x -> encryptionService.encrypt(sourceFile, x, recipients, optionalCipher, null, null, null));
+	}
+
+	private String decrypt(String sourceFile, String outFile, File outFolder, String passwordEnv) throws Exception {
+		Set<String> keysIds = encryptionService.findKeyIdsForDecryption(sourceFile);
+		List<MatchedKey> matchedKeys = keyRingService.findMatchingDecryptionKeys(keysIds);
+		if (matchedKeys.isEmpty()) {
+			throw new IllegalStateException("No private key found for key ids " + keysIds);
+		}
+
+		for (MatchedKey matchedKey : matchedKeys) {
+			PasswordDeterminedForKey keyAndPassword = new PasswordDeterminedForKey(matchedKey.getRequestedKeyId(),
+					matchedKey.getMatchedKey(), getPassword(matchedKey.getMatchedKey(), passwordEnv));
+			try {
+				return decryptSinglePass(sourceFile, outFile, outFolder, keyAndPassword);
+			} catch (InvalidPasswordException e) {
+				log.debug("Password didn't match key " + matchedKey.getMatchedKey(), e);
+				passwords.remove(matchedKey.getMatchedKey().getKeyInfo().getKeyId());
+			}
+		}
+		throw new IllegalStateException("Password is not valid for any of matching keys");
+	}
+
+	/**
+	 * Decrypt in a single pass. Target file name is determined once initial file
+	 * name is read from encrypted file. If target file already exists (and it's
+	 * allowed to be replaced) it's replaced only after decryption succeeded
+	 */
+	private String decryptSinglePass(String sourceFile, String outFile, File outFolder,
+			PasswordDeterminedForKey keyAndPassword) throws Exception {
+		String[] target = new String[1];
+		String written = encryptionService.decrypt(sourceFile, (initialFileName, modificationTime) -> {
+			target[0] = outFile != null ? outFile : buildTargetFileName(sourceFile, outFolder, initialFileName);
+			ensureTargetCanBeWritten(target[0]);
+			return new File(target[0]).exists() ? FileUtilsEx.ensureFileNameVacant(target[0]) : target[0];
+		}, keyAndPassword, null, null, null);
+
+		if (!written.equals(target[0])) {
+			FileUtils.forceDelete(new File(target[0]));
+			FileUtils.moveFile(new File(written), new File(target[0]));
+		}
+		return target[0];
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if target file must not be replaced. Message is suitable for
+	 *             the user
+	 */
+	private void ensureTargetCanBeWritten(String targetFile) {
+		File file = new File(targetFile);
+		if (writtenTargets.contains(file.getAbsolutePath())) {
+			throw new IllegalStateException("File was already written for other source in this run: " + targetFile);
+		}
+		if (!overwrite && file.exists()) {
+			throw new IllegalStateException(
+					"File already exists, use " + CliArgs.OVERWRITE + " to replace it: " + targetFile);
+		}
+	}
+
+	private static String buildTargetFileName(String sourceFile, File outFolder, String initialFileName) {
+		String folder = outFolder != null ? outFolder.getAbsolutePath()
+				: FilenameUtils.getFullPathNoEndSeparator(sourceFile);
+		// NOTE: Name recorded in encrypted file must not be trusted as a path
+		String name = FilenameUtils.getName(initialFileName);
+		if (!StringUtils.hasText(name)) {
+			name = FilenameUtils.getBaseName(sourceFile);
+		}
+		return folder + File.separator + name;
+	}
+
+	private String getPassword(Key key, String passwordEnv) {
+		if (StringUtils.hasText(passwordEnv)) {
+			String ret = System.getenv(passwordEnv);
+			if (ret == null) {
+				throw new IllegalStateException("Environment variable " + passwordEnv + " is not set");
+			}
+			return ret;
+		}
+
+		String keyId = key.getKeyInfo().getKeyId();
+		String ret = passwords.get(keyId);
+		if (ret != null) {
+			return ret;
+		}
+
+		Console console = System.console();
+		if (console == null) {
+			throw new IllegalStateException(
+					"No console available to ask password, use " + CliArgs.PASSWORD_ENV + " instead");
+		}
+		char[] password = console.readPassword("Password for %s (%s): ", key, keyId);
+		ret = password == null ? "" : new String(password);
+		passwords.put(keyId, ret);
+		return ret;
+	}
+
+	/**
+	 * @return recipients keys or null if at least one of requested recipients
+	 *         cannot be unambiguously resolved
+	 */
+	private Collection<Key> resolveRecipients(List<String> requested) {
+		List<Key> keys = keyRingService.readKeys();
+		Set<Key> ret = new LinkedHashSet<>();
+		for (String recipient : requested) {
+			Key byId = keyRingService.findKeyById(recipient);
+			if (byId != null) {
+				ret.add(byId);
+				continue;
+			}
+
+			String lowerCase = recipient.toLowerCase();
+			List<Key> byUser = keys.stream().filter(
+					x -> x.getKeyInfo().getUser() != null && x.getKeyInfo().getUser().toLowerCase().contains(lowerCase))
+					.collect(Collectors.toList());
+			if (byUser.size() != 1) {
+				System.err.println(byUser.isEmpty() ? "No key found for recipient " + recipient
+						: "Recipient " + recipient + " is ambiguous, matches: " + byUser);
+				return null;
+			}
+			ret.add(byUser.get(0));
+		}
+		return ret;
+	}
+
+	private static String buildEncryptedFileName(String sourceFile, File outFolder) {
+		String folder = outFolder != null ? outFolder.getAbsolutePath()
+				: FilenameUtils.getFullPathNoEndSeparator(sourceFile);
+		return folder + File.separator + FilenameUtils.getName(sourceFile) + "." + ENCRYPTED_EXT;
+	}
+
+	/**
+	 * Expands globs in case shell didn't do it (i.e. on Windows or when pattern
+	 * was quoted). Only regular files are returned, order is preserved,
+	 * duplicates are removed
+	 */
+	protected static List<String> expandSources(List<String> sources) {
+		Set<String> ret = new LinkedHashSet<>();
+		for (String source : sources) {
+			if (!isGlob(source)) {
+				File file = new File(source);
+				if (file.isFile()) {
+					ret.add(file.getAbsolutePath());
+				} else {
+					System.err.println("File not found: " + source);
+				}
+				continue;
+			}
+
+			int baseLength = globBaseLength(source);
+			Path base = Paths.get(baseLength == 0 ? "." : source.substring(0, baseLength)).toAbsolutePath()
+					.normalize();
+			String pattern = base.resolve(source.substring(baseLength)).toString();
+			// NOTE: On Windows backslash is an escape char in glob syntax
+			PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.replace("\\", "\\\\"));
+			int maxDepth = source.contains("**") ? Integer.MAX_VALUE
+					: Paths.get(pattern).getNameCount() - base.getNameCount();
+			try (Stream<Path> stream = Files.walk(base, maxDepth)) {
+				List<String> found = new ArrayList<>();
+				stream.filter(x -> Files.isRegularFile(x) && matcher.matches(x))
+						.forEach(x -> found.add(x.toString()));
+				found.sort(String::compareTo);
+				ret.addAll(found);
+			} catch (IOException e) {
+				log.warn("Failed to expand glob " + source, e);
+			}
+		}
+		return new ArrayList<>(ret);
+	}
+
+	private static boolean isGlob(String source) {
+		return source.chars().anyMatch(x -> GLOB_CHARS.indexOf(x) >= 0);
+	}
+
+	private static int globBaseLength(String source) {
+		int firstGlobChar = source.length();
+		for (int i = 0; i < source.length(); i++) {
+			if (GLOB_CHARS.indexOf(source.charAt(i)) >= 0) {
+				firstGlobChar = i;
+				break;
+			}
+		}
+		int lastSeparator = Math.max(source.lastIndexOf('/', firstGlobChar), source.lastIndexOf('\\', firstGlobChar));
+		return lastSeparator + 1;
+	}
+
+	private static String describe(Throwable t) {
+		StringBuilder ret = new StringBuilder();
+		for (Throwable cur = t; cur != null && cur != cur.getCause(); cur = cur.getCause()) {
+			if (ret.length() > 0) {
+				ret.append(" -> ");
+			}
+			ret.append(cur.getMessage() != null ? cur.getMessage() : cur.getClass().getSimpleName());
+		}
+		return ret.toString();
+	}
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.config.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.summerb.approaches.jdbccrud.common.DtoBase;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Versioned binary format of config files.
+ * 
+ * <p>
+ * File starts with {@link #MAGIC} followed by format version and id of the
+ * codec used for the body. Maps (i.e. config pairs) are written entry by entry
+ * with common value types encoded natively, other values are written using java
+ * serialization within the same stream so class descriptors are written once.
+ * Map class is not written, instance of the class expected by the caller is
+ * created when file is read.
+ * 
+ * <p>
+ * Files written before this format was introduced are plain java serialization
+ * streams. Those are recognized by absence of {@link #MAGIC} and still can be
+ * read, next write will convert them to the current format.
+ * 
+ * @author Sergey Karpushin
+ *
+ */
+public class ConfigFileFormat {
+	public static final int MAGIC = 0x50475443;
+	public static final byte VERSION = 2;
+	/**
+	 * Map class name was written before map entries in this version, now expected
+	 * class is provided by caller
+	 */
+	private static final byte VERSION_WITH_MAP_CLASS_NAME = 1;
+
+	private static final byte CODEC_JAVA_SERIALIZATION = 1;
+	private static final byte CODEC_MAP = 2;
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_BOOLEAN = 2;
+	private static final byte TYPE_INTEGER = 3;
+	private static final byte TYPE_LONG = 4;
+	private static final byte TYPE_SERIALIZED = 5;
+	private static final byte TYPE_LONG_STRING = 6;
+
+	/**
+	 * Strings up to this length are guaranteed to fit into
+	 * {@link ObjectOutputStream#writeUTF(String)} limit
+	 */
+	private static final int MAX_SHORT_STRING_LENGTH = 65535 / 3;
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private ConfigFileFormat() {
+	}
+
+	public static void write(Object object, OutputStream outputStream) throws IOException {
+		DataOutputStream dos = new DataOutputStream(outputStream);
+		dos.writeInt(MAGIC);
+		dos.writeByte(VERSION);
+		boolean isMap = isPlainMap(object);
+		dos.writeByte(isMap ? CODEC_MAP : CODEC_JAVA_SERIALIZATION);
+		ObjectOutputStream oos = new ObjectOutputStream(dos);
+		if (isMap) {
+			writeMap((Map<?, ?>) object, oos);
+		} else {
+			oos.writeObject(object);
+		}
+		oos.flush();
+	}
+
+	public static <T> T read(InputStream inputStream, Class<T> clazz) throws IOException, ClassNotFoundException {
+		Preconditions.checkArgument(clazz != null, "Expected class must be provided");
+		BufferedInputStream bis = new BufferedInputStream(inputStream, BUFFER_SIZE);
+		DataInputStream dis = new DataInputStream(bis);
+		bis.mark(Integer.BYTES);
+		if (dis.readInt() != MAGIC) {
+			// NOTE: Legacy format, file is just a java serialization stream
+			bis.reset();
+			return clazz.cast(new ObjectInputStream(bis).readObject());
+		}
+
+		byte version = dis.readByte();
+		Preconditions.checkState(version <= VERSION, "Config file format version %s is not supported", version);
+		byte codec = dis.readByte();
+		switch (codec) {
+		case CODEC_JAVA_SERIALIZATION:
+			return clazz.cast(new ObjectInputStream(dis).readObject());
+		case CODEC_MAP:
+			return readMap(new ObjectInputStream(dis), version, clazz);
+		default:
+			throw new IllegalStateException("Unknown config codec " + codec);
+		}
+	}
+
+	/**
+	 * @return true if object is a map which has no state other than entries, so
+	 *         it can be fully restored by putting entries into new instance
+	 */
+	private static boolean isPlainMap(Object object) {
+		if (!(object instanceof Map) || !(object instanceof DtoBase)) {
+			return false;
+		}
+		for (Class<?> clazz = object.getClass(); !clazz.getName().startsWith("java."); clazz = clazz
+				.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void writeMap(Map<?, ?> map, ObjectOutputStream oos) throws IOException {
+		oos.writeInt(map.size());
+		for (Entry<?, ?> entry : map.entrySet()) {
+			writeValue(entry.getKey(), oos);
+			writeValue(entry.getValue(), oos);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <T> T readMap(ObjectInputStream ois, byte version, Class<T> clazz)
+			throws IOException, ClassNotFoundException {
+		Preconditions.checkState(Map.class.isAssignableFrom(clazz), "Map is stored, but %s is expected", clazz);
+		if (version == VERSION_WITH_MAP_CLASS_NAME) {
+			ois.readUTF();
+		}
+		T ret;
+		try {
+			ret = clazz.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IOException("Failed to instantiate map " + clazz, e);
+		}
+		Map map = (Map) ret;
+		int size = ois.readInt();
+		for (int i = 0; i < size; i++) {
+			Object key = readValue(ois);
+			map.put(key, readValue(ois));
+		}
+		return ret;
+	}
+
+	private static void writeValue(Object value, ObjectOutputStream oos) throws IOException {
+		if (value == null) {
+			oos.writeByte(TYPE_NULL);
+		} else if (value instanceof String && ((String) value).length() <= MAX_SHORT_STRING_LENGTH) {
+			oos.writeByte(TYPE_STRING);
+			oos.writeUTF((String) value);
+		} else if (value instanceof String) {
+			oos.writeByte(TYPE_LONG_STRING);
+			writeBytes(((String) value).getBytes(StandardCharsets.UTF_8), oos);
+		} else if (value instanceof Boolean) {
+			oos.writeByte(TYPE_BOOLEAN);
+			oos.writeBoolean((Boolean) value);
+		} else if (value instanceof Integer) {
+			oos.writeByte(TYPE_INTEGER);
+			oos.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			oos.writeByte(TYPE_LONG);
+			oos.writeLong((Long) value);
+		} else {
+			oos.writeByte(TYPE_SERIALIZED);
+			oos.writeObject(value);
+		}
+	}
+
+	private static Object readValue(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		byte type = ois.readByte();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_STRING:
+			return ois.readUTF();
+		case TYPE_LONG_STRING:
+			return new String(readBytes(ois), StandardCharsets.UTF_8);
+		case TYPE_BOOLEAN:
+			return ois.readBoolean();
+		case TYPE_INTEGER:
+			return ois.readInt();
+		case TYPE_LONG:
+			return ois.readLong();
+		case TYPE_SERIALIZED:
+			return ois.readObject();
+		default:
+			throw new IOException("Unknown value type " + type);
+		}
+	}
+
+	private static void writeBytes(byte[] bytes, ObjectOutputStream oos) throws IOException {
+		oos.writeInt(bytes.length);
+		oos.write(bytes);
+	}
+
+	private static byte[] readBytes(ObjectInputStream ois) throws IOException {
+		byte[] ret = new byte[ois.readInt()];
+		ois.readFully(ret);
+		return ret;
+	}
+}
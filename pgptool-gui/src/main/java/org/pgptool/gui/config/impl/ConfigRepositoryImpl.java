@@ -17,11 +17,18 @@
  ******************************************************************************/
 package org.pgptool.gui.config.impl;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import org.apache.log4j.Logger;
 import org.pgptool.gui.config.api.ConfigRepository;
@@ -96,12 +103,30 @@ public class ConfigRepositoryImpl implements ConfigRepository, InitializingBean
 			if (!new File(filename).exists()) {
 				return null;
 			}
-			return readObject(filename);
+			T ret = readObject(filename, clazz);
+			if (ret == null) {
+				preserveUnreadableFile(filename);
+			}
+			return ret;
 		} catch (Throwable t) {
 			throw new RuntimeException("Failed to read object of class " + clazz, t);
 		}
 	}
 
+	/**
+	 * Caller will most likely construct new instance and persist it over the
+	 * unreadable one. Keep a copy so that data is not silently lost
+	 */
+	private void preserveUnreadableFile(String filename) {
+		try {
+			File backup = new File(filename + ".unreadable");
+			Files.copy(new File(filename).toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			log.error("Config file " + filename + " can't be read, copy saved to " + backup);
+		} catch (Throwable t) {
+			log.error("Failed to preserve copy of unreadable config file " + filename, t);
+		}
+	}
+
 	@Override
 	public <T extends DtoBase> T readOrConstruct(Class<T> clazz) {
 		return readOrConstruct(clazz, null);
@@ -112,7 +137,7 @@ public class ConfigRepositoryImpl implements ConfigRepository, InitializingBean
 		T result = read(clazz, clarification);
 		if (result == null) {
 			try {
-				result = clazz.newInstance();
+				result = clazz.getDeclaredConstructor().newInstance();
 			} catch (Throwable t) {
 				throw new RuntimeException("Failed to create new instance of " + clazz, t);
 			}
@@ -121,25 +146,26 @@ public class ConfigRepositoryImpl implements ConfigRepository, InitializingBean
 		return result;
 	}
 
-	@SuppressWarnings("unchecked")
-	public static <T extends DtoBase> T readObject(String sourceFile) {
-		ObjectInputStream ois = null;
+	/**
+	 * Read object written by {@link #writeObject(Object, String)}. Files in legacy
+	 * java serialization format are also supported, see {@link ConfigFileFormat}
+	 * 
+	 * @param clazz
+	 *            class of the object expected to be read
+	 */
+	public static <T extends DtoBase> T readObject(String sourceFile, Class<T> clazz) {
 		try {
 			File file = new File(sourceFile);
 			if (!file.exists()) {
 				return null;
 			}
 
-			FileInputStream fis = new FileInputStream(file);
-			ois = new ObjectInputStream(fis);
-			T ret = (T) ois.readObject();
-			ois.close();
-			return ret;
+			try (InputStream fis = new FileInputStream(file)) {
+				return ConfigFileFormat.read(fis, clazz);
+			}
 		} catch (Throwable t) {
 			log.warn("Failed to read " + sourceFile, t);
 			return null;
-		} finally {
-			safeClose(ois);
 		}
 	}
 
@@ -154,7 +180,9 @@ public class ConfigRepositoryImpl implements ConfigRepository, InitializingBean
 	}
 
 	public static void writeObject(Object o, String destinationFile) {
-		ObjectOutputStream oos = null;
+		// NOTE: Write to temp file first and then replace target with it, so
+		// that failure in the middle of write will not leave config corrupted
+		File tempFile = new File(destinationFile + ".tmp");
 		try {
 			log.trace(String.format("Persisting %s to %s", o, destinationFile));
 
@@ -163,16 +191,27 @@ public class ConfigRepositoryImpl implements ConfigRepository, InitializingBean
 				throw new RuntimeException("Failed to create all parent directories");
 			}
 
-			FileOutputStream fout = new FileOutputStream(file);
-			oos = new ObjectOutputStream(fout);
-			oos.writeObject(o);
-			oos.flush();
-			oos.close();
-			fout.close();
+			try (FileOutputStream fout = new FileOutputStream(tempFile)) {
+				OutputStream os = new BufferedOutputStream(fout, ConfigFileFormat.BUFFER_SIZE);
+				ConfigFileFormat.write(o, os);
+				os.flush();
+				fout.getFD().sync();
+			}
+			replaceFile(tempFile, file);
 		} catch (Throwable t) {
+			if (tempFile.exists() && !tempFile.delete()) {
+				log.warn("Failed to delete temp file " + tempFile);
+			}
 			throw new RuntimeException("Failed to write config: " + destinationFile, t);
-		} finally {
-			safeClose(oos);
+		}
+	}
+
+	private static void replaceFile(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
 
@@ -20,6 +20,7 @@ package org.pgptool.gui.configpairs.api;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 
 /**
  * Simple service for key-value properties. name might a little bit unusual, but
@@ -38,5 +39,14 @@ public interface ConfigPairs {
 	 */
 	<T> List<T> findAllWithPrefixedKey(String keyPrefix);
 
+	/**
+	 * @return read-only view of all pairs where key is prefixed with keyPrefix,
+	 *         sorted by key
+	 */
+	SortedMap<String, Object> getAllWithPrefixedKey(String keyPrefix);
+
+	/**
+	 * @return read-only view of all pairs
+	 */
 	Set<Map.Entry<String, Object>> getAll();
 }
@@ -18,49 +18,115 @@
 package org.pgptool.gui.configpairs.impl;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.log4j.Logger;
 import org.pgptool.gui.config.api.ConfigRepository;
 import org.pgptool.gui.configpairs.api.ConfigPairs;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.summerb.approaches.jdbccrud.api.dto.EntityChangedEvent;
 import org.summerb.approaches.jdbccrud.common.DtoBase;
 
+import com.google.common.base.Preconditions;
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
- * This is VERY simple map-based impl of this storage. It uses config repo and
- * performs write operation each time after single key-value pair change
+ * This is VERY simple map-based impl of this storage. It uses config repo to
+ * persist all pairs at once.
+ * 
+ * <p>
+ * Pairs are kept sorted by key, so that prefix queries (keys are often file
+ * paths) don't need to scan all pairs. Reads are not blocked by writes, views
+ * returned are read-only and reflect subsequent changes.
+ * 
+ * <p>
+ * If {@link #setFlushDelayMs(long)} is positive, changes are written behind:
+ * first change marks storage dirty and schedules flush after the delay, all
+ * changes made before flush are coalesced into that single write. Pending
+ * changes are also flushed on {@link #destroy()}. Otherwise write operation is
+ * performed each time after single key-value pair change
  * 
  * @author Sergey Karpushin
  *
  */
-public class ConfigPairsImpl implements ConfigPairs {
+public class ConfigPairsImpl implements ConfigPairs, InitializingBean, DisposableBean {
+	private static Logger log = Logger.getLogger(ConfigPairsImpl.class);
+
 	@Autowired
 	private ConfigRepository configRepository;
 	@Autowired
 	private EventBus eventBus;
 
-	private ConfigPairsEnvelop configPairsEnvelop;
+	private volatile ConcurrentNavigableMap<String, Object> pairs;
 
 	private String clarification;
+	private long flushDelayMs;
+
+	private ScheduledThreadPoolExecutor flushExecutor;
+	private ScheduledFuture<?> scheduledFlush;
+	/**
+	 * True if there are changes which were not written yet. Flag is raised back
+	 * if write fails, so that changes are not lost
+	 */
+	private boolean dirty;
+	/**
+	 * Serializes flushes so that older state is never written over newer one
+	 */
+	private final Object flushLock = new Object();
+
+	private final AtomicLong writesAvoided = new AtomicLong();
+	private final AtomicLong flushesCount = new AtomicLong();
+	private final AtomicLong flushesTotalMs = new AtomicLong();
 
 	public ConfigPairsImpl(String clarification) {
 		this.clarification = clarification;
 	}
 
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Preconditions.checkState(flushDelayMs >= 0, "flushDelayMs must not be negative");
+		if (flushDelayMs > 0) {
+			flushExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+					.setNameFormat("ConfigPairsFlush-" + clarification).setDaemon(true).build());
+			// NOTE: Most of the time there is nothing to flush, don't keep thread
+			flushExecutor.setKeepAliveTime(10, TimeUnit.SECONDS);
+			flushExecutor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (flushExecutor != null) {
+			flushExecutor.shutdown();
+		}
+		flush();
+		log.debug(String.format("Config pairs %s: flushes %d, total flush time %d ms, writes avoided %d",
+				clarification, flushesCount.get(), flushesTotalMs.get(), writesAvoided.get()));
+	}
+
 	@Override
 	public synchronized void put(String key, Object value) {
 		if (value == null) {
-			Object removed = getConfigPairsEnvelop().remove(key);
+			Object removed = getPairs().remove(key);
 			if (removed != null & removed instanceof DtoBase) {
 				eventBus.post(EntityChangedEvent.removedObject((DtoBase) removed));
 			}
 		} else {
-			Object previous = getConfigPairsEnvelop().put(key, value);
+			Object previous = getPairs().put(key, value);
 
 			if (previous != null & value instanceof DtoBase) {
 				eventBus.post(EntityChangedEvent.updated((DtoBase) value));
@@ -72,37 +138,145 @@ public class ConfigPairsImpl implements ConfigPairs {
 	}
 
 	private void save() {
-		configRepository.persist(getConfigPairsEnvelop(), clarification);
+		if (flushExecutor == null || flushExecutor.isShutdown()) {
+			persist(buildConfigPairsEnvelop());
+			return;
+		}
+
+		dirty = true;
+		if (scheduledFlush != null) {
+			writesAvoided.incrementAndGet();
+			return;
+		}
+		scheduledFlush = flushExecutor.schedule(this::flushSafe, flushDelayMs, TimeUnit.MILLISECONDS);
+	}
+
+	private void flushSafe() {
+		try {
+			flush();
+		} catch (Throwable t) {
+			log.error("Failed to flush config pairs " + clarification, t);
+		}
+	}
+
+	/**
+	 * Write pending changes if any
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			ConfigPairsEnvelop snapshot;
+			synchronized (this) {
+				if (scheduledFlush != null) {
+					scheduledFlush.cancel(false);
+					scheduledFlush = null;
+				}
+				if (!dirty) {
+					return;
+				}
+				dirty = false;
+				// NOTE: Copy is written so that changes are not blocked by the write
+				snapshot = buildConfigPairsEnvelop();
+			}
+			try {
+				persist(snapshot);
+			} catch (RuntimeException e) {
+				synchronized (this) {
+					dirty = true;
+				}
+				throw e;
+			}
+		}
+	}
+
+	private void persist(ConfigPairsEnvelop envelop) {
+		long startedAt = System.currentTimeMillis();
+		configRepository.persist(envelop, clarification);
+		flushesCount.incrementAndGet();
+		flushesTotalMs.addAndGet(System.currentTimeMillis() - startedAt);
+	}
+
+	private ConfigPairsEnvelop buildConfigPairsEnvelop() {
+		ConfigPairsEnvelop ret = new ConfigPairsEnvelop();
+		ret.putAll(getPairs());
+		return ret;
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
-	public synchronized <T> T find(String key, T defaultValue) {
-		T ret = (T) getConfigPairsEnvelop().get(key);
+	public <T> T find(String key, T defaultValue) {
+		T ret = (T) getPairs().get(key);
 		return ret != null ? ret : defaultValue;
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T> List<T> findAllWithPrefixedKey(String keyPrefix) {
-		List<T> ret = new ArrayList<>();
-		for (Entry<String, Object> entry : getConfigPairsEnvelop().entrySet()) {
-			if (entry.getKey().startsWith(keyPrefix)) {
-				ret.add((T) entry.getValue());
-			}
-		}
-		return ret;
+		return new ArrayList<>((Collection<T>) getAllWithPrefixedKey(keyPrefix).values());
 	}
 
 	@Override
-	public synchronized Set<Entry<String, Object>> getAll() {
-		return new HashSet<>(getConfigPairsEnvelop().entrySet());
+	public SortedMap<String, Object> getAllWithPrefixedKey(String keyPrefix) {
+		// NOTE: Any key starting with prefix is less than prefix followed by max char
+		return Collections.unmodifiableSortedMap(
+				getPairs().subMap(keyPrefix, true, keyPrefix + Character.MAX_VALUE, false));
 	}
 
-	public ConfigPairsEnvelop getConfigPairsEnvelop() {
-		if (configPairsEnvelop == null) {
-			configPairsEnvelop = configRepository.readOrConstruct(ConfigPairsEnvelop.class, clarification);
+	@Override
+	public Set<Entry<String, Object>> getAll() {
+		return Collections.unmodifiableSortedMap(getPairs()).entrySet();
+	}
+
+	/**
+	 * @return number of changes which were coalesced into already scheduled
+	 *         write, so they didn't cause separate write
+	 */
+	public long getWritesAvoided() {
+		return writesAvoided.get();
+	}
+
+	public long getFlushesCount() {
+		return flushesCount.get();
+	}
+
+	/**
+	 * @return total time spent writing pairs, see {@link #getFlushesCount()}
+	 */
+	public long getFlushesTotalMs() {
+		return flushesTotalMs.get();
+	}
+
+	public long getFlushDelayMs() {
+		return flushDelayMs;
+	}
+
+	/**
+	 * @param flushDelayMs
+	 *            delay after first change before changes are written. 0 means
+	 *            every change is written immediately
+	 */
+	public void setFlushDelayMs(long flushDelayMs) {
+		this.flushDelayMs = flushDelayMs;
+	}
+
+	private ConcurrentNavigableMap<String, Object> getPairs() {
+		ConcurrentNavigableMap<String, Object> ret = pairs;
+		if (ret == null) {
+			ret = loadPairs();
+		}
+		return ret;
+	}
+
+	private synchronized ConcurrentNavigableMap<String, Object> loadPairs() {
+		if (pairs == null) {
+			ConcurrentNavigableMap<String, Object> loaded = new ConcurrentSkipListMap<>();
+			ConfigPairsEnvelop envelop = configRepository.readOrConstruct(ConfigPairsEnvelop.class, clarification);
+			for (Entry<String, Object> entry : envelop.entrySet()) {
+				if (entry.getKey() != null && entry.getValue() != null) {
+					loaded.put(entry.getKey(), entry.getValue());
+				}
+			}
+			pairs = loaded;
 		}
-		return configPairsEnvelop;
+		return pairs;
 	}
 }
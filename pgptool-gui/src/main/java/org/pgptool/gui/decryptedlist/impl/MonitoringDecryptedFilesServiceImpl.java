@@ -22,9 +22,13 @@ import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent.Kind;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
 import org.pgptool.gui.configpairs.api.ConfigPairs;
@@ -39,7 +43,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Decrypted files are persisted in {@link ConfigPairs}, in-memory indexes by
+ * decrypted and by encrypted file are maintained along with it so that lookups
+ * don't need to scan all entries. Indexes are modified only while holding
+ * this service's lock, but could be read concurrently without locking
+ * 
+ * <p>
+ * On startup previously registered files are validated in background so that
+ * application startup is not blocked by file system (which might be slow for
+ * network shares). Files which no longer exist are removed one by one as they
+ * are found, which is published as usual removal
+ * 
+ * @author Sergey Karpushin
+ */
 public class MonitoringDecryptedFilesServiceImpl
 		implements MonitoringDecryptedFilesService, InitializingBean, DisposableBean {
 	private static Logger log = Logger.getLogger(MonitoringDecryptedFilesServiceImpl.class);
@@ -52,33 +72,86 @@ public class MonitoringDecryptedFilesServiceImpl
 	private ConfigPairs monitoredDecrypted;
 
 	private MultipleFilesWatcher multipleFilesWatcher;
+	private int validationThreads = 4;
+	private long fileEventsQuietWindowMs = 500;
+	private ExecutorService validationExecutor;
 
 	private Cache<String, DecryptedFile> recentlyRemoved = CacheBuilder.newBuilder()
 			.expireAfterWrite(TIME_TO_ENSURE_FILE_WAS_DELETED_MS, TimeUnit.MILLISECONDS).build();
 
+	private final Map<String, DecryptedFile> byDecryptedFile = new ConcurrentHashMap<>();
+	/**
+	 * Same encrypted file might be decrypted to several locations. Lists are
+	 * immutable and replaced on change so readers never see partial update
+	 */
+	private final Map<String, List<DecryptedFile>> byEncryptedFile = new ConcurrentHashMap<>();
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
+		buildIndexes();
 		setupFileWatcher();
 	}
 
+	private synchronized void buildIndexes() {
+		for (Entry<String, Object> entry : monitoredDecrypted.getAll()) {
+			DecryptedFile decryptedFile = (DecryptedFile) entry.getValue();
+			byDecryptedFile.put(decryptedFile.getDecryptedFile(), decryptedFile);
+			addToEncryptedIndex(decryptedFile);
+		}
+	}
+
+	private void addToEncryptedIndex(DecryptedFile decryptedFile) {
+		byEncryptedFile.compute(decryptedFile.getEncryptedFile(), (k, v) -> v == null ? ImmutableList.of(decryptedFile)
+				: ImmutableList.<DecryptedFile>builder().addAll(v).add(decryptedFile).build());
+	}
+
+	private void removeFromEncryptedIndex(DecryptedFile decryptedFile) {
+		byEncryptedFile.computeIfPresent(decryptedFile.getEncryptedFile(), (k, v) -> {
+			List<DecryptedFile> ret = ImmutableList.copyOf(v.stream()
+					.filter(x -> !x.getDecryptedFile().equals(decryptedFile.getDecryptedFile())).iterator());
+			return ret.isEmpty() ? null : ret;
+		});
+	}
+
 	private void setupFileWatcher() {
+		Preconditions.checkState(validationThreads > 0, "validationThreads must be positive");
 		// TBD: Fix. Smells like DI violation
-		multipleFilesWatcher = new MultipleFilesWatcher(dirWatcherHandler, "MonitoringDecryptedFilesService");
-		List<DecryptedFile> entries = getDecryptedFiles();
-		for (DecryptedFile entry : entries) {
+		multipleFilesWatcher = new MultipleFilesWatcher(dirWatcherHandler, "MonitoringDecryptedFilesService",
+				fileEventsQuietWindowMs);
+		validationExecutor = Executors.newFixedThreadPool(validationThreads, new ThreadFactoryBuilder()
+				.setNameFormat("DecryptedFilesValidation-%d").setDaemon(true).build());
+		for (DecryptedFile entry : getDecryptedFiles()) {
+			validationExecutor.execute(() -> validate(entry));
+		}
+		// NOTE: Already submitted tasks will still be executed, threads will exit after
+		validationExecutor.shutdown();
+	}
+
+	private void validate(DecryptedFile entry) {
+		try {
 			String decryptedFile = entry.getDecryptedFile();
-			if (!new File(decryptedFile).exists()) {
-				log.debug("Previously registered file is no longer exists, remove =ing it from the tracking "
-						+ decryptedFile);
-				remove(decryptedFile);
-				continue;
+			boolean exists = new File(decryptedFile).exists();
+			synchronized (this) {
+				if (byDecryptedFile.get(decryptedFile) != entry) {
+					// it was changed meanwhile, so it's not our business anymore
+					return;
+				}
+				if (exists) {
+					multipleFilesWatcher.watchForFileChanges(decryptedFile);
+				} else if (!new File(decryptedFile).exists()) {
+					log.debug("Previously registered file no longer exists, removing it from the tracking "
+							+ decryptedFile);
+					remove(decryptedFile);
+				}
 			}
-			multipleFilesWatcher.watchForFileChanges(decryptedFile);
+		} catch (Throwable t) {
+			log.warn("Failed to validate decrypted file " + entry.getDecryptedFile(), t);
 		}
 	}
 
 	@Override
 	public void destroy() throws Exception {
+		validationExecutor.shutdownNow();
 		multipleFilesWatcher.stopWatcher();
 	}
 
@@ -100,6 +173,14 @@ public class MonitoringDecryptedFilesServiceImpl
 
 			// Other cases not supported -- not needed
 		}
+
+		@Override
+		public void handleFilesChanged(Map<String, Kind<?>> changes) {
+			// NOTE: Whole batch is applied at once, not interleaved with other changes
+			synchronized (MonitoringDecryptedFilesServiceImpl.this) {
+				FilesWatcherHandler.super.handleFilesChanged(changes);
+			}
+		}
 	};
 
 	@Override
@@ -113,6 +194,11 @@ public class MonitoringDecryptedFilesServiceImpl
 
 			String key = buildKey(decryptedFile.getDecryptedFile());
 			monitoredDecrypted.put(key, decryptedFile);
+			DecryptedFile previous = byDecryptedFile.put(decryptedFile.getDecryptedFile(), decryptedFile);
+			if (previous != null) {
+				removeFromEncryptedIndex(previous);
+			}
+			addToEncryptedIndex(decryptedFile);
 			multipleFilesWatcher.watchForFileChanges(decryptedFile.getDecryptedFile());
 		} catch (Throwable t) {
 			throw new RuntimeException("Failed to update decrypted file for monitoring", t);
@@ -135,6 +221,8 @@ public class MonitoringDecryptedFilesServiceImpl
 			recentlyRemoved.put(depcryptedFilePathname, existing);
 
 			monitoredDecrypted.put(key, null);
+			byDecryptedFile.remove(depcryptedFilePathname);
+			removeFromEncryptedIndex(existing);
 
 			multipleFilesWatcher.stopWatchingFile(depcryptedFilePathname);
 		} catch (Throwable t) {
@@ -142,25 +230,52 @@ public class MonitoringDecryptedFilesServiceImpl
 		}
 	}
 
+	public int getValidationThreads() {
+		return validationThreads;
+	}
+
+	/**
+	 * @param validationThreads
+	 *            how many files could be validated in parallel on startup
+	 */
+	public void setValidationThreads(int validationThreads) {
+		this.validationThreads = validationThreads;
+	}
+
+	public long getFileEventsQuietWindowMs() {
+		return fileEventsQuietWindowMs;
+	}
+
+	/**
+	 * @param fileEventsQuietWindowMs
+	 *            file events are handled once there were no new events during
+	 *            this time, so that bursts (i.e. when file is saved by editor)
+	 *            are handled as single change
+	 */
+	public void setFileEventsQuietWindowMs(long fileEventsQuietWindowMs) {
+		this.fileEventsQuietWindowMs = fileEventsQuietWindowMs;
+	}
+
 	private String buildKey(String decryptedFile) {
 		return decryptedFile;
 	}
 
 	@Override
-	public synchronized List<DecryptedFile> getDecryptedFiles() {
-		return new ArrayList<>(monitoredDecrypted.getAll().stream().map(x -> (DecryptedFile) x.getValue())
-				.collect(Collectors.toList()));
+	public List<DecryptedFile> getDecryptedFiles() {
+		return new ArrayList<>(byDecryptedFile.values());
 	}
 
 	@Override
 	public DecryptedFile findByDecryptedFile(String decryptedFile) {
-		return getDecryptedFiles().stream().filter(x -> x.getDecryptedFile().equals(decryptedFile)).findFirst()
-				.orElse(null);
+		return decryptedFile == null ? null : byDecryptedFile.get(decryptedFile);
 	}
 
 	@Override
 	public DecryptedFile findByEncryptedFile(String encryptedFile, Predicate<DecryptedFile> filter) {
-		return getDecryptedFiles().stream().filter(x -> x.getEncryptedFile().equals(encryptedFile) && filter.test(x))
-				.findFirst().orElse(null);
+		List<DecryptedFile> candidates = encryptedFile == null ? null : byEncryptedFile.get(encryptedFile);
+		if (candidates == null) {
+			return null;
+		}
+		return candidates.stream().filter(filter).findFirst().orElse(null);
 	}
 }
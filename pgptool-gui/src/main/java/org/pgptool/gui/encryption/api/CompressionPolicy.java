@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api;
+
+import org.pgptool.gui.encryption.api.dto.CompressionSettings;
+
+/**
+ * Decides how (and whether) data should be compressed before encryption.
+ * Compressing data which is already compressed (media, archives, encrypted
+ * blobs) costs a lot of CPU time and saves nothing
+ * 
+ * @author Sergey Karpushin
+ */
+public interface CompressionPolicy {
+	/**
+	 * Size of the sample that will be provided to
+	 * {@link #chooseCompression(String, byte[])}
+	 */
+	int SAMPLE_SIZE = 1 << 16;
+
+	/**
+	 * @param sourceName
+	 *            name of the file being encrypted, name only, no path
+	 * @param sample
+	 *            first bytes of the data, up to {@link #SAMPLE_SIZE}. Might be
+	 *            shorter if data itself is shorter
+	 * @return compression to use, never null
+	 */
+	CompressionSettings chooseCompression(String sourceName, byte[] sample);
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api;
+
+import java.util.Date;
+
+/**
+ * Decides where decrypted data will be written to. It's called during
+ * decryption once literal data header is read (so initial file name is known)
+ * and before any decrypted bytes are written
+ * 
+ * @author Sergey Karpushin
+ */
+public interface DecryptionTargetResolver {
+	/**
+	 * @param initialFileName
+	 *            name of the file that was encrypted as it's recorded in encrypted
+	 *            file. Might be empty. Must not be trusted as a path, it might
+	 *            contain path separators
+	 * @param modificationTime
+	 *            modification time of the file that was encrypted as it's
+	 *            recorded in encrypted file
+	 * @return full path name of the file to write decrypted data to
+	 */
+	String resolveTargetFile(String initialFileName, Date modificationTime);
+}
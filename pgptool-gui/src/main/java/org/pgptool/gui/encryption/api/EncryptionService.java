@@ -18,29 +18,125 @@
 package org.pgptool.gui.encryption.api;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Set;
 
 import org.pgptool.gui.bkgoperation.ProgressHandler;
 import org.pgptool.gui.bkgoperation.UserRequestedCancellationException;
 import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
 import org.pgptool.gui.encryption.implpgp.SymmetricEncryptionIsNotSupportedException;
 import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
 import org.summerb.approaches.security.api.exceptions.InvalidPasswordException;
 
 public interface EncryptionService {
+	/**
+	 * Same as
+	 * {@link #encrypt(String, String, Collection, SymmetricCipher, ProgressHandler, InputStreamSupervisor, OutputStreamSupervisor)}
+	 * but uses {@link SymmetricCipher#DEFAULT}
+	 */
 	void encrypt(String sourceFile, String targetFile, Collection<Key> recipients,
 			ProgressHandler optionalProgressHandler, InputStreamSupervisor optionalInputStreamSupervisor,
 			OutputStreamSupervisor optionalOutputStreamSupervisor) throws UserRequestedCancellationException;
 
+	/**
+	 * @param optionalCipher
+	 *            symmetric cipher to encrypt data with. If null then
+	 *            {@link SymmetricCipher#DEFAULT} will be used
+	 */
+	void encrypt(String sourceFile, String targetFile, Collection<Key> recipients, SymmetricCipher optionalCipher,
+			ProgressHandler optionalProgressHandler, InputStreamSupervisor optionalInputStreamSupervisor,
+			OutputStreamSupervisor optionalOutputStreamSupervisor) throws UserRequestedCancellationException;
+
 	String encryptText(String sourceText, Collection<Key> recipients);
 
+	/**
+	 * @param optionalCipher
+	 *            symmetric cipher to encrypt data with. If null then
+	 *            {@link SymmetricCipher#DEFAULT} will be used
+	 */
+	String encryptText(String sourceText, Collection<Key> recipients, SymmetricCipher optionalCipher);
+
+	/**
+	 * Encrypt text producing ascii-armored output. Data is streamed, so memory
+	 * consumption doesn't depend on text size
+	 * 
+	 * @param source
+	 *            text to encrypt, UTF-8 bytes. Stream is not closed by this method
+	 * @param target
+	 *            stream to write ascii-armored result to. Stream is flushed, but
+	 *            not closed by this method
+	 * @param optionalCipher
+	 *            symmetric cipher to encrypt data with. If null then
+	 *            {@link SymmetricCipher#DEFAULT} will be used
+	 */
+	void encryptText(InputStream source, OutputStream target, Collection<Key> recipients,
+			SymmetricCipher optionalCipher);
+
+	/**
+	 * Same as
+	 * {@link #encryptText(InputStream, OutputStream, Collection, SymmetricCipher)}
+	 * but for character streams
+	 */
+	void encryptText(Reader source, Writer target, Collection<Key> recipients, SymmetricCipher optionalCipher);
+
+	/**
+	 * @param optionalInputStreamSupervisor
+	 *            if provided, source file is read through the stream it yields.
+	 *            Source is read till the end even if decryption doesn't need
+	 *            trailing data, so that supervisor sees every byte of the file
+	 *            exactly once
+	 */
 	void decrypt(String sourceFile, String targetFile, PasswordDeterminedForKey keyAndPassword,
-			ProgressHandler optionalProgressHandler, OutputStreamSupervisor optionalOutputStreamSupervisor)
+			ProgressHandler optionalProgressHandler, InputStreamSupervisor optionalInputStreamSupervisor,
+			OutputStreamSupervisor optionalOutputStreamSupervisor)
+			throws InvalidPasswordException, UserRequestedCancellationException;
+
+	/**
+	 * Decrypt file in a single pass, target file name is determined along the way.
+	 * Use it instead of calling {@link #getNameOfFileEncrypted(String,
+	 * PasswordDeterminedForKey)} and then {@link #decrypt(String, String,
+	 * PasswordDeterminedForKey, ProgressHandler, InputStreamSupervisor, OutputStreamSupervisor)} because
+	 * that will parse encrypted file and recover session key twice
+	 * 
+	 * @param targetResolver
+	 *            will be asked for target file name once initial file name is
+	 *            known
+	 * @return target file name which was returned by targetResolver and where
+	 *         decrypted data was written to
+	 */
+	String decrypt(String sourceFile, DecryptionTargetResolver targetResolver,
+			PasswordDeterminedForKey keyAndPassword, ProgressHandler optionalProgressHandler,
+			InputStreamSupervisor optionalInputStreamSupervisor, OutputStreamSupervisor optionalOutputStreamSupervisor)
 			throws InvalidPasswordException, UserRequestedCancellationException;
 
 	String decryptText(String encryptedText, PasswordDeterminedForKey keyAndPassword) throws InvalidPasswordException;
 
+	/**
+	 * Decrypt text. Data is streamed, so memory consumption doesn't depend on text
+	 * size
+	 * 
+	 * @param encryptedText
+	 *            encrypted text (ascii-armored or binary). Stream is not closed by
+	 *            this method
+	 * @param target
+	 *            stream to write decrypted UTF-8 text to. Stream is flushed, but
+	 *            not closed by this method
+	 */
+	void decryptText(InputStream encryptedText, OutputStream target, PasswordDeterminedForKey keyAndPassword)
+			throws InvalidPasswordException;
+
+	/**
+	 * Same as
+	 * {@link #decryptText(InputStream, OutputStream, PasswordDeterminedForKey)}
+	 * but for character streams
+	 */
+	void decryptText(Reader encryptedText, Writer target, PasswordDeterminedForKey keyAndPassword)
+			throws InvalidPasswordException;
+
 	/**
 	 * Discover all key ids which can be used for decryption
 	 * 
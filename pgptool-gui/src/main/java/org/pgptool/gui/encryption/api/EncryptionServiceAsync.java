@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+import org.pgptool.gui.bkgoperation.ProgressHandler;
+import org.pgptool.gui.bkgoperation.UserRequestedCancellationException;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.OperationResult;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+
+/**
+ * Asynchronous facade for file operations of {@link EncryptionService}.
+ * Operations are performed on a managed pool of threads, so callers don't need
+ * to create threads on their own.
+ * 
+ * Target file is written safely: if it already exists it's replaced only after
+ * operation succeeded. Fingerprints of source and target files are calculated
+ * along the way and returned in {@link OperationResult}.
+ * 
+ * Cancelling returned future cancels the operation. Future completes
+ * exceptionally with {@link UserRequestedCancellationException} if operation
+ * was cancelled via {@link ProgressHandler}
+ * 
+ * @author Sergey Karpushin
+ */
+public interface EncryptionServiceAsync {
+	/**
+	 * @param optionalCipher
+	 *            symmetric cipher to encrypt data with. If null then
+	 *            {@link SymmetricCipher#DEFAULT} will be used
+	 */
+	CompletableFuture<OperationResult> encryptAsync(String sourceFile, String targetFile,
+			Collection<Key> recipients, SymmetricCipher optionalCipher, ProgressHandler optionalProgressHandler);
+
+	CompletableFuture<OperationResult> decryptAsync(String sourceFile, String targetFile,
+			PasswordDeterminedForKey keyAndPassword, ProgressHandler optionalProgressHandler);
+}
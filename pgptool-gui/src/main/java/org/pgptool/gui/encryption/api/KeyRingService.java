@@ -17,6 +17,7 @@
  ******************************************************************************/
 package org.pgptool.gui.encryption.api;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -24,10 +25,20 @@ import org.pgptool.gui.encryption.api.dto.Key;
 import org.pgptool.gui.encryption.api.dto.MatchedKey;
 
 public interface KeyRingService {
+	/**
+	 * @return unmodifiable list of keys. Make a copy if you need to sort it
+	 */
 	List<Key> readKeys();
 
 	void addKey(Key key);
 
+	/**
+	 * Add keys in a single transaction: either all keys are added or none of
+	 * them. Same rules apply as in {@link #addKey(Key)}: key which is already
+	 * added can only be replaced with a key that has private part
+	 */
+	void addKeys(Collection<Key> keys);
+
 	void removeKey(Key key);
 
 	/**
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api;
+
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+
+/**
+ * Session cache of private keys which were already unlocked by the user.
+ * Extracting private key from secret key (deriving key from passphrase) is
+ * expensive and there is no reason to do it on each decryption. Entries are
+ * evicted once not used for a while or once they are too old, and also
+ * explicitly by {@link #purge()}
+ * 
+ * @author Sergey Karpushin
+ */
+public interface UnlockedKeysCache {
+	/**
+	 * @param requestedKeyId
+	 *            id of the key (or sub-key) which is required for decryption
+	 * @return key and password that were successfully used to unlock requested
+	 *         key, or null if there is no such entry (or it's already expired)
+	 */
+	PasswordDeterminedForKey find(String requestedKeyId);
+
+	/**
+	 * Forget all unlocked keys (and passwords)
+	 */
+	void purge();
+
+	/**
+	 * @return how many times unlocked key was taken from cache
+	 */
+	long getHitsCount();
+
+	/**
+	 * @return how many times key had to be actually unlocked
+	 */
+	long getMissesCount();
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api.dto;
+
+/**
+ * Compression applied to data before it's encrypted
+ * 
+ * @author Sergey Karpushin
+ */
+public enum CompressionAlgorithm {
+	/**
+	 * Data is not compressed at all. Best choice for data which is already
+	 * compressed or encrypted
+	 */
+	NONE, ZIP, ZLIB, BZIP2;
+}
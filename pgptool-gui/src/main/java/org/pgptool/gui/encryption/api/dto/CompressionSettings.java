@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api.dto;
+
+/**
+ * Compression algorithm and level chosen for particular encryption operation
+ * 
+ * @author Sergey Karpushin
+ */
+public class CompressionSettings {
+	/**
+	 * Let algorithm use it's default level. Same as
+	 * {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}
+	 */
+	public static final int DEFAULT_LEVEL = -1;
+	public static final int BEST_SPEED = 1;
+	public static final int BEST_COMPRESSION = 9;
+
+	public static final CompressionSettings NONE = new CompressionSettings(CompressionAlgorithm.NONE, DEFAULT_LEVEL);
+
+	private final CompressionAlgorithm algorithm;
+	private final int level;
+
+	/**
+	 * @param level
+	 *            compression level from {@link #BEST_SPEED} to
+	 *            {@link #BEST_COMPRESSION} or {@link #DEFAULT_LEVEL}. Ignored for
+	 *            {@link CompressionAlgorithm#BZIP2}
+	 */
+	public CompressionSettings(CompressionAlgorithm algorithm, int level) {
+		this.algorithm = algorithm;
+		this.level = level;
+	}
+
+	public CompressionAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public String toString() {
+		if (algorithm == CompressionAlgorithm.NONE || level == DEFAULT_LEVEL) {
+			return algorithm.name();
+		}
+		return algorithm.name() + "(" + level + ")";
+	}
+}
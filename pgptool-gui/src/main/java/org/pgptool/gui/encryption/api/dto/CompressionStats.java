@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api.dto;
+
+/**
+ * Outcome of compression stage of a single encryption operation
+ * 
+ * @author Sergey Karpushin
+ */
+public class CompressionStats {
+	private final CompressionSettings settings;
+	private final long bytesIn;
+	private final long bytesOut;
+	private final long compressionNanos;
+
+	public CompressionStats(CompressionSettings settings, long bytesIn, long bytesOut, long compressionNanos) {
+		this.settings = settings;
+		this.bytesIn = bytesIn;
+		this.bytesOut = bytesOut;
+		this.compressionNanos = compressionNanos;
+	}
+
+	public CompressionSettings getSettings() {
+		return settings;
+	}
+
+	public long getBytesIn() {
+		return bytesIn;
+	}
+
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	/**
+	 * @return time spent in compression, excluding time spent on encryption and
+	 *         writing to target
+	 */
+	public long getCompressionNanos() {
+		return compressionNanos;
+	}
+
+	/**
+	 * @return compressed size to source size ratio, i.e. 0.3 means data shrunk to
+	 *         30% of it's initial size
+	 */
+	public double getRatio() {
+		if (bytesIn == 0) {
+			return 1;
+		}
+		return (double) bytesOut / bytesIn;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, %d -> %d bytes (%.1f%%), %d ms", settings, bytesIn, bytesOut, getRatio() * 100,
+				compressionNanos / 1000000);
+	}
+}
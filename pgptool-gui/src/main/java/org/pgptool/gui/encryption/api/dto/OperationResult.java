@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api.dto;
+
+import org.pgptool.gui.filecomparison.Fingerprint;
+
+/**
+ * Result of the file encryption or decryption operation
+ * 
+ * @author Sergey Karpushin
+ */
+public class OperationResult {
+	private final String sourceFile;
+	private final String targetFile;
+	private final Fingerprint sourceFingerprint;
+	private final Fingerprint targetFingerprint;
+	private final long startedAt;
+	private final long finishedAt;
+
+	public OperationResult(String sourceFile, String targetFile, Fingerprint sourceFingerprint,
+			Fingerprint targetFingerprint, long startedAt, long finishedAt) {
+		this.sourceFile = sourceFile;
+		this.targetFile = targetFile;
+		this.sourceFingerprint = sourceFingerprint;
+		this.targetFingerprint = targetFingerprint;
+		this.startedAt = startedAt;
+		this.finishedAt = finishedAt;
+	}
+
+	public String getSourceFile() {
+		return sourceFile;
+	}
+
+	public String getTargetFile() {
+		return targetFile;
+	}
+
+	public Fingerprint getSourceFingerprint() {
+		return sourceFingerprint;
+	}
+
+	public Fingerprint getTargetFingerprint() {
+		return targetFingerprint;
+	}
+
+	public long getStartedAt() {
+		return startedAt;
+	}
+
+	public long getFinishedAt() {
+		return finishedAt;
+	}
+
+	public long getDurationMillis() {
+		return finishedAt - startedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "OperationResult [sourceFile=" + sourceFile + ", targetFile=" + targetFile + ", durationMillis="
+				+ getDurationMillis() + "]";
+	}
+}
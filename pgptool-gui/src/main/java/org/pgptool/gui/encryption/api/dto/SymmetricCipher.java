@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.api.dto;
+
+/**
+ * Symmetric cipher used to encrypt file content (session key algorithm).
+ * 
+ * NOTE: Enum constants names are persisted as part of
+ * EncryptionDialogParameters, do not rename them
+ * 
+ * @author Sergey Karpushin
+ */
+public enum SymmetricCipher {
+	AES_128("AES-128", 128), AES_192("AES-192", 192), AES_256("AES-256", 256), TWOFISH("Twofish", 256),
+	/**
+	 * Legacy cipher. Kept for compatibility with older PGP implementations. It's
+	 * considerably slower than AES which benefits from hardware acceleration
+	 */
+	CAST5("CAST5", 128);
+
+	public static final SymmetricCipher DEFAULT = AES_256;
+
+	private final String displayName;
+	private final int keyBits;
+
+	private SymmetricCipher(String displayName, int keyBits) {
+		this.displayName = displayName;
+		this.keyBits = keyBits;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	public int getKeyBits() {
+		return keyBits;
+	}
+
+	@Override
+	public String toString() {
+		return displayName;
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import org.apache.log4j.Logger;
+import org.pgptool.gui.encryption.api.CompressionPolicy;
+import org.pgptool.gui.encryption.api.dto.CompressionAlgorithm;
+import org.pgptool.gui.encryption.api.dto.CompressionSettings;
+import org.springframework.util.StringUtils;
+
+/**
+ * Picks compression based on a sample of the data. Well-known compressed
+ * formats are recognized by their magic bytes, everything else is judged by
+ * Shannon entropy of the sample.
+ * 
+ * User might override decision using {@link #setCompressionOverride(String)}
+ * and {@link #setCompressionLevelOverride(int)}
+ * 
+ * @author Sergey Karpushin
+ */
+public class CompressionPolicyAdaptiveImpl implements CompressionPolicy {
+	private static Logger log = Logger.getLogger(CompressionPolicyAdaptiveImpl.class);
+
+	public static final String AUTO = "auto";
+
+	/**
+	 * Bits per byte above which data considered incompressible. Deflate rarely
+	 * gains more than a couple of percent on such data
+	 */
+	private static final double ENTROPY_INCOMPRESSIBLE = 7.5;
+	/**
+	 * Bits per byte above which data compresses only moderately, so it's not
+	 * worth spending CPU time on higher levels
+	 */
+	private static final double ENTROPY_MODERATE = 6.0;
+	/**
+	 * Samples shorter than that are not statistically meaningful
+	 */
+	private static final int MIN_SAMPLE_FOR_ENTROPY = 512;
+
+	private static final int[][] COMPRESSED_FORMATS_MAGIC = new int[][] { //
+			{ 0xFF, 0xD8, 0xFF }, // jpeg
+			{ 0x89, 'P', 'N', 'G' }, // png
+			{ 'G', 'I', 'F', '8' }, // gif
+			{ 'P', 'K', 0x03, 0x04 }, // zip, jar, docx, xlsx, odt, apk...
+			{ 0x1F, 0x8B }, // gzip
+			{ 'B', 'Z', 'h' }, // bzip2
+			{ 0xFD, '7', 'z', 'X', 'Z', 0x00 }, // xz
+			{ '7', 'z', 0xBC, 0xAF, 0x27, 0x1C }, // 7z
+			{ 'R', 'a', 'r', '!' }, // rar
+			{ 0x28, 0xB5, 0x2F, 0xFD }, // zstd
+			{ 'O', 'g', 'g', 'S' }, // ogg
+			{ 'f', 'L', 'a', 'C' }, // flac
+			{ 'I', 'D', '3' }, // mp3
+			{ 0x1A, 0x45, 0xDF, 0xA3 }, // mkv, webm
+			{ -1, -1, -1, -1, 'f', 't', 'y', 'p' }, // mp4, mov, m4a, heic
+	};
+
+	private CompressionAlgorithm compressionOverride;
+	private int compressionLevelOverride = CompressionSettings.DEFAULT_LEVEL;
+
+	@Override
+	public CompressionSettings chooseCompression(String sourceName, byte[] sample) {
+		CompressionSettings ret = doChooseCompression(sample);
+		if (compressionOverride != null) {
+			ret = new CompressionSettings(compressionOverride, compressionLevelOverride);
+		} else if (compressionLevelOverride != CompressionSettings.DEFAULT_LEVEL
+				&& ret.getAlgorithm() != CompressionAlgorithm.NONE) {
+			ret = new CompressionSettings(ret.getAlgorithm(), compressionLevelOverride);
+		}
+		log.debug("Compression chosen for " + sourceName + ": " + ret);
+		return ret;
+	}
+
+	private CompressionSettings doChooseCompression(byte[] sample) {
+		if (isKnownCompressedFormat(sample)) {
+			return CompressionSettings.NONE;
+		}
+		if (sample.length < MIN_SAMPLE_FOR_ENTROPY) {
+			return new CompressionSettings(CompressionAlgorithm.ZIP, CompressionSettings.DEFAULT_LEVEL);
+		}
+
+		double entropy = estimateEntropy(sample);
+		if (entropy > ENTROPY_INCOMPRESSIBLE) {
+			return CompressionSettings.NONE;
+		}
+		if (entropy > ENTROPY_MODERATE) {
+			return new CompressionSettings(CompressionAlgorithm.ZIP, CompressionSettings.BEST_SPEED);
+		}
+		return new CompressionSettings(CompressionAlgorithm.ZIP, CompressionSettings.DEFAULT_LEVEL);
+	}
+
+	protected static boolean isKnownCompressedFormat(byte[] sample) {
+		for (int[] magic : COMPRESSED_FORMATS_MAGIC) {
+			if (sample.length < magic.length) {
+				continue;
+			}
+			boolean matches = true;
+			for (int i = 0; i < magic.length && matches; i++) {
+				matches = magic[i] == -1 || (sample[i] & 0xFF) == magic[i];
+			}
+			if (matches) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Shannon entropy in bits per byte, from 0 (constant) to 8 (random)
+	 */
+	protected static double estimateEntropy(byte[] sample) {
+		if (sample.length == 0) {
+			return 0;
+		}
+
+		int[] counts = new int[256];
+		for (byte b : sample) {
+			counts[b & 0xFF]++;
+		}
+
+		double ret = 0;
+		for (int count : counts) {
+			if (count == 0) {
+				continue;
+			}
+			double p = (double) count / sample.length;
+			ret -= p * Math.log(p);
+		}
+		return ret / Math.log(2);
+	}
+
+	public CompressionAlgorithm getCompressionOverride() {
+		return compressionOverride;
+	}
+
+	/**
+	 * @param compressionOverride
+	 *            one of {@link CompressionAlgorithm} names (case insensitive) to
+	 *            always use it, or {@link #AUTO} (or empty) to let policy decide
+	 */
+	public void setCompressionOverride(String compressionOverride) {
+		if (!StringUtils.hasText(compressionOverride) || AUTO.equalsIgnoreCase(compressionOverride.trim())) {
+			this.compressionOverride = null;
+			return;
+		}
+		this.compressionOverride = CompressionAlgorithm.valueOf(compressionOverride.trim().toUpperCase());
+	}
+
+	public int getCompressionLevelOverride() {
+		return compressionLevelOverride;
+	}
+
+	/**
+	 * @param compressionLevelOverride
+	 *            level to use instead of one chosen by policy or
+	 *            {@link CompressionSettings#DEFAULT_LEVEL} to let policy decide
+	 */
+	public void setCompressionLevelOverride(int compressionLevelOverride) {
+		this.compressionLevelOverride = compressionLevelOverride;
+	}
+}
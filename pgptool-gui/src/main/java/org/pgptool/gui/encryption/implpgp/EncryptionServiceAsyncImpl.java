@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+import org.pgptool.gui.bkgoperation.Progress;
+import org.pgptool.gui.bkgoperation.ProgressHandler;
+import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.encryption.api.EncryptionServiceAsync;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.OperationResult;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
+import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisor;
+import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisorImpl;
+import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisor;
+import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisorImpl;
+import org.pgptool.gui.filecomparison.MessageDigestFactory;
+import org.pgptool.gui.tools.FileUtilsEx;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link EncryptionServiceAsync} which performs operations using
+ * {@link EncryptionService} on a fixed pool of daemon threads
+ * 
+ * @author Sergey Karpushin
+ */
+public class EncryptionServiceAsyncImpl implements EncryptionServiceAsync, InitializingBean, DisposableBean {
+	private static Logger log = Logger.getLogger(EncryptionServiceAsyncImpl.class);
+
+	private EncryptionService encryptionService;
+	private MessageDigestFactory messageDigestFactory;
+	private int threadsCount = Runtime.getRuntime().availableProcessors();
+
+	private ExecutorService executorService;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Preconditions.checkState(threadsCount > 0, "threadsCount must be positive");
+		executorService = Executors.newFixedThreadPool(threadsCount,
+				new ThreadFactoryBuilder().setNameFormat("EncryptionAsync-%d").setDaemon(true).build());
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		executorService.shutdownNow();
+	}
+
+	@Override
+	public CompletableFuture<OperationResult> encryptAsync(String sourceFile, String targetFile,
+			Collection<Key> recipients, SymmetricCipher optionalCipher, ProgressHandler optionalProgressHandler) {
+		CompletableFuture<OperationResult> ret = new CompletableFuture<>();
+		executorService.execute(() -> {
+			if (ret.isDone()) {
+				// cancelled before started
+				return;
+			}
+
+			try {
+				long startedAt = System.currentTimeMillis();
+				ChecksumCalcInputStreamSupervisor inputStreamSupervisor = new ChecksumCalcInputStreamSupervisorImpl(
+						messageDigestFactory);
+				ChecksumCalcOutputStreamSupervisor outputStreamSupervisor = new ChecksumCalcOutputStreamSupervisorImpl(
+						messageDigestFactory);
+				ProgressHandler progressHandler = cancelableBy(ret, optionalProgressHandler);
+				FileUtilsEx.baitAndSwitch(targetFile, x -> encryptionService.encrypt(sourceFile, x, recipients,
+						optionalCipher, progressHandler, inputStreamSupervisor, outputStreamSupervisor));
+				ret.complete(new OperationResult(sourceFile, targetFile, inputStreamSupervisor.getFingerprint(),
+						outputStreamSupervisor.getFingerprint(), startedAt, System.currentTimeMillis()));
+			} catch (Throwable t) {
+				log.debug("Encryption failed " + sourceFile, t);
+				ret.completeExceptionally(t);
+			}
+		});
+		return ret;
+	}
+
+	@Override
+	public CompletableFuture<OperationResult> decryptAsync(String sourceFile, String targetFile,
+			PasswordDeterminedForKey keyAndPassword, ProgressHandler optionalProgressHandler) {
+		CompletableFuture<OperationResult> ret = new CompletableFuture<>();
+		executorService.execute(() -> {
+			if (ret.isDone()) {
+				// cancelled before started
+				return;
+			}
+
+			try {
+				long startedAt = System.currentTimeMillis();
+				// NOTE: Source checksum is calculated while it's read for decryption, so
+				// source is read from disk only once
+				ChecksumCalcInputStreamSupervisor inputStreamSupervisor = new ChecksumCalcInputStreamSupervisorImpl(
+						messageDigestFactory);
+				ChecksumCalcOutputStreamSupervisor outputStreamSupervisor = new ChecksumCalcOutputStreamSupervisorImpl(
+						messageDigestFactory);
+				ProgressHandler progressHandler = cancelableBy(ret, optionalProgressHandler);
+				FileUtilsEx.baitAndSwitch(targetFile, x -> encryptionService.decrypt(sourceFile, x, keyAndPassword,
+						progressHandler, inputStreamSupervisor, outputStreamSupervisor));
+				ret.complete(new OperationResult(sourceFile, targetFile, inputStreamSupervisor.getFingerprint(),
+						outputStreamSupervisor.getFingerprint(), startedAt, System.currentTimeMillis()));
+			} catch (Throwable t) {
+				log.debug("Decryption failed " + sourceFile, t);
+				ret.completeExceptionally(t);
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * @return progress handler which requests cancellation of the operation once
+	 *         future is cancelled. Progress is also reported to
+	 *         optionalProgressHandler if it's provided
+	 */
+	private static ProgressHandler cancelableBy(CompletableFuture<?> future, ProgressHandler optionalProgressHandler) {
+		return new ProgressHandler() {
+			@Override
+			public void onProgressUpdated(Progress progress) {
+				if (future.isCancelled()) {
+					progress.requestCancelation();
+				}
+				if (optionalProgressHandler != null) {
+					optionalProgressHandler.onProgressUpdated(progress);
+				}
+			}
+		};
+	}
+
+	public EncryptionService getEncryptionService() {
+		return encryptionService;
+	}
+
+	@Autowired
+	public void setEncryptionService(EncryptionService encryptionService) {
+		this.encryptionService = encryptionService;
+	}
+
+	public MessageDigestFactory getMessageDigestFactory() {
+		return messageDigestFactory;
+	}
+
+	@Autowired
+	public void setMessageDigestFactory(MessageDigestFactory messageDigestFactory) {
+		this.messageDigestFactory = messageDigestFactory;
+	}
+
+	public int getThreadsCount() {
+		return threadsCount;
+	}
+
+	/**
+	 * @param threadsCount
+	 *            how many operations can be performed concurrently. Defaults to
+	 *            number of available processors
+	 */
+	public void setThreadsCount(int threadsCount) {
+		this.threadsCount = threadsCount;
+	}
+}
@@ -19,14 +19,18 @@ package org.pgptool.gui.encryption.implpgp;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
@@ -37,6 +41,12 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import javax.crypto.Cipher;
+
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.io.output.WriterOutputStream;
 import org.apache.log4j.Logger;
 import org.bouncycastle.bcpg.ArmoredOutputStream;
 import org.bouncycastle.openpgp.PGPCompressedData;
@@ -59,28 +69,38 @@ import org.bouncycastle.openpgp.PGPSignatureList;
 import org.bouncycastle.openpgp.PGPUtil;
 import org.bouncycastle.openpgp.bc.BcPGPObjectFactory;
 import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
-import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
+import org.bouncycastle.openpgp.operator.PGPDataEncryptorBuilder;
 import org.bouncycastle.openpgp.operator.bc.BcPGPDataEncryptorBuilder;
-import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
 import org.bouncycastle.openpgp.operator.bc.BcPublicKeyDataDecryptorFactory;
 import org.bouncycastle.openpgp.operator.bc.BcPublicKeyKeyEncryptionMethodGenerator;
+import org.bouncycastle.openpgp.operator.jcajce.JcePGPDataEncryptorBuilder;
 import org.pgptool.gui.bkgoperation.Progress;
 import org.pgptool.gui.bkgoperation.Progress.Updater;
 import org.pgptool.gui.bkgoperation.ProgressHandler;
 import org.pgptool.gui.bkgoperation.UserRequestedCancellationException;
+import org.pgptool.gui.encryption.api.CompressionPolicy;
+import org.pgptool.gui.encryption.api.DecryptionTargetResolver;
 import org.pgptool.gui.encryption.api.EncryptionService;
 import org.pgptool.gui.encryption.api.InputStreamSupervisor;
 import org.pgptool.gui.encryption.api.InputStreamSupervisorImpl;
 import org.pgptool.gui.encryption.api.OutputStreamSupervisor;
 import org.pgptool.gui.encryption.api.OutputStreamSupervisorImpl;
+import org.pgptool.gui.encryption.api.dto.CompressionAlgorithm;
+import org.pgptool.gui.encryption.api.dto.CompressionSettings;
+import org.pgptool.gui.encryption.api.dto.CompressionStats;
 import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
 import org.pgptool.gui.tools.IoStreamUtils;
+import org.pgptool.gui.tools.PipelinedInputStream;
+import org.pgptool.gui.tools.PipelinedOutputStream;
 import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 import org.summerb.approaches.security.api.exceptions.InvalidPasswordException;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CountingInputStream;
 
 /**
@@ -95,22 +115,63 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 	private static Logger log = Logger.getLogger(EncryptionServicePgpImpl.class);
 	private static final int BUFFER_SIZE = 1 << 16;
 
+	/**
+	 * Longest key JCE allows. Java 8 runtimes prior to 8u161 have limited crypto
+	 * policy by default, which allows only 128 bit keys
+	 */
+	private static final int MAX_JCE_KEY_BITS = getMaxJceKeyBits();
+
+	/**
+	 * Number of chunks (of {@link #BUFFER_SIZE}) each pipeline stage can hold.
+	 * Caps memory used by pipelined mode at 1MB per stage
+	 */
+	private static final int PIPELINE_CHUNKS = 16;
+
+	private CompressionPolicy compressionPolicy = new CompressionPolicyAdaptiveImpl();
+	private UnlockedKeysCachePgpImpl unlockedKeysCache;
+	private RecipientsIndex recipientsIndex;
+	private boolean pipelined;
+
 	@Override
 	public String encryptText(String sourceText, Collection<Key> recipients) {
+		return encryptText(sourceText, recipients, null);
+	}
+
+	@Override
+	public String encryptText(String sourceText, Collection<Key> recipients, SymmetricCipher optionalCipher) {
+		StringBuilderWriter ret = new StringBuilderWriter();
+		encryptText(new StringReader(sourceText), ret, recipients, optionalCipher);
+		return ret.toString();
+	}
+
+	@Override
+	public void encryptText(Reader source, Writer target, Collection<Key> recipients, SymmetricCipher optionalCipher) {
+		try {
+			WriterOutputStream targetStream = new WriterOutputStream(target, StandardCharsets.UTF_8);
+			encryptText(new ReaderInputStream(source, StandardCharsets.UTF_8), targetStream, recipients,
+					optionalCipher);
+			// NOTE: Not closing it since it would close target
+			targetStream.flush();
+		} catch (Throwable t) {
+			Throwables.throwIfUnchecked(t);
+			throw new RuntimeException("Encryption failed", t);
+		}
+	}
+
+	@Override
+	public void encryptText(InputStream source, OutputStream target, Collection<Key> recipients,
+			SymmetricCipher optionalCipher) {
 		try {
 			PGPEncryptedDataGenerator dataGenerator = buildEncryptedDataGenerator(
-					buildKeysListForEncryption(recipients));
-
-			SourceInfo encryptionSourceInfo = new SourceInfo("text.asc", sourceText.length(),
-					System.currentTimeMillis());
-			ByteArrayOutputStream pOut = new ByteArrayOutputStream();
-			ByteArrayInputStream pIn = new ByteArrayInputStream(sourceText.getBytes("UTF-8"));
-			ArmoredOutputStream armoredOut = new ArmoredOutputStream(pOut);
-			doEncryptFile(pIn, encryptionSourceInfo, armoredOut, dataGenerator, null, PGPLiteralData.BINARY);
-			pIn.close();
-			armoredOut.flush();
+					buildKeysListForEncryption(recipients), optionalCipher);
+
+			// NOTE: Size is unknown up front, it's used only for progress reporting
+			SourceInfo encryptionSourceInfo = new SourceInfo("text.asc", 0, System.currentTimeMillis());
+			ArmoredOutputStream armoredOut = new ArmoredOutputStream(target);
+			doEncryptFile(source, encryptionSourceInfo, armoredOut, dataGenerator, null, PGPLiteralData.BINARY);
+			// NOTE: It doesn't close underlying stream
 			armoredOut.close();
-			return pOut.toString();
+			target.flush();
 		} catch (Throwable t) {
 			throw new RuntimeException("Encryption failed", t);
 		}
@@ -120,6 +181,17 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 	public void encrypt(String sourceFile, String targetFile, Collection<Key> recipients,
 			ProgressHandler optionalProgressHandler, InputStreamSupervisor optionalInputStreamSupervisor,
 			OutputStreamSupervisor optionalOutputStreamSupervisor) throws UserRequestedCancellationException {
+		encrypt(sourceFile, targetFile, recipients, null, optionalProgressHandler, optionalInputStreamSupervisor,
+				optionalOutputStreamSupervisor);
+	}
+
+	@Override
+	public void encrypt(String sourceFile, String targetFile, Collection<Key> recipients,
+			SymmetricCipher optionalCipher, ProgressHandler optionalProgressHandler,
+			InputStreamSupervisor optionalInputStreamSupervisor,
+			OutputStreamSupervisor optionalOutputStreamSupervisor) throws UserRequestedCancellationException {
+		InputStream in = null;
+		OutputStream out = null;
 		try {
 			InputStreamSupervisor inputStreamSupervisor = optionalInputStreamSupervisor != null
 					? optionalInputStreamSupervisor
@@ -135,14 +207,18 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 			}
 
 			PGPEncryptedDataGenerator dataGenerator = buildEncryptedDataGenerator(
-					buildKeysListForEncryption(recipients));
+					buildKeysListForEncryption(recipients), optionalCipher);
 
-			OutputStream out = new BufferedOutputStream(outputStreamSupervisor.get(targetFile));
-			InputStream in = inputStreamSupervisor.get(sourceFile);
+			out = buildTargetStream(outputStreamSupervisor.get(targetFile));
+			in = buildSourceStream(inputStreamSupervisor.get(sourceFile));
 			doEncryptFile(in, SourceInfo.fromFile(sourceFile), out, dataGenerator, progress, PGPLiteralData.BINARY);
 			out.close();
 			in.close();
 		} catch (Throwable t) {
+			// NOTE: Streams must be closed before target is deleted. Also in pipelined mode
+			// this is what stops background threads
+			IoStreamUtils.safeClose(out);
+			IoStreamUtils.safeClose(in);
 			File fileToDelete = new File(targetFile);
 			if (fileToDelete.exists() && !fileToDelete.delete()) {
 				log.warn("Failed to delete file after failed encryption: " + targetFile);
@@ -152,17 +228,80 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 		}
 	}
 
-	private static void doEncryptFile(InputStream pIn, SourceInfo encryptionSourceInfo, OutputStream out,
+	private OutputStream buildTargetStream(OutputStream target) {
+		if (!pipelined) {
+			return new BufferedOutputStream(target);
+		}
+		return new PipelinedOutputStream(target, BUFFER_SIZE, PIPELINE_CHUNKS);
+	}
+
+	private InputStream buildSourceStream(InputStream source) {
+		if (!pipelined) {
+			return source;
+		}
+		return new PipelinedInputStream(source, BUFFER_SIZE, PIPELINE_CHUNKS);
+	}
+
+	private void doEncryptFile(InputStream pIn, SourceInfo encryptionSourceInfo, OutputStream out,
 			PGPEncryptedDataGenerator encDataGen, Updater progress, char outputType)
 			throws IOException, NoSuchProviderException, PGPException, UserRequestedCancellationException {
+		PushbackInputStream sampledIn = new PushbackInputStream(pIn, CompressionPolicy.SAMPLE_SIZE);
+		CompressionSettings compression = compressionPolicy.chooseCompression(encryptionSourceInfo.getName(),
+				readSample(sampledIn, CompressionPolicy.SAMPLE_SIZE));
+
 		OutputStream encryptedStream = encDataGen.open(out, new byte[BUFFER_SIZE]);
-		PGPCompressedDataGenerator compressedDataGen = new PGPCompressedDataGenerator(PGPCompressedData.ZIP);
-		OutputStream compressedStream = compressedDataGen.open(encryptedStream);
+		MeteredOutputStream encryptedMetered = new MeteredOutputStream(encryptedStream);
+		PGPCompressedDataGenerator compressedDataGen = null;
+		OutputStream literalDataTarget = encryptedMetered;
+		if (compression.getAlgorithm() != CompressionAlgorithm.NONE) {
+			// NOTE: Otherwise literal data is written directly into encrypted stream, this
+			// is perfectly valid per RFC 4880 and saves us from useless packet
+			compressedDataGen = new PGPCompressedDataGenerator(toPgpCompressionAlgorithm(compression.getAlgorithm()),
+					compression.getLevel());
+			literalDataTarget = compressedDataGen.open(encryptedMetered);
+		}
+		MeteredOutputStream literalDataMetered = new MeteredOutputStream(literalDataTarget);
+
 		estimateFullOperationSize(encryptionSourceInfo, progress);
-		writeFileToLiteralData(pIn, encryptionSourceInfo, compressedStream, outputType, new byte[BUFFER_SIZE],
-				progress);
-		compressedDataGen.close();
+		writeFileToLiteralData(sampledIn, encryptionSourceInfo, literalDataMetered, outputType,
+				new byte[BUFFER_SIZE], progress);
+		long nanosSpent = literalDataMetered.getNanosSpent();
+		if (compressedDataGen != null) {
+			long closeStartedAt = System.nanoTime();
+			compressedDataGen.close();
+			nanosSpent += System.nanoTime() - closeStartedAt;
+		}
 		encryptedStream.close();
+
+		CompressionStats stats = new CompressionStats(compression, literalDataMetered.getBytesWritten(),
+				encryptedMetered.getBytesWritten(), Math.max(0, nanosSpent - encryptedMetered.getNanosSpent()));
+		log.info("Compression stats for " + encryptionSourceInfo.getName() + ": " + stats);
+	}
+
+	private static byte[] readSample(PushbackInputStream in, int sampleSize) throws IOException {
+		byte[] ret = new byte[sampleSize];
+		int total = 0;
+		int read;
+		while (total < sampleSize && (read = in.read(ret, total, sampleSize - total)) > 0) {
+			total += read;
+		}
+		in.unread(ret, 0, total);
+		return total == sampleSize ? ret : Arrays.copyOf(ret, total);
+	}
+
+	private static int toPgpCompressionAlgorithm(CompressionAlgorithm algorithm) {
+		switch (algorithm) {
+		case NONE:
+			return PGPCompressedData.UNCOMPRESSED;
+		case ZIP:
+			return PGPCompressedData.ZIP;
+		case ZLIB:
+			return PGPCompressedData.ZLIB;
+		case BZIP2:
+			return PGPCompressedData.BZIP2;
+		default:
+			throw new IllegalArgumentException("Compression algorithm is not supported: " + algorithm);
+		}
 	}
 
 	private static void estimateFullOperationSize(SourceInfo encryptionSourceInfo, Updater progress) {
@@ -229,9 +368,10 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 		return ret;
 	}
 
-	private static PGPEncryptedDataGenerator buildEncryptedDataGenerator(Collection<PGPPublicKey> encKeys) {
-		BcPGPDataEncryptorBuilder builder = new BcPGPDataEncryptorBuilder(PGPEncryptedData.CAST5)
-				.setSecureRandom(new SecureRandom()).setWithIntegrityPacket(true);
+	private static PGPEncryptedDataGenerator buildEncryptedDataGenerator(Collection<PGPPublicKey> encKeys,
+			SymmetricCipher optionalCipher) {
+		SymmetricCipher cipher = optionalCipher != null ? optionalCipher : SymmetricCipher.DEFAULT;
+		PGPDataEncryptorBuilder builder = buildDataEncryptorBuilder(cipher, MAX_JCE_KEY_BITS);
 		PGPEncryptedDataGenerator encryptedDataGenerator = new PGPEncryptedDataGenerator(builder);
 
 		for (PGPPublicKey encKey : encKeys) {
@@ -240,21 +380,86 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 		return encryptedDataGenerator;
 	}
 
+	static PGPDataEncryptorBuilder buildDataEncryptorBuilder(SymmetricCipher cipher, int maxJceKeyBits) {
+		if (cipher.getKeyBits() > maxJceKeyBits) {
+			// NOTE: JCE policy limits key length for all providers, including BC. BC
+			// lightweight impl is slower, but it's not subject to that policy
+			return new BcPGPDataEncryptorBuilder(toPgpAlgorithm(cipher)).setSecureRandom(new SecureRandom())
+					.setWithIntegrityPacket(true);
+		}
+		// NOTE: Jce builder is used intentionally. Provider is not specified so that
+		// AES will be served by the JRE provider which is hardware accelerated, BC
+		// lightweight impl is several times slower. Other ciphers will come from BC
+		if (!isAes(cipher)) {
+			KeyRingServicePgpImpl.ensureBouncyCastleProviderRegistered();
+		}
+		return new JcePGPDataEncryptorBuilder(toPgpAlgorithm(cipher)).setSecureRandom(new SecureRandom())
+				.setWithIntegrityPacket(true);
+	}
+
+	private static boolean isAes(SymmetricCipher cipher) {
+		return cipher == SymmetricCipher.AES_128 || cipher == SymmetricCipher.AES_192
+				|| cipher == SymmetricCipher.AES_256;
+	}
+
+	private static int getMaxJceKeyBits() {
+		try {
+			int ret = Cipher.getMaxAllowedKeyLength("AES");
+			if (ret < SymmetricCipher.DEFAULT.getKeyBits()) {
+				log.info("JCE crypto policy is limited to " + ret + " bit keys, BC lightweight impl will be used for "
+						+ "ciphers with longer keys");
+			}
+			return ret;
+		} catch (NoSuchAlgorithmException e) {
+			log.warn("Failed to determine JCE key length limit, BC lightweight impl will be used", e);
+			return 0;
+		}
+	}
+
+	private static int toPgpAlgorithm(SymmetricCipher cipher) {
+		switch (cipher) {
+		case AES_128:
+			return PGPEncryptedData.AES_128;
+		case AES_192:
+			return PGPEncryptedData.AES_192;
+		case AES_256:
+			return PGPEncryptedData.AES_256;
+		case TWOFISH:
+			return PGPEncryptedData.TWOFISH;
+		case CAST5:
+			return PGPEncryptedData.CAST5;
+		default:
+			throw new IllegalArgumentException("Cipher is not supported: " + cipher);
+		}
+	}
+
 	@Override
 	public Set<String> findKeyIdsForDecryption(String filePathName) throws SymmetricEncryptionIsNotSupportedException {
 		Preconditions.checkArgument(StringUtils.hasText(filePathName) && new File(filePathName).exists(),
 				"filePathName has to point to existing file");
 		log.debug("Looking for decryption keys for file " + filePathName);
 
+		File file = new File(filePathName);
+		if (recipientsIndex != null) {
+			Set<String> ret = recipientsIndex.find(file);
+			if (ret != null) {
+				return ret;
+			}
+		}
+
 		FileInputStream stream = null;
 		try {
-			stream = new FileInputStream(new File(filePathName));
+			stream = new FileInputStream(file);
 		} catch (Throwable t) {
 			throw new RuntimeException("Failed to open file " + filePathName, t);
 		}
 
 		try {
-			return findKeyIdsForDecryption(stream);
+			Set<String> ret = findKeyIdsForDecryption(stream);
+			if (recipientsIndex != null) {
+				recipientsIndex.put(file, ret);
+			}
+			return ret;
 		} finally {
 			IoStreamUtils.safeClose(stream);
 		}
@@ -300,40 +505,76 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 	@Override
 	public String decryptText(String encryptedText, PasswordDeterminedForKey keyAndPassword)
 			throws InvalidPasswordException {
+		Preconditions.checkArgument(StringUtils.hasText(encryptedText), "encryptedText required");
+		StringBuilderWriter ret = new StringBuilderWriter();
+		decryptText(new StringReader(encryptedText), ret, keyAndPassword);
+		return ret.toString();
+	}
+
+	@Override
+	public void decryptText(Reader encryptedText, Writer target, PasswordDeterminedForKey keyAndPassword)
+			throws InvalidPasswordException {
+		try {
+			WriterOutputStream targetStream = new WriterOutputStream(target, StandardCharsets.UTF_8);
+			decryptText(new ReaderInputStream(encryptedText, StandardCharsets.UTF_8), targetStream, keyAndPassword);
+			// NOTE: Not closing it since it would close target
+			targetStream.flush();
+		} catch (Throwable t) {
+			Throwables.throwIfInstanceOf(t, InvalidPasswordException.class);
+			Throwables.throwIfUnchecked(t);
+			throw new RuntimeException("Text decryption failed", t);
+		}
+	}
+
+	@Override
+	public void decryptText(InputStream encryptedText, OutputStream target, PasswordDeterminedForKey keyAndPassword)
+			throws InvalidPasswordException {
 		log.debug("Decrytping text");
 
 		Key decryptionKey = keyAndPassword.getMatchedKey();
 		String passphrase = keyAndPassword.getPassword();
 
-		Preconditions.checkArgument(StringUtils.hasText(encryptedText), "encryptedText required");
+		Preconditions.checkArgument(encryptedText != null, "encryptedText required");
+		Preconditions.checkArgument(target != null, "target required");
 		Preconditions.checkArgument(decryptionKey != null, "decryption key must be provided");
 		Preconditions.checkArgument(StringUtils.hasText(passphrase), "Passphrase must be provided");
 
-		InputStream in = null;
 		try {
 			PGPSecretKey secretKey = KeyDataPgp.get(decryptionKey)
 					.findSecretKeyById(keyAndPassword.getDecryptionKeyId());
-			PGPPrivateKey privateKey = getPrivateKey(passphrase, secretKey);
+			PGPPrivateKey privateKey = getPrivateKey(keyAndPassword, secretKey);
 
-			in = new ByteArrayInputStream(encryptedText.getBytes("UTF-8"));
+			InputStream in = new BufferedInputStream(encryptedText);
 			PGPPublicKeyEncryptedData publicKeyEncryptedData = getPublicKeyEncryptedDataByKeyId(in, secretKey);
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-			decryptStream(publicKeyEncryptedData, privateKey, outputStream, null, null);
-			return outputStream.toString("UTF-8");
+			decryptStream(publicKeyEncryptedData, privateKey, new DecryptionTarget(new CloseShieldOutputStream(target)),
+					null, null);
+			target.flush();
 		} catch (Throwable t) {
 			Throwables.throwIfInstanceOf(t, InvalidPasswordException.class);
 			log.error("Text decryption failed", t);
 			throw new RuntimeException("Text decryption failed", t);
-		} finally {
-			IoStreamUtils.safeClose(in);
 		}
 	}
 
 	@Override
 	public void decrypt(String sourceFile, String targetFile, PasswordDeterminedForKey keyAndPassword,
-			ProgressHandler optionalProgressHandler, OutputStreamSupervisor optionalOutputStreamSupervisor)
+			ProgressHandler optionalProgressHandler, InputStreamSupervisor optionalInputStreamSupervisor,
+			OutputStreamSupervisor optionalOutputStreamSupervisor)
+			throws InvalidPasswordException, UserRequestedCancellationException {
+		Preconditions.checkArgument(StringUtils.hasText(targetFile), "Target file name must be provided");
+		decrypt(sourceFile, (initialFileName, modificationTime) -> targetFile, keyAndPassword,
+				optionalProgressHandler, optionalInputStreamSupervisor, optionalOutputStreamSupervisor);
+	}
+
+	@Override
+	public String decrypt(String sourceFile, DecryptionTargetResolver targetResolver,
+			PasswordDeterminedForKey keyAndPassword, ProgressHandler optionalProgressHandler,
+			InputStreamSupervisor optionalInputStreamSupervisor, OutputStreamSupervisor optionalOutputStreamSupervisor)
 			throws InvalidPasswordException, UserRequestedCancellationException {
 
+		InputStreamSupervisor inputStreamSupervisor = optionalInputStreamSupervisor != null
+				? optionalInputStreamSupervisor
+				: new InputStreamSupervisorImpl();
 		OutputStreamSupervisor outputStreamSupervisor = optionalOutputStreamSupervisor != null
 				? optionalOutputStreamSupervisor
 				: new OutputStreamSupervisorImpl();
@@ -353,21 +594,27 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 
 		Preconditions.checkArgument(StringUtils.hasText(sourceFile) && new File(sourceFile).exists(),
 				"Source file name must be correct");
-		Preconditions.checkArgument(StringUtils.hasText(targetFile), "Target file name must be provided");
+		Preconditions.checkArgument(targetResolver != null, "Target resolver must be provided");
 		Preconditions.checkArgument(decryptionKey != null, "decryption key must be provided");
 		Preconditions.checkArgument(StringUtils.hasText(passphrase), "Passphrase must be provided");
 
 		InputStream in = null;
+		DecryptionTarget target = new DecryptionTarget(targetResolver, outputStreamSupervisor);
 		try {
 			PGPSecretKey secretKey = KeyDataPgp.get(decryptionKey)
 					.findSecretKeyById(keyAndPassword.getDecryptionKeyId());
-			PGPPrivateKey privateKey = getPrivateKey(passphrase, secretKey);
+			PGPPrivateKey privateKey = getPrivateKey(keyAndPassword, secretKey);
 
-			CountingInputStream countingStream = new CountingInputStream(new FileInputStream(sourceFile));
+			CountingInputStream countingStream = new CountingInputStream(
+					buildSourceStream(inputStreamSupervisor.get(sourceFile)));
 			in = new BufferedInputStream(countingStream);
 			PGPPublicKeyEncryptedData publicKeyEncryptedData = getPublicKeyEncryptedDataByKeyId(in, secretKey);
-			OutputStream outputStream = outputStreamSupervisor.get(targetFile);
-			decryptStream(publicKeyEncryptedData, privateKey, outputStream, progress, countingStream);
+			decryptStream(publicKeyEncryptedData, privateKey, target, progress, countingStream);
+			if (optionalInputStreamSupervisor != null) {
+				// NOTE: Decryption might not read trailing packets, but supervisor
+				// might need to see whole file (i.e. to calculate its checksum)
+				ByteStreams.exhaust(in);
+			}
 
 			if (optionalProgressHandler != null) {
 				// NOTE: The problem with decryption is that BC doesn't provide API to get
@@ -376,10 +623,14 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 				// explicitly set 100% after operation was completed
 				progress.updateTotalSteps(sourceSize);
 			}
+			return target.targetFile;
 		} catch (Throwable t) {
-			File fileToDelete = new File(targetFile);
-			if (fileToDelete.exists() && !fileToDelete.delete()) {
-				log.warn("Failed to delete file after failed decryption: " + targetFile);
+			IoStreamUtils.safeClose(target.outputStream);
+			if (target.outputStream != null) {
+				File fileToDelete = new File(target.targetFile);
+				if (fileToDelete.exists() && !fileToDelete.delete()) {
+					log.warn("Failed to delete file after failed decryption: " + target.targetFile);
+				}
 			}
 
 			Throwables.throwIfInstanceOf(t, InvalidPasswordException.class);
@@ -391,6 +642,44 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 		}
 	}
 
+	/**
+	 * Target of the decryption. Output stream is opened only once initial file
+	 * name is known
+	 */
+	private class DecryptionTarget {
+		private final DecryptionTargetResolver targetResolver;
+		private final OutputStreamSupervisor outputStreamSupervisor;
+		private String targetFile;
+		private OutputStream outputStream;
+
+		private DecryptionTarget(DecryptionTargetResolver targetResolver,
+				OutputStreamSupervisor outputStreamSupervisor) {
+			this.targetResolver = targetResolver;
+			this.outputStreamSupervisor = outputStreamSupervisor;
+		}
+
+		private DecryptionTarget(OutputStream outputStream) {
+			this.targetResolver = null;
+			this.outputStreamSupervisor = null;
+			this.outputStream = outputStream;
+		}
+
+		private OutputStream open(PGPLiteralData literalData) throws IOException {
+			if (targetResolver == null) {
+				return outputStream;
+			}
+			Preconditions.checkState(outputStream == null, "Target is already opened");
+			targetFile = targetResolver.resolveTargetFile(literalData.getFileName(),
+					literalData.getModificationTime());
+			Preconditions.checkState(StringUtils.hasText(targetFile), "Target file name wasn't resolved");
+			outputStream = outputStreamSupervisor.get(targetFile);
+			if (pipelined) {
+				outputStream = new PipelinedOutputStream(outputStream, BUFFER_SIZE, PIPELINE_CHUNKS);
+			}
+			return outputStream;
+		}
+	}
+
 	/**
 	 * decrypt the passed in message stream.
 	 * 
@@ -401,7 +690,7 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 	 *            this stream is passed for progress reporting only, must not be
 	 *            used to actually read data
 	 */
-	private void decryptStream(PGPPublicKeyEncryptedData pbe, PGPPrivateKey privateKey, OutputStream outputStream,
+	private void decryptStream(PGPPublicKeyEncryptedData pbe, PGPPrivateKey privateKey, DecryptionTarget target,
 			Updater optionalProgress, CountingInputStream countingStream) throws UserRequestedCancellationException {
 		try {
 			InputStream clear = pbe.getDataStream(new BcPublicKeyDataDecryptorFactory(privateKey));
@@ -426,10 +715,8 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 				if (message instanceof PGPLiteralData) {
 					PGPLiteralData ld = (PGPLiteralData) message;
 
-					// NOTE: We know initial file name (in case we need it):
-					// ld.getFileName();
 					InputStream unc = ld.getInputStream();
-					OutputStream fOut = new BufferedOutputStream(outputStream);
+					OutputStream fOut = new BufferedOutputStream(target.open(ld));
 					if (optionalProgress != null) {
 						optionalProgress.updateStepInfo("progress.decrypting");
 					}
@@ -495,16 +782,12 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 		}
 	}
 
-	private PGPPrivateKey getPrivateKey(String passphrase, PGPSecretKey secretKey) throws InvalidPasswordException {
-		try {
-			PBESecretKeyDecryptor decryptorFactory = new BcPBESecretKeyDecryptorBuilder(
-					new BcPGPDigestCalculatorProvider()).build(passphrase.toCharArray());
-			PGPPrivateKey privateKey = secretKey.extractPrivateKey(decryptorFactory);
-			return privateKey;
-		} catch (Throwable t) {
-			log.warn("Failed to extract private key. Most likely it because of incorrect passphrase provided", t);
-			throw new InvalidPasswordException();
+	private PGPPrivateKey getPrivateKey(PasswordDeterminedForKey keyAndPassword, PGPSecretKey secretKey)
+			throws InvalidPasswordException {
+		if (unlockedKeysCache != null) {
+			return unlockedKeysCache.unlock(keyAndPassword, secretKey);
 		}
+		return UnlockedKeysCachePgpImpl.extractPrivateKey(secretKey, keyAndPassword.getPassword());
 	}
 
 	@Override
@@ -524,7 +807,7 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 		try {
 			PGPSecretKey secretKey = KeyDataPgp.get(decryptionKey)
 					.findSecretKeyById(keyAndPassword.getDecryptionKeyId());
-			PGPPrivateKey privateKey = getPrivateKey(passphrase, secretKey);
+			PGPPrivateKey privateKey = getPrivateKey(keyAndPassword, secretKey);
 
 			in = new BufferedInputStream(new FileInputStream(encryptedFile));
 			PGPPublicKeyEncryptedData publicKeyEncryptedData = getPublicKeyEncryptedDataByKeyId(in, secretKey);
@@ -582,4 +865,57 @@ public class EncryptionServicePgpImpl implements EncryptionService {
 		}
 	}
 
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	/**
+	 * @param pipelined
+	 *            if true then reading source and writing target will be performed
+	 *            on dedicated threads, so that disk IO overlaps with compression
+	 *            and encryption. Output is exactly the same as in non-pipelined
+	 *            mode
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	public CompressionPolicy getCompressionPolicy() {
+		return compressionPolicy;
+	}
+
+	/**
+	 * Optional. If not set {@link CompressionPolicyAdaptiveImpl} with default
+	 * settings is used
+	 */
+	@Autowired(required = false)
+	public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+		this.compressionPolicy = compressionPolicy;
+	}
+
+	public UnlockedKeysCachePgpImpl getUnlockedKeysCache() {
+		return unlockedKeysCache;
+	}
+
+	/**
+	 * Optional. If not set private key will be extracted from secret key on each
+	 * decryption
+	 */
+	@Autowired(required = false)
+	public void setUnlockedKeysCache(UnlockedKeysCachePgpImpl unlockedKeysCache) {
+		this.unlockedKeysCache = unlockedKeysCache;
+	}
+
+	public RecipientsIndex getRecipientsIndex() {
+		return recipientsIndex;
+	}
+
+	/**
+	 * Optional. If not set encrypted file will be parsed each time
+	 * {@link #findKeyIdsForDecryption(String)} is called
+	 */
+	@Autowired(required = false)
+	public void setRecipientsIndex(RecipientsIndex recipientsIndex) {
+		this.recipientsIndex = recipientsIndex;
+	}
 }
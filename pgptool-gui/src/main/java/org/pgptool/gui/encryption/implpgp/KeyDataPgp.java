@@ -18,14 +18,16 @@
 package org.pgptool.gui.encryption.implpgp;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 
-import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyRing;
 import org.bouncycastle.openpgp.PGPPublicKey;
 import org.bouncycastle.openpgp.PGPPublicKeyRing;
 import org.bouncycastle.openpgp.PGPSecretKey;
@@ -34,19 +36,47 @@ import org.pgptool.gui.encryption.api.dto.Key;
 import org.pgptool.gui.encryption.api.dto.KeyData;
 
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
 
 /**
  * Impl of key data which stores pgp key. For one key pair there will be "ring"
  * of secret info and "ring" for public info. It's weird for naked eye.
  * 
+ * <p>
+ * Rings are not decoded when key is deserialized. Encoded bytes are kept as is
+ * and decoded only when ring is actually needed for crypto. Everything needed
+ * to list and find keys (key ids and capabilities) is serialized along with the
+ * key so that loading key ring at startup doesn't involve Bouncy Castle at all.
+ * 
  * @author Sergey Karpushin
  *
  */
 public class KeyDataPgp extends KeyData {
 	private static final long serialVersionUID = -8446784970537981225L;
 
-	private transient PGPSecretKeyRing secretKeyRing;
-	private transient PGPPublicKeyRing publicKeyRing;
+	/**
+	 * Ids of the primary key and all sub keys. Might be NULL for keys persisted
+	 * by older versions, in such case it'll be lazily calculated from the ring
+	 */
+	private volatile long[] keyIds;
+	private volatile Boolean canBeUsedForEncryption;
+
+	private transient volatile PGPSecretKeyRing secretKeyRing;
+	private transient volatile PGPPublicKeyRing publicKeyRing;
+	/**
+	 * Encoded rings as they were read from the stream. Released once decoded
+	 */
+	private transient volatile byte[] secretKeyRingEncoded;
+	private transient volatile byte[] publicKeyRingEncoded;
+	/**
+	 * Cached result of {@link #findKeyForEncryption()}, it's looked up only once
+	 */
+	private transient volatile Optional<PGPPublicKey> keyForEncryption;
+	/**
+	 * True if this key was read from the stream which didn't have index (ids and
+	 * capabilities), i.e. it was persisted by older version
+	 */
+	private transient boolean indexMissing;
 
 	public static KeyDataPgp cast(KeyData keyData) {
 		if (keyData == null) {
@@ -63,15 +93,30 @@ public class KeyDataPgp extends KeyData {
 
 	@Override
 	public boolean isCanBeUsedForDecryption() {
-		return secretKeyRing != null;
+		// NOTE: Order matters. Ring is assigned before encoded bytes are released
+		return secretKeyRingEncoded != null || secretKeyRing != null;
 	}
 
 	@Override
 	public boolean isCanBeUsedForEncryption() {
-		return findKeyForEncryption() != null;
+		Boolean ret = canBeUsedForEncryption;
+		if (ret == null) {
+			ret = findKeyForEncryption() != null;
+			canBeUsedForEncryption = ret;
+		}
+		return ret;
 	}
 
 	public PGPPublicKey findKeyForEncryption() {
+		Optional<PGPPublicKey> ret = keyForEncryption;
+		if (ret == null) {
+			ret = Optional.ofNullable(doFindKeyForEncryption());
+			keyForEncryption = ret;
+		}
+		return ret.orElse(null);
+	}
+
+	private PGPPublicKey doFindKeyForEncryption() {
 		if (getPublicKeyRing() != null) {
 			return findKeyForEncryption(getPublicKeyRing().getPublicKeys());
 		} else if (getSecretKeyRing() != null) {
@@ -92,52 +137,97 @@ public class KeyDataPgp extends KeyData {
 	}
 
 	private void writeObject(ObjectOutputStream oos) throws IOException {
+		// make sure index is calculated so that it doesn't have to be next time
+		getKeyIds();
+		isCanBeUsedForEncryption();
 		oos.defaultWriteObject();
 
-		oos.writeBoolean(secretKeyRing != null);
-		if (secretKeyRing != null) {
-			ByteArrayOutputStream os = new ByteArrayOutputStream();
-			secretKeyRing.encode(os);
-			oos.writeObject(os.toByteArray());
+		byte[] secretEncoded = getEncoded(secretKeyRingEncoded, secretKeyRing);
+		oos.writeBoolean(secretEncoded != null);
+		if (secretEncoded != null) {
+			oos.writeObject(secretEncoded);
 		}
 
-		oos.writeBoolean(publicKeyRing != null);
-		if (publicKeyRing != null) {
-			ByteArrayOutputStream os = new ByteArrayOutputStream();
-			publicKeyRing.encode(os);
-			oos.writeObject(os.toByteArray()); //
+		byte[] publicEncoded = getEncoded(publicKeyRingEncoded, publicKeyRing);
+		oos.writeBoolean(publicEncoded != null);
+		if (publicEncoded != null) {
+			oos.writeObject(publicEncoded);
+		}
+	}
+
+	/**
+	 * @param encoded
+	 *            encoded bytes, must be read before the ring, see
+	 *            {@link #isCanBeUsedForDecryption()}
+	 */
+	private static byte[] getEncoded(byte[] encoded, PGPKeyRing ring) throws IOException {
+		if (encoded != null) {
+			return encoded;
 		}
+		return ring == null ? null : ring.getEncoded();
+	}
+
+	/**
+	 * @return true if key was read without persisted index, so it will have to be
+	 *         decoded to build it. Such key should be persisted again
+	 */
+	boolean isIndexMissing() {
+		return indexMissing;
 	}
 
 	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
 		ois.defaultReadObject();
+		indexMissing = keyIds == null || canBeUsedForEncryption == null;
 
-		try {
-			if (ois.readBoolean()) {
-				secretKeyRing = new PGPSecretKeyRing(initInputStream(ois),
-						KeyFilesOperationsPgpImpl.fingerprintCalculator);
-			}
-			if (ois.readBoolean()) {
-				publicKeyRing = new PGPPublicKeyRing(initInputStream(ois),
+		if (ois.readBoolean()) {
+			secretKeyRingEncoded = (byte[]) ois.readObject();
+		}
+		if (ois.readBoolean()) {
+			publicKeyRingEncoded = (byte[]) ois.readObject();
+		}
+	}
+
+	private synchronized PGPSecretKeyRing decodeSecretKeyRing() {
+		if (secretKeyRing == null && secretKeyRingEncoded != null) {
+			try {
+				secretKeyRing = new PGPSecretKeyRing(new ByteArrayInputStream(secretKeyRingEncoded),
 						KeyFilesOperationsPgpImpl.fingerprintCalculator);
+			} catch (Throwable t) {
+				throw new RuntimeException("Failed to decode secret key ring", t);
 			}
-		} catch (PGPException e) {
-			throw new IOException("Failed to read key", e);
+			secretKeyRingEncoded = null;
 		}
+		return secretKeyRing;
 	}
 
-	private ByteArrayInputStream initInputStream(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-		byte[] buf = (byte[]) ois.readObject();
-		ByteArrayInputStream is = new ByteArrayInputStream(buf);
-		return is;
+	private synchronized PGPPublicKeyRing decodePublicKeyRing() {
+		if (publicKeyRing == null && publicKeyRingEncoded != null) {
+			try {
+				publicKeyRing = new PGPPublicKeyRing(new ByteArrayInputStream(publicKeyRingEncoded),
+						KeyFilesOperationsPgpImpl.fingerprintCalculator);
+			} catch (Throwable t) {
+				throw new RuntimeException("Failed to decode public key ring", t);
+			}
+			publicKeyRingEncoded = null;
+		}
+		return publicKeyRing;
 	}
 
 	public PGPSecretKeyRing getSecretKeyRing() {
-		return secretKeyRing;
+		PGPSecretKeyRing ret = secretKeyRing;
+		return ret != null ? ret : decodeSecretKeyRing();
 	}
 
-	public void setSecretKeyRing(PGPSecretKeyRing secretKeyRing) {
+	public synchronized void setSecretKeyRing(PGPSecretKeyRing secretKeyRing) {
 		this.secretKeyRing = secretKeyRing;
+		secretKeyRingEncoded = null;
+		resetCachedLookups();
+	}
+
+	private void resetCachedLookups() {
+		keyForEncryption = null;
+		canBeUsedForEncryption = null;
+		keyIds = null;
 	}
 
 	/**
@@ -146,11 +236,14 @@ public class KeyDataPgp extends KeyData {
 	 *         was imported without separate public ring
 	 */
 	public PGPPublicKeyRing getPublicKeyRing() {
-		return publicKeyRing;
+		PGPPublicKeyRing ret = publicKeyRing;
+		return ret != null ? ret : decodePublicKeyRing();
 	}
 
-	public void setPublicKeyRing(PGPPublicKeyRing publicKeyRing) {
+	public synchronized void setPublicKeyRing(PGPPublicKeyRing publicKeyRing) {
 		this.publicKeyRing = publicKeyRing;
+		publicKeyRingEncoded = null;
+		resetCachedLookups();
 	}
 
 	public static String buildKeyIdStr(long keyID) {
@@ -163,18 +256,47 @@ public class KeyDataPgp extends KeyData {
 
 	@Override
 	public boolean isHasAlternativeId(String alternativeId) {
-		long id = parseIdString(alternativeId);
+		return isHasAlternativeId(parseIdString(alternativeId));
+	}
+
+	public boolean isHasAlternativeId(long id) {
+		return Longs.contains(getKeyIdsInternal(), id);
+	}
 
+	/**
+	 * @return ids of the primary key and all sub keys. Secret ring is preferred
+	 *         over public ring if both are present
+	 */
+	public long[] getKeyIds() {
+		return getKeyIdsInternal().clone();
+	}
+
+	private long[] getKeyIdsInternal() {
+		long[] ret = keyIds;
+		if (ret == null) {
+			ret = doGetKeyIds();
+			keyIds = ret;
+		}
+		return ret;
+	}
+
+	private long[] doGetKeyIds() {
+		List<Long> ret = new ArrayList<>();
+		PGPSecretKeyRing secretKeyRing = getSecretKeyRing();
 		if (secretKeyRing != null) {
-			return secretKeyRing.getSecretKey(id) != null;
-		} else if (publicKeyRing != null) {
-			return publicKeyRing.getPublicKey(id) != null;
+			secretKeyRing.getSecretKeys().forEachRemaining(x -> ret.add(x.getKeyID()));
+			return Longs.toArray(ret);
+		}
+		PGPPublicKeyRing publicKeyRing = getPublicKeyRing();
+		if (publicKeyRing != null) {
+			publicKeyRing.getPublicKeys().forEachRemaining(x -> ret.add(x.getKeyID()));
 		}
-		return false;
+		return Longs.toArray(ret);
 	}
 
 	public PGPSecretKey findSecretKeyById(String alternativeId) {
 		long id = parseIdString(alternativeId);
+		PGPSecretKeyRing secretKeyRing = getSecretKeyRing();
 		if (secretKeyRing != null) {
 			return secretKeyRing.getSecretKey(id);
 		}
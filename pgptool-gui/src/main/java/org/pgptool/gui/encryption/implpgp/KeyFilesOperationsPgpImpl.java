@@ -45,13 +45,13 @@ import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPUtil;
 import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
 import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
-import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
-import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
 import org.pgptool.gui.encryption.api.KeyFilesOperations;
 import org.pgptool.gui.encryption.api.dto.Key;
 import org.pgptool.gui.encryption.api.dto.KeyInfo;
 import org.pgptool.gui.encryption.api.dto.KeyTypeEnum;
 import org.pgptool.gui.tools.IoStreamUtils;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 import org.summerb.approaches.security.api.exceptions.InvalidPasswordException;
 import org.summerb.approaches.validation.FieldValidationException;
@@ -68,6 +68,8 @@ public class KeyFilesOperationsPgpImpl implements KeyFilesOperations {
 	 */
 	protected final static BcKeyFingerprintCalculator fingerprintCalculator = new BcKeyFingerprintCalculator();
 
+	private UnlockedKeysCachePgpImpl unlockedKeysCache;
+
 	@Override
 	public List<Key> readKeysFromFile(File file) {
 		try (FileInputStream fis = new FileInputStream(file)) {
@@ -288,7 +290,9 @@ public class KeyFilesOperationsPgpImpl implements KeyFilesOperations {
 		try {
 			PGPSecretKey secretKey = KeyDataPgp.get(key).findSecretKeyById(requestedKeyId);
 			Preconditions.checkArgument(secretKey != null, "Matching secret key wasn't found");
-			PGPPrivateKey privateKey = getPrivateKey(password, secretKey);
+			PasswordDeterminedForKey keyAndPassword = new PasswordDeterminedForKey(requestedKeyId, key, password);
+			PGPPrivateKey privateKey = unlockedKeysCache != null ? unlockedKeysCache.unlock(keyAndPassword, secretKey)
+					: UnlockedKeysCachePgpImpl.extractPrivateKey(secretKey, password);
 			Preconditions.checkArgument(privateKey != null, "Failed to extract private key");
 		} catch (InvalidPasswordException pe) {
 			throw new FieldValidationException(new ValidationError(pe.getMessageCode(), FN_PASSWORD));
@@ -297,18 +301,6 @@ public class KeyFilesOperationsPgpImpl implements KeyFilesOperations {
 		}
 	}
 
-	private PGPPrivateKey getPrivateKey(String passphrase, PGPSecretKey secretKey) throws InvalidPasswordException {
-		try {
-			PBESecretKeyDecryptor decryptorFactory = new BcPBESecretKeyDecryptorBuilder(
-					new BcPGPDigestCalculatorProvider()).build(passphrase.toCharArray());
-			PGPPrivateKey privateKey = secretKey.extractPrivateKey(decryptorFactory);
-			return privateKey;
-		} catch (Throwable t) {
-			log.warn("Failed to extract private key. Most likely it because of incorrect passphrase provided", t);
-			throw new InvalidPasswordException();
-		}
-	}
-
 	@Override
 	public Key readKeyFromFile(String fileName) {
 		try {
@@ -319,4 +311,17 @@ public class KeyFilesOperationsPgpImpl implements KeyFilesOperations {
 			throw new RuntimeException("Failed to read key", t);
 		}
 	}
+
+	public UnlockedKeysCachePgpImpl getUnlockedKeysCache() {
+		return unlockedKeysCache;
+	}
+
+	/**
+	 * Optional. If set, key unlocked while validating password will be cached so
+	 * that subsequent decryption doesn't need to unlock it again
+	 */
+	@Autowired(required = false)
+	public void setUnlockedKeysCache(UnlockedKeysCachePgpImpl unlockedKeysCache) {
+		this.unlockedKeysCache = unlockedKeysCache;
+	}
 }
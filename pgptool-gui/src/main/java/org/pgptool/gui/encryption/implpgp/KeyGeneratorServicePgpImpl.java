@@ -71,7 +71,7 @@ public class KeyGeneratorServicePgpImpl implements KeyGeneratorService {
 	private Map<DsaKeyPairParams, Future<KeyPair>> pregeneratedDsaKeyPairs = new ConcurrentHashMap<>();
 
 	public KeyGeneratorServicePgpImpl() {
-		KeyRingServicePgpImpl.touch();
+		KeyRingServicePgpImpl.ensureBouncyCastleProviderRegistered();
 	}
 
 	@Override
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.pgptool.gui.config.api.ConfigRepository;
+import org.pgptool.gui.config.api.ConfigsBasePathResolver;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Persists changes of the key ring as append-only journal, so that cost of the
+ * change is proportional to the size of the change, not to the size of the
+ * whole key ring.
+ * 
+ * Base state of the key ring is persisted using {@link ConfigRepository} as
+ * before. Each change (transaction) is appended to the journal as a single
+ * record protected by checksum, so transaction is either replayed in full or
+ * not replayed at all. Once journal contains more changes than there are keys
+ * in the key ring (but not less than {@link #setCompactionThreshold(int)}) it's
+ * compacted in background: current key ring is persisted as a new base and
+ * journal is deleted. Replaying records is idempotent, so if compaction is
+ * interrupted journal can be replayed over the new base safely.
+ * 
+ * @author Sergey Karpushin
+ */
+public class KeyRingJournal implements InitializingBean, DisposableBean {
+	private static Logger log = Logger.getLogger(KeyRingJournal.class);
+
+	private static final int MAGIC = 0x504B524A;
+	private static final int RECORD_OVERHEAD = 4 + 8;
+
+	private ConfigRepository configRepository;
+	private ConfigsBasePathResolver configsBasePathResolver;
+	private int compactionThreshold = 100;
+
+	private File journalFile;
+	private ExecutorService compactionExecutor;
+	private PgpKeysRing latestRing;
+	private int changesCount;
+	private boolean compactionScheduled;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Preconditions.checkState(compactionThreshold > 0, "compactionThreshold must be positive");
+		// NOTE: Journal is stored next to the key ring file maintained by
+		// ConfigRepository
+		journalFile = new File(configsBasePathResolver.getConfigsBasePath() + File.separator + "configs",
+				PgpKeysRing.class.getSimpleName() + ".journal");
+		compactionExecutor = Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setNameFormat("KeyRingCompaction").setDaemon(true).build());
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		compactionExecutor.shutdown();
+		if (!compactionExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+			log.warn("Key ring journal compaction didn't finish in time");
+		}
+	}
+
+	/**
+	 * @return key ring as persisted in base file with all journaled changes
+	 *         applied
+	 */
+	public synchronized PgpKeysRing read() {
+		try {
+			PgpKeysRing base = configRepository.readOrConstruct(PgpKeysRing.class);
+			changesCount = 0;
+			if (!journalFile.exists()) {
+				latestRing = base;
+				scheduleCompactionIfIndexMissing();
+				return base;
+			}
+
+			Map<String, Key> keys = new LinkedHashMap<>();
+			for (Key key : base) {
+				keys.put(key.getKeyInfo().getKeyId(), key);
+			}
+			long validLength = replay(keys);
+			if (validLength < journalFile.length()) {
+				log.warn("Key ring journal has incomplete record at the end, it will be discarded. Valid length "
+						+ validLength + ", actual length " + journalFile.length());
+				truncate(validLength);
+			}
+
+			latestRing = new PgpKeysRing();
+			latestRing.addAll(keys.values());
+			scheduleCompactionIfNeeded();
+			scheduleCompactionIfIndexMissing();
+			return latestRing;
+		} catch (Throwable t) {
+			throw new RuntimeException("Failed to read key ring", t);
+		}
+	}
+
+	/**
+	 * @return length of the journal which contains complete records only
+	 */
+	private long replay(Map<String, Key> keys) throws IOException, ClassNotFoundException {
+		long length = journalFile.length();
+		if (length < 4) {
+			// header itself wasn't written completely
+			return 0;
+		}
+
+		try (DataInputStream dis = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(journalFile)))) {
+			Preconditions.checkState(dis.readInt() == MAGIC, "File is not a key ring journal: %s", journalFile);
+			long position = 4;
+			while (position + RECORD_OVERHEAD <= length) {
+				int recordLength = dis.readInt();
+				if (recordLength < 0 || position + RECORD_OVERHEAD + recordLength > length) {
+					break;
+				}
+				byte[] record = new byte[recordLength];
+				dis.readFully(record);
+				if (dis.readLong() != checksum(record)) {
+					break;
+				}
+
+				Transaction transaction = deserialize(record);
+				for (String keyId : transaction.removedKeysIds) {
+					keys.remove(keyId);
+				}
+				for (Key key : transaction.addedKeys) {
+					keys.put(key.getKeyInfo().getKeyId(), key);
+				}
+				changesCount += transaction.removedKeysIds.size() + transaction.addedKeys.size();
+				position += RECORD_OVERHEAD + recordLength;
+			}
+			return position;
+		} catch (EOFException e) {
+			throw new IOException("Journal length changed while reading it", e);
+		}
+	}
+
+	private void truncate(long validLength) throws IOException {
+		if (validLength == 0) {
+			Files.delete(journalFile.toPath());
+			return;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+			raf.setLength(validLength);
+		}
+	}
+
+	/**
+	 * Append single transaction to the journal
+	 * 
+	 * @param removed
+	 *            keys removed from key ring
+	 * @param added
+	 *            keys added to key ring
+	 * @param resultingRing
+	 *            key ring after changes are applied. Must not be modified
+	 *            afterwards, it's going to be used for compaction
+	 */
+	public synchronized void append(Collection<Key> removed, Collection<Key> added, PgpKeysRing resultingRing) {
+		Preconditions.checkState(latestRing != null, "Journal must be read before it's appended");
+		long lengthBefore = journalFile.exists() ? journalFile.length() : 0;
+		try {
+			Transaction transaction = new Transaction(removed, added);
+			byte[] record = serialize(transaction);
+			try (FileOutputStream fos = new FileOutputStream(journalFile, true)) {
+				DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+				if (lengthBefore == 0) {
+					dos.writeInt(MAGIC);
+				}
+				dos.writeInt(record.length);
+				dos.write(record);
+				dos.writeLong(checksum(record));
+				dos.flush();
+				fos.getFD().sync();
+			}
+
+			changesCount += removed.size() + added.size();
+			latestRing = resultingRing;
+			scheduleCompactionIfNeeded();
+		} catch (Throwable t) {
+			rollback(lengthBefore);
+			throw new RuntimeException("Failed to append changes to key ring journal", t);
+		}
+	}
+
+	private void rollback(long lengthBefore) {
+		try {
+			if (journalFile.exists() && journalFile.length() > lengthBefore) {
+				truncate(lengthBefore);
+			}
+		} catch (Throwable t) {
+			// NOTE: That's fine, incomplete record will be discarded on next read
+			log.warn("Failed to rollback incomplete key ring journal record", t);
+		}
+	}
+
+	/**
+	 * Base is compacted once after it's read, regardless of number of changes, if
+	 * any key lacks persisted index. See {@link KeyDataPgp#isIndexMissing()}
+	 */
+	private void scheduleCompactionIfIndexMissing() {
+		if (isIndexMissing(latestRing)) {
+			scheduleCompaction();
+		}
+	}
+
+	private void scheduleCompactionIfNeeded() {
+		if (changesCount < Math.max(compactionThreshold, latestRing.size())) {
+			return;
+		}
+		scheduleCompaction();
+	}
+
+	private void scheduleCompaction() {
+		if (compactionScheduled) {
+			return;
+		}
+		compactionScheduled = true;
+		compactionExecutor.execute(this::compact);
+	}
+
+	/**
+	 * Keys persisted by older versions don't have index persisted, so all of them
+	 * would have to be decoded on each startup until base is rewritten
+	 */
+	private static boolean isIndexMissing(PgpKeysRing ring) {
+		for (Key key : ring) {
+			if (key.getKeyData() instanceof KeyDataPgp && ((KeyDataPgp) key.getKeyData()).isIndexMissing()) {
+				log.info("Key ring was persisted without keys index, it will be rewritten");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private synchronized void compact() {
+		compactionScheduled = false;
+		try {
+			log.debug("Compacting key ring journal. Changes: " + changesCount + ", keys: " + latestRing.size());
+			configRepository.persist(latestRing);
+			Files.deleteIfExists(journalFile.toPath());
+			changesCount = 0;
+		} catch (Throwable t) {
+			log.error("Failed to compact key ring journal", t);
+		}
+	}
+
+	private static byte[] serialize(Transaction transaction) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(transaction);
+		}
+		return baos.toByteArray();
+	}
+
+	private static Transaction deserialize(byte[] record) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record))) {
+			return (Transaction) ois.readObject();
+		}
+	}
+
+	private static long checksum(byte[] record) {
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		return crc.getValue();
+	}
+
+	private static class Transaction implements Serializable {
+		private static final long serialVersionUID = 2813862401626209374L;
+
+		private ArrayList<String> removedKeysIds;
+		private ArrayList<Key> addedKeys;
+
+		private Transaction(Collection<Key> removed, Collection<Key> added) {
+			removedKeysIds = new ArrayList<>(removed.size());
+			for (Key key : removed) {
+				removedKeysIds.add(key.getKeyInfo().getKeyId());
+			}
+			addedKeys = new ArrayList<>(added);
+		}
+	}
+
+	public ConfigRepository getConfigRepository() {
+		return configRepository;
+	}
+
+	@Autowired
+	public void setConfigRepository(ConfigRepository configRepository) {
+		this.configRepository = configRepository;
+	}
+
+	public ConfigsBasePathResolver getConfigsBasePathResolver() {
+		return configsBasePathResolver;
+	}
+
+	@Autowired
+	public void setConfigsBasePathResolver(ConfigsBasePathResolver configsBasePathResolver) {
+		this.configsBasePathResolver = configsBasePathResolver;
+	}
+
+	public int getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	/**
+	 * @param compactionThreshold
+	 *            minimum number of journaled changes before journal is compacted
+	 */
+	public void setCompactionThreshold(int compactionThreshold) {
+		this.compactionThreshold = compactionThreshold;
+	}
+}
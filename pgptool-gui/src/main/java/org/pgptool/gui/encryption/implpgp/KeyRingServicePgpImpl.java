@@ -19,10 +19,13 @@ package org.pgptool.gui.encryption.implpgp;
 
 import java.security.Security;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -43,91 +46,130 @@ public class KeyRingServicePgpImpl implements KeyRingService {
 	private static Logger log = Logger.getLogger(KeyRingServicePgpImpl.class);
 
 	private ConfigRepository configRepository;
+	private KeyRingJournal keyRingJournal;
 	private EventBus eventBus;
 	private KeyGeneratorService keyGeneratorService;
 
-	private PgpKeysRing pgpKeysRing;
-
-	static {
-		Security.addProvider(new BouncyCastleProvider());
-	}
-
 	/**
-	 * This method is created to ensure static constructor of this class was called
+	 * Current state of the key ring. Writers build new snapshot and publish it,
+	 * readers just take current one without locking or copying
 	 */
-	public static synchronized void touch() {
+	private volatile KeysSnapshot snapshot;
 
+	/**
+	 * BouncyCastle JCE provider is needed for key generation and for ciphers which
+	 * are not provided by JRE. It's registered only when needed since its
+	 * initialization takes about a second, which is significant part of headless
+	 * invocation time
+	 */
+	public static synchronized void ensureBouncyCastleProviderRegistered() {
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
 	}
 
 	public KeyRingServicePgpImpl() {
 	}
 
+	/**
+	 * @return unmodifiable snapshot of keys. It's not affected by subsequent
+	 *         changes of key ring
+	 */
 	@Override
-	public synchronized List<Key> readKeys() {
-		ensureRead();
-		// NOTE: Return copy of the list!
-		return new ArrayList<>(pgpKeysRing);
+	public List<Key> readKeys() {
+		return ensureRead().keys;
 	}
 
-	private void ensureRead() {
-		if (pgpKeysRing != null) {
-			return;
+	private KeysSnapshot ensureRead() {
+		KeysSnapshot ret = snapshot;
+		if (ret != null) {
+			return ret;
 		}
 
 		synchronized (this) {
-			if (pgpKeysRing != null) {
-				return;
+			if (snapshot != null) {
+				return snapshot;
 			}
-			pgpKeysRing = configRepository.readOrConstruct(PgpKeysRing.class);
+			PgpKeysRing pgpKeysRing = keyRingJournal != null ? keyRingJournal.read()
+					: configRepository.readOrConstruct(PgpKeysRing.class);
+			snapshot = new KeysSnapshot(pgpKeysRing, new KeysIndex(pgpKeysRing));
 
 			// dumpKeys();
-			if (pgpKeysRing.size() == 0) {
+			if (pgpKeysRing.size() == 0 && keyGeneratorService != null) {
 				keyGeneratorService.expectNewKeyCreation();
 			}
+			return snapshot;
 		}
 	}
 
 	@Override
-	public synchronized void addKey(Key key) {
-		Preconditions.checkArgument(key != null, "key required");
-		Preconditions.checkArgument(key.getKeyData() != null, "key data required");
-		Preconditions.checkArgument(key.getKeyData() instanceof KeyDataPgp, "Wrong key data type");
-
-		Key existingKey = findKeyById(key.getKeyInfo().getKeyId());
-		if (existingKey != null) {
-			if (!existingKey.getKeyData().isCanBeUsedForDecryption() && key.getKeyData().isCanBeUsedForDecryption()) {
-				removeKey(existingKey);
-			} else {
-				throw new RuntimeException("This key was already added");
+	public void addKey(Key key) {
+		addKeys(Collections.singletonList(key));
+	}
+
+	@Override
+	public synchronized void addKeys(Collection<Key> keys) {
+		Preconditions.checkArgument(!CollectionUtils.isEmpty(keys), "keys required");
+
+		KeysSnapshot current = ensureRead();
+		Map<String, Key> added = new LinkedHashMap<>();
+		List<Key> replaced = new ArrayList<>();
+		for (Key key : keys) {
+			Preconditions.checkArgument(key != null, "key required");
+			Preconditions.checkArgument(key.getKeyData() != null, "key data required");
+			Preconditions.checkArgument(key.getKeyData() instanceof KeyDataPgp, "Wrong key data type");
+
+			String keyId = key.getKeyInfo().getKeyId();
+			Key existingKey = added.containsKey(keyId) ? added.get(keyId) : current.keysIndex.find(keyId);
+			if (existingKey != null) {
+				boolean isUpgradeToPrivateKey = !existingKey.getKeyData().isCanBeUsedForDecryption()
+						&& key.getKeyData().isCanBeUsedForDecryption();
+				if (isUpgradeToPrivateKey) {
+					if (added.remove(keyId) == null) {
+						replaced.add(existingKey);
+					}
+				} else {
+					throw new RuntimeException("This key was already added");
+				}
 			}
+			added.put(keyId, key);
 		}
 
-		pgpKeysRing.add(key);
-		configRepository.persist(pgpKeysRing);
-		eventBus.post(EntityChangedEvent.added(key));
+		publish(current.withChanges(replaced, added.values()), replaced, added.values());
+		for (Key key : replaced) {
+			eventBus.post(EntityChangedEvent.removedObject(key));
+		}
+		for (Key key : added.values()) {
+			eventBus.post(EntityChangedEvent.added(key));
+		}
+	}
+
+	/**
+	 * NOTE: Snapshot is published only after it was persisted. Readers will not
+	 * see changes which failed to persist
+	 */
+	private void publish(KeysSnapshot newSnapshot, Collection<Key> removed, Collection<Key> added) {
+		if (keyRingJournal != null) {
+			keyRingJournal.append(removed, added, newSnapshot.pgpKeysRing);
+		} else {
+			configRepository.persist(newSnapshot.pgpKeysRing);
+		}
+		snapshot = newSnapshot;
 	}
 
 	@Override
-	public synchronized Key findKeyById(String keyId) {
+	public Key findKeyById(String keyId) {
 		Preconditions.checkArgument(StringUtils.hasText(keyId), "KeyId must be provided");
-		ensureRead();
-
-		for (Key cur : pgpKeysRing) {
-			if (cur.getKeyInfo().getKeyId().equals(keyId) || cur.getKeyData().isHasAlternativeId(keyId)) {
-				return cur;
-			}
-		}
-		return null;
+		return ensureRead().keysIndex.find(keyId);
 	}
 
 	@Override
 	public synchronized void removeKey(Key key) {
-		ensureRead();
-		for (Iterator<Key> iter = pgpKeysRing.iterator(); iter.hasNext();) {
-			Key cur = iter.next();
+		KeysSnapshot current = ensureRead();
+		for (Key cur : current.keys) {
 			if (cur.getKeyInfo().getKeyId().equals(key.getKeyInfo().getKeyId())) {
-				iter.remove();
-				configRepository.persist(pgpKeysRing);
+				List<Key> removed = Collections.singletonList(cur);
+				publish(current.withChanges(removed, Collections.emptyList()), removed, Collections.emptyList());
 				eventBus.post(EntityChangedEvent.removedObject(key));
 				return;
 			}
@@ -143,6 +185,19 @@ public class KeyRingServicePgpImpl implements KeyRingService {
 		this.configRepository = configRepository;
 	}
 
+	public KeyRingJournal getKeyRingJournal() {
+		return keyRingJournal;
+	}
+
+	/**
+	 * Optional. If not provided whole key ring is persisted using
+	 * {@link ConfigRepository} on each change
+	 */
+	@Autowired(required = false)
+	public void setKeyRingJournal(KeyRingJournal keyRingJournal) {
+		this.keyRingJournal = keyRingJournal;
+	}
+
 	public EventBus getEventBus() {
 		return eventBus;
 	}
@@ -158,22 +213,15 @@ public class KeyRingServicePgpImpl implements KeyRingService {
 	@Override
 	public List<MatchedKey> findMatchingDecryptionKeys(Set<String> keysIds) {
 		Preconditions.checkArgument(!CollectionUtils.isEmpty(keysIds));
+		KeysIndex keysIndex = ensureRead().keysIndex;
 
 		List<MatchedKey> ret = new ArrayList<>(keysIds.size());
-		List<Key> allKeys = readKeys();
-		List<Key> decryptionKeys = allKeys.stream().filter(x -> x.getKeyData().isCanBeUsedForDecryption())
-				.collect(Collectors.toList());
-
 		for (String neededKeyId : keysIds) {
 			log.debug("Trying to find decryption key by id: " + neededKeyId);
-			for (Iterator<Key> iter = decryptionKeys.iterator(); iter.hasNext();) {
-				Key existingKey = iter.next();
-				String user = existingKey.getKeyInfo().getUser();
-				if (existingKey.getKeyData().isHasAlternativeId(neededKeyId)) {
-					log.debug("Found matching key: " + user);
-					ret.add(new MatchedKey(neededKeyId, existingKey));
-					break;
-				}
+			Key existingKey = keysIndex.find(neededKeyId);
+			if (existingKey != null && existingKey.getKeyData().isCanBeUsedForDecryption()) {
+				log.debug("Found matching key: " + existingKey.getKeyInfo().getUser());
+				ret.add(new MatchedKey(neededKeyId, existingKey));
 			}
 		}
 		return ret;
@@ -182,20 +230,15 @@ public class KeyRingServicePgpImpl implements KeyRingService {
 	@Override
 	public List<Key> findMatchingKeys(Set<String> keysIds) {
 		Preconditions.checkArgument(!CollectionUtils.isEmpty(keysIds));
+		KeysIndex keysIndex = ensureRead().keysIndex;
 
 		List<Key> ret = new ArrayList<>(keysIds.size());
-		List<Key> allKeys = readKeys();
-
 		for (String neededKeyId : keysIds) {
 			log.debug("Trying to find key by id: " + neededKeyId);
-			for (Iterator<Key> iter = allKeys.iterator(); iter.hasNext();) {
-				Key existingKey = iter.next();
-				String user = existingKey.getKeyInfo().getUser();
-				if (existingKey.getKeyData().isHasAlternativeId(neededKeyId)) {
-					log.debug("Found matching key: " + user);
-					ret.add(existingKey);
-					break;
-				}
+			Key existingKey = keysIndex.find(neededKeyId);
+			if (existingKey != null) {
+				log.debug("Found matching key: " + existingKey.getKeyInfo().getUser());
+				ret.add(existingKey);
 			}
 		}
 		return ret;
@@ -205,9 +248,47 @@ public class KeyRingServicePgpImpl implements KeyRingService {
 		return keyGeneratorService;
 	}
 
-	@Autowired
+	/**
+	 * Optional. Not wired in headless mode where keys are never created
+	 */
+	@Autowired(required = false)
 	public void setKeyGeneratorService(KeyGeneratorService keyGeneratorService) {
 		this.keyGeneratorService = keyGeneratorService;
 	}
 
+	/**
+	 * Immutable state of the key ring. Nothing is changed after it's published,
+	 * any change results in a new snapshot
+	 */
+	private static class KeysSnapshot {
+		private final PgpKeysRing pgpKeysRing;
+		private final List<Key> keys;
+		private final KeysIndex keysIndex;
+
+		private KeysSnapshot(PgpKeysRing pgpKeysRing, KeysIndex keysIndex) {
+			this.pgpKeysRing = pgpKeysRing;
+			this.keys = Collections.unmodifiableList(pgpKeysRing);
+			this.keysIndex = keysIndex;
+		}
+
+		private KeysSnapshot withChanges(Collection<Key> removed, Collection<Key> added) {
+			Set<Key> removedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+			removedSet.addAll(removed);
+			PgpKeysRing newRing = new PgpKeysRing();
+			newRing.ensureCapacity(pgpKeysRing.size() + added.size());
+			KeysIndex newIndex = new KeysIndex(keysIndex);
+			for (Key key : pgpKeysRing) {
+				if (removedSet.contains(key)) {
+					newIndex.remove(key);
+				} else {
+					newRing.add(key);
+				}
+			}
+			for (Key key : added) {
+				newRing.add(key);
+				newIndex.add(key);
+			}
+			return new KeysSnapshot(newRing, newIndex);
+		}
+	}
 }
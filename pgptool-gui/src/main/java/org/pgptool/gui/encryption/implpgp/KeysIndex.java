@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.pgptool.gui.encryption.api.dto.Key;
+
+/**
+ * Index of keys by ids of their primary and sub keys. Hex ids are parsed only
+ * once when key is added to the index, so lookup doesn't depend on number of
+ * keys in the key ring.
+ * 
+ * NOTE: It's not thread-safe. {@link KeyRingServicePgpImpl} never changes
+ * instance once it's visible to readers, it creates a copy instead
+ * 
+ * @author Sergey Karpushin
+ */
+public class KeysIndex {
+	private final Map<Long, Key> keysById;
+
+	public KeysIndex(Collection<Key> keys) {
+		keysById = new HashMap<>(keys.size() * 3);
+		for (Key key : keys) {
+			add(key);
+		}
+	}
+
+	public KeysIndex(KeysIndex source) {
+		keysById = new HashMap<>(source.keysById);
+	}
+
+	public void add(Key key) {
+		for (long id : KeyDataPgp.get(key).getKeyIds()) {
+			keysById.put(id, key);
+		}
+	}
+
+	public void remove(Key key) {
+		for (long id : KeyDataPgp.get(key).getKeyIds()) {
+			keysById.remove(id, key);
+		}
+	}
+
+	/**
+	 * @param keyId
+	 *            hex id of the primary key or any of the sub keys
+	 * @return key or null if not found or keyId is not a hex id
+	 */
+	public Key find(String keyId) {
+		try {
+			return find(KeyDataPgp.parseIdString(keyId));
+		} catch (NumberFormatException nfe) {
+			return null;
+		}
+	}
+
+	public Key find(long keyId) {
+		return keysById.get(keyId);
+	}
+}
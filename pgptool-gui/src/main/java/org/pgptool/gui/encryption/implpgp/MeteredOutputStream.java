@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts bytes written and time spent in underlying stream. Used to measure
+ * cost of particular stage in a chain of streams. Not thread-safe.
+ * 
+ * NOTE: It doesn't close underlying stream on {@link #close()}, only flushes
+ * it. Closing is responsibility of whoever opened it.
+ * 
+ * @author Sergey Karpushin
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+	private long bytesWritten;
+	private long nanosSpent;
+
+	public MeteredOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		long started = System.nanoTime();
+		out.write(b);
+		nanosSpent += System.nanoTime() - started;
+		bytesWritten++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		long started = System.nanoTime();
+		out.write(b, off, len);
+		nanosSpent += System.nanoTime() - started;
+		bytesWritten += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		long started = System.nanoTime();
+		out.flush();
+		nanosSpent += System.nanoTime() - started;
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public long getNanosSpent() {
+		return nanosSpent;
+	}
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.pgptool.gui.config.api.ConfigRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Remembers which keys encrypted file was encrypted for, so that
+ * {@link EncryptionServicePgpImpl#findKeyIdsForDecryption(String)} doesn't
+ * have to parse the same file again and again. Entry is valid only while file
+ * size and modification time are the same as when it was indexed.
+ * 
+ * Index is persisted using {@link ConfigRepository}, least recently used
+ * entries are evicted once index grows beyond {@link #setMaxEntries(int)}.
+ * 
+ * If {@link #setFlushDelayMs(long)} is positive, changes are written behind:
+ * all changes made during the delay are coalesced into single write. Pending
+ * changes are also written on {@link #destroy()}
+ * 
+ * @author Sergey Karpushin
+ */
+public class RecipientsIndex implements InitializingBean, DisposableBean {
+	private static Logger log = Logger.getLogger(RecipientsIndex.class);
+
+	private ConfigRepository configRepository;
+	private int maxEntries = 1000;
+	private long flushDelayMs;
+
+	private RecipientsIndexEntries entries;
+	private boolean dirty;
+
+	private ScheduledThreadPoolExecutor flushExecutor;
+	private ScheduledFuture<?> scheduledFlush;
+	/**
+	 * Serializes flushes so that older state is never written over newer one
+	 */
+	private final Object flushLock = new Object();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Preconditions.checkState(maxEntries > 0, "maxEntries must be positive");
+		Preconditions.checkState(flushDelayMs >= 0, "flushDelayMs must not be negative");
+		entries = configRepository.readOrConstruct(RecipientsIndexEntries.class);
+		if (flushDelayMs > 0) {
+			flushExecutor = new ScheduledThreadPoolExecutor(1,
+					new ThreadFactoryBuilder().setNameFormat("RecipientsIndexFlush").setDaemon(true).build());
+			// NOTE: Most of the time there is nothing to flush, don't keep thread
+			flushExecutor.setKeepAliveTime(10, TimeUnit.SECONDS);
+			flushExecutor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (flushExecutor != null) {
+			flushExecutor.shutdown();
+		}
+		flush();
+	}
+
+	/**
+	 * @return key ids file was encrypted for, or null if file is not indexed or
+	 *         it was changed since it was indexed
+	 */
+	public synchronized Set<String> find(File file) {
+		String key = file.getAbsolutePath();
+		RecipientsIndexEntries.Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+
+		if (entry.getSize() != file.length() || entry.getModifiedAt() != file.lastModified()) {
+			entries.remove(key);
+			save();
+			return null;
+		}
+
+		// NOTE: Only usage order changed. It's not worth a write on its own, it will
+		// be written along with next change or on destroy
+		dirty = true;
+		return new HashSet<>(entry.getKeyIds());
+	}
+
+	public synchronized void put(File file, Set<String> keyIds) {
+		RecipientsIndexEntries.Entry entry = new RecipientsIndexEntries.Entry(file.length(), file.lastModified(),
+				keyIds);
+		entries.put(file.getAbsolutePath(), entry);
+		for (Iterator<String> iter = entries.keySet().iterator(); entries.size() > maxEntries && iter.hasNext();) {
+			iter.next();
+			iter.remove();
+		}
+		save();
+	}
+
+	private void save() {
+		dirty = true;
+		if (flushExecutor == null || flushExecutor.isShutdown()) {
+			dirty = false;
+			persist(entries);
+			return;
+		}
+
+		if (scheduledFlush == null) {
+			scheduledFlush = flushExecutor.schedule(this::flush, flushDelayMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Write pending changes if any
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			RecipientsIndexEntries snapshot;
+			synchronized (this) {
+				if (scheduledFlush != null) {
+					scheduledFlush.cancel(false);
+					scheduledFlush = null;
+				}
+				if (!dirty) {
+					return;
+				}
+				dirty = false;
+				// NOTE: Copy is written so that index is not blocked by the write. Copy
+				// preserves usage order
+				snapshot = new RecipientsIndexEntries();
+				snapshot.putAll(entries);
+			}
+			persist(snapshot);
+		}
+	}
+
+	private void persist(RecipientsIndexEntries entries) {
+		try {
+			configRepository.persist(entries);
+		} catch (Throwable t) {
+			// NOTE: Index is just an optimization, failure to persist it must not
+			// break anything
+			log.warn("Failed to persist recipients index", t);
+		}
+	}
+
+	public ConfigRepository getConfigRepository() {
+		return configRepository;
+	}
+
+	@Autowired
+	public void setConfigRepository(ConfigRepository configRepository) {
+		this.configRepository = configRepository;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public long getFlushDelayMs() {
+		return flushDelayMs;
+	}
+
+	public void setFlushDelayMs(long flushDelayMs) {
+		this.flushDelayMs = flushDelayMs;
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import org.summerb.approaches.jdbccrud.common.DtoBase;
+
+/**
+ * Persisted state of {@link RecipientsIndex}. Map from absolute path name of
+ * encrypted file to recipients key ids, ordered from least to most recently
+ * used
+ * 
+ * @author Sergey Karpushin
+ */
+public class RecipientsIndexEntries extends LinkedHashMap<String, RecipientsIndexEntries.Entry> implements DtoBase {
+	private static final long serialVersionUID = 2409736427013316473L;
+
+	public RecipientsIndexEntries() {
+		super(16, 0.75f, true);
+	}
+
+	public static class Entry implements Serializable {
+		private static final long serialVersionUID = -3290167520573460262L;
+
+		private long size;
+		private long modifiedAt;
+		private HashSet<String> keyIds;
+
+		public Entry() {
+		}
+
+		public Entry(long size, long modifiedAt, Set<String> keyIds) {
+			this.size = size;
+			this.modifiedAt = modifiedAt;
+			this.keyIds = new HashSet<>(keyIds);
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public void setSize(long size) {
+			this.size = size;
+		}
+
+		public long getModifiedAt() {
+			return modifiedAt;
+		}
+
+		public void setModifiedAt(long modifiedAt) {
+			this.modifiedAt = modifiedAt;
+		}
+
+		public HashSet<String> getKeyIds() {
+			return keyIds;
+		}
+
+		public void setKeyIds(HashSet<String> keyIds) {
+			this.keyIds = keyIds;
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
+import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.pgptool.gui.encryption.api.UnlockedKeysCache;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.summerb.approaches.jdbccrud.api.dto.EntityChangedEvent;
+import org.summerb.approaches.jdbccrud.api.dto.EntityChangedEvent.ChangeType;
+import org.summerb.approaches.security.api.exceptions.InvalidPasswordException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Thread-safe {@link UnlockedKeysCache} which keeps {@link PGPPrivateKey}
+ * instances, so decryption with same key and password doesn't extract private
+ * key again.
+ * 
+ * Entries are evicted after {@link #setIdleTtlMinutes(int)} of inactivity, or
+ * {@link #setAbsoluteTtlMinutes(int)} after they were unlocked, whichever comes
+ * first. Entries are also evicted when key is removed from key ring and all
+ * entries are purged when application context is closed.
+ * 
+ * @author Sergey Karpushin
+ */
+public class UnlockedKeysCachePgpImpl implements UnlockedKeysCache, InitializingBean, DisposableBean {
+	private static Logger log = Logger.getLogger(UnlockedKeysCachePgpImpl.class);
+
+	private int idleTtlMinutes = 60;
+	private int absoluteTtlMinutes = 12 * 60;
+	private int maxSize = 100;
+	private EventBus eventBus;
+
+	private Cache<String, Entry> cache;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private static class Entry {
+		private final PasswordDeterminedForKey keyAndPassword;
+		private final PGPPrivateKey privateKey;
+
+		private Entry(PasswordDeterminedForKey keyAndPassword, PGPPrivateKey privateKey) {
+			this.keyAndPassword = keyAndPassword;
+			this.privateKey = privateKey;
+		}
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Preconditions.checkState(idleTtlMinutes > 0, "idleTtlMinutes must be positive");
+		Preconditions.checkState(absoluteTtlMinutes > 0, "absoluteTtlMinutes must be positive");
+		Preconditions.checkState(maxSize > 0, "maxSize must be positive");
+		cache = CacheBuilder.newBuilder().expireAfterAccess(idleTtlMinutes, TimeUnit.MINUTES)
+				.expireAfterWrite(absoluteTtlMinutes, TimeUnit.MINUTES).maximumSize(maxSize).build();
+		if (eventBus != null) {
+			eventBus.register(this);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (eventBus != null) {
+			eventBus.unregister(this);
+		}
+		purge();
+	}
+
+	/**
+	 * Get private key either from cache or by extracting it from secret key
+	 * 
+	 * @param keyAndPassword
+	 *            key and password to use. Entry is cached by
+	 *            {@link PasswordDeterminedForKey#getDecryptionKeyId()}
+	 * @param secretKey
+	 *            secret key matching
+	 *            {@link PasswordDeterminedForKey#getDecryptionKeyId()}
+	 * @throws InvalidPasswordException
+	 *             if password doesn't fit
+	 */
+	public PGPPrivateKey unlock(PasswordDeterminedForKey keyAndPassword, PGPSecretKey secretKey)
+			throws InvalidPasswordException {
+		Preconditions.checkState(cache != null, "Cache wasn't initialized");
+		String keyId = keyAndPassword.getDecryptionKeyId();
+		Entry entry = cache.getIfPresent(keyId);
+		if (entry != null && entry.keyAndPassword.getPassword().equals(keyAndPassword.getPassword())
+				&& isSameKey(entry.keyAndPassword.getMatchedKey(), keyAndPassword.getMatchedKey())) {
+			hits.incrementAndGet();
+			return entry.privateKey;
+		}
+
+		misses.incrementAndGet();
+		PGPPrivateKey ret = extractPrivateKey(secretKey, keyAndPassword.getPassword());
+		cache.put(keyId, new Entry(keyAndPassword, ret));
+		return ret;
+	}
+
+	private static boolean isSameKey(Key a, Key b) {
+		return a.getKeyInfo().getKeyId().equals(b.getKeyInfo().getKeyId());
+	}
+
+	public static PGPPrivateKey extractPrivateKey(PGPSecretKey secretKey, String passphrase)
+			throws InvalidPasswordException {
+		try {
+			PBESecretKeyDecryptor decryptorFactory = new BcPBESecretKeyDecryptorBuilder(
+					new BcPGPDigestCalculatorProvider()).build(passphrase.toCharArray());
+			PGPPrivateKey privateKey = secretKey.extractPrivateKey(decryptorFactory);
+			return privateKey;
+		} catch (Throwable t) {
+			log.warn("Failed to extract private key. Most likely it because of incorrect passphrase provided", t);
+			throw new InvalidPasswordException();
+		}
+	}
+
+	@Override
+	public PasswordDeterminedForKey find(String requestedKeyId) {
+		Entry entry = cache.getIfPresent(requestedKeyId);
+		return entry == null ? null : entry.keyAndPassword;
+	}
+
+	@Override
+	public void purge() {
+		if (cache == null) {
+			return;
+		}
+		cache.invalidateAll();
+		log.debug("Unlocked keys cache purged. Hits: " + hits.get() + ", misses: " + misses.get());
+	}
+
+	@Subscribe
+	public void onKeyRemoved(EntityChangedEvent<Key> e) {
+		if (!e.isTypeOf(Key.class) || e.getChangeType() != ChangeType.REMOVED) {
+			return;
+		}
+
+		try {
+			String keyId = e.getValue().getKeyInfo().getKeyId();
+			cache.asMap().values()
+					.removeIf(x -> keyId.equals(x.keyAndPassword.getMatchedKey().getKeyInfo().getKeyId()));
+		} catch (Throwable t) {
+			log.error("Failed to evict unlocked key from cache", t);
+		}
+	}
+
+	@Override
+	public long getHitsCount() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMissesCount() {
+		return misses.get();
+	}
+
+	public int getIdleTtlMinutes() {
+		return idleTtlMinutes;
+	}
+
+	/**
+	 * @param idleTtlMinutes
+	 *            entry will be evicted if it wasn't used for this amount of time
+	 */
+	public void setIdleTtlMinutes(int idleTtlMinutes) {
+		this.idleTtlMinutes = idleTtlMinutes;
+	}
+
+	public int getAbsoluteTtlMinutes() {
+		return absoluteTtlMinutes;
+	}
+
+	/**
+	 * @param absoluteTtlMinutes
+	 *            entry will be evicted after this amount of time since key was
+	 *            unlocked regardless of usage
+	 */
+	public void setAbsoluteTtlMinutes(int absoluteTtlMinutes) {
+		this.absoluteTtlMinutes = absoluteTtlMinutes;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public EventBus getEventBus() {
+		return eventBus;
+	}
+
+	/**
+	 * Optional. If set, entries are evicted when respective key is removed from
+	 * key ring
+	 */
+	@Autowired(required = false)
+	public void setEventBus(EventBus eventBus) {
+		this.eventBus = eventBus;
+	}
+}
@@ -126,6 +126,7 @@ public class ChecksumCalcInputStream extends FilterInputStream {
 		fingerprint.setSize(size);
 		byte[] encoded = Base64.getEncoder().encode(messageDigest.digest());
 		fingerprint.setChecksum(new String(encoded, "UTF-8"));
+		fingerprint.setAlgorithm(messageDigest.getAlgorithm());
 		log.debug("File " + fileName + " fingerprint: " + fingerprint);
 		reportTo.complete(fingerprint);
 	}
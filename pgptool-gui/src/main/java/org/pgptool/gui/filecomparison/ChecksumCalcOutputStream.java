@@ -85,6 +85,7 @@ public class ChecksumCalcOutputStream extends FilterOutputStream {
 		fingerprint.setSize(size);
 		byte[] encoded = Base64.getEncoder().encode(messageDigest.digest());
 		fingerprint.setChecksum(new String(encoded, "UTF-8"));
+		fingerprint.setAlgorithm(messageDigest.getAlgorithm());
 		log.debug("File " + fileName + " fingerprint: " + fingerprint);
 		result.complete(fingerprint);
 	}
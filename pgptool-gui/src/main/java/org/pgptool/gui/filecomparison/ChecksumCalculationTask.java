@@ -25,7 +25,11 @@ import java.util.concurrent.CompletableFuture;
 import com.google.common.base.Preconditions;
 
 public class ChecksumCalculationTask implements Callable<Fingerprint> {
-	private static final int READ_BUF_SIZE = 4096;
+	/**
+	 * Large buffer keeps number of read calls low, so throughput is bound by disk
+	 * and digest speed rather than by per-call overhead
+	 */
+	public static final int READ_BUF_SIZE = 1024 * 1024;
 
 	private String filePathName;
 	private MessageDigest messageDigest;
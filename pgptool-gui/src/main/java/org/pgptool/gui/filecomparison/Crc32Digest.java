@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.filecomparison;
+
+import java.security.MessageDigest;
+import java.util.zip.CRC32;
+
+/**
+ * {@link MessageDigest} adapter for {@link CRC32} which is hardware
+ * accelerated by JVM. Mark/reset is not supported since CRC32 state can't be
+ * copied
+ * 
+ * @author Sergey Karpushin
+ */
+class Crc32Digest extends MessageDigest {
+	static final String ALGORITHM = "CRC32";
+
+	private final CRC32 crc = new CRC32();
+
+	Crc32Digest() {
+		super(ALGORITHM);
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		crc.update(input);
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		crc.update(input, offset, len);
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return 4;
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		long value = crc.getValue();
+		crc.reset();
+		return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+	}
+
+	@Override
+	protected void engineReset() {
+		crc.reset();
+	}
+}
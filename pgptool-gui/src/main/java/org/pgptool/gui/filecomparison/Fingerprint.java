@@ -30,8 +30,15 @@ import org.summerb.approaches.jdbccrud.common.DtoBase;
 public class Fingerprint implements DtoBase {
 	private static final long serialVersionUID = -3893655717810653990L;
 
+	/**
+	 * Algorithm of fingerprints calculated before algorithm was recorded along
+	 * with checksum
+	 */
+	public static final String LEGACY_ALGORITHM = "SHA-1";
+
 	private long size;
 	private String checksum;
+	private String algorithm;
 
 	public Fingerprint() {
 	}
@@ -52,10 +59,24 @@ public class Fingerprint implements DtoBase {
 		this.checksum = crc;
 	}
 
+	/**
+	 * @return name of the algorithm checksum was calculated with. Checksums
+	 *         calculated with different algorithms are not comparable, so same
+	 *         algorithm must be used to recalculate checksum for comparison
+	 */
+	public String getAlgorithm() {
+		return algorithm == null ? LEGACY_ALGORITHM : algorithm;
+	}
+
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + getAlgorithm().hashCode();
 		result = prime * result + ((checksum == null) ? 0 : checksum.hashCode());
 		result = prime * result + (int) (size ^ (size >>> 32));
 		return result;
@@ -70,6 +91,8 @@ public class Fingerprint implements DtoBase {
 		if (getClass() != obj.getClass())
 			return false;
 		Fingerprint other = (Fingerprint) obj;
+		if (!getAlgorithm().equals(other.getAlgorithm()))
+			return false;
 		if (checksum == null) {
 			if (other.checksum != null)
 				return false;
@@ -82,6 +105,6 @@ public class Fingerprint implements DtoBase {
 
 	@Override
 	public String toString() {
-		return "Fingerprint [size=" + size + ", checksum=" + checksum + "]";
+		return "Fingerprint [size=" + size + ", checksum=" + checksum + ", algorithm=" + getAlgorithm() + "]";
 	}
 }
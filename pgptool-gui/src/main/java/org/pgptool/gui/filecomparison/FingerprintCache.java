@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.filecomparison;
+
+/**
+ * Provides {@link Fingerprint} of a file without reading it when file wasn't
+ * changed since its fingerprint was calculated last time. File considered
+ * unchanged when its size, modification time and file key (inode where
+ * supported) are same.
+ * 
+ * @author Sergey Karpushin
+ */
+public interface FingerprintCache {
+	/**
+	 * @param file
+	 *            file to get fingerprint for
+	 * @param comparableWith
+	 *            fingerprint which result is going to be compared with. Result is
+	 *            calculated using same algorithm. If file size is different then
+	 *            file is not read at all and result will have size only, without
+	 *            checksum
+	 * @return fingerprint of the file, which can be compared with comparableWith
+	 */
+	Fingerprint getFingerprint(String file, Fingerprint comparableWith) throws Exception;
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.filecomparison;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of the file at the moment its {@link Fingerprint} was calculated. Used
+ * by {@link FingerprintCacheImpl}
+ * 
+ * NOTE: It's intentionally not a DtoBase so that changes in cache are not
+ * broadcasted as entity changes
+ * 
+ * @author Sergey Karpushin
+ */
+public class FingerprintCacheEntry implements Serializable {
+	private static final long serialVersionUID = 4186224917583349720L;
+
+	private long size;
+	private long lastModifiedNanos;
+	private String fileKey;
+	private long cachedAt;
+	private Fingerprint fingerprint;
+
+	public FingerprintCacheEntry() {
+	}
+
+	/**
+	 * @return current state of the file, without fingerprint
+	 */
+	public static FingerprintCacheEntry stat(Path file) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		FingerprintCacheEntry ret = new FingerprintCacheEntry();
+		ret.size = attrs.size();
+		ret.lastModifiedNanos = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+		// NOTE: File key is not available on all platforms (i.e. Windows)
+		ret.fileKey = attrs.fileKey() == null ? null : attrs.fileKey().toString();
+		return ret;
+	}
+
+	/**
+	 * @return true if file state is same as in other entry, fingerprint is not
+	 *         taken into account
+	 */
+	public boolean isSameFileState(FingerprintCacheEntry other) {
+		return size == other.size && lastModifiedNanos == other.lastModifiedNanos
+				&& Objects.equals(fileKey, other.fileKey);
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+	public long getLastModifiedNanos() {
+		return lastModifiedNanos;
+	}
+
+	public void setLastModifiedNanos(long lastModifiedNanos) {
+		this.lastModifiedNanos = lastModifiedNanos;
+	}
+
+	public String getFileKey() {
+		return fileKey;
+	}
+
+	public void setFileKey(String fileKey) {
+		this.fileKey = fileKey;
+	}
+
+	public long getCachedAt() {
+		return cachedAt;
+	}
+
+	public void setCachedAt(long cachedAt) {
+		this.cachedAt = cachedAt;
+	}
+
+	public Fingerprint getFingerprint() {
+		return fingerprint;
+	}
+
+	public void setFingerprint(Fingerprint fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	@Override
+	public String toString() {
+		return "FingerprintCacheEntry [size=" + size + ", lastModifiedNanos=" + lastModifiedNanos + ", fileKey="
+				+ fileKey + ", fingerprint=" + fingerprint + "]";
+	}
+}
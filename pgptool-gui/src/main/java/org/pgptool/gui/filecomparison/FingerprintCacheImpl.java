@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.filecomparison;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.pgptool.gui.configpairs.api.ConfigPairs;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Cached fingerprints are stored in {@link ConfigPairs} (one pair per file) so
+ * that they survive application restart.
+ * 
+ * @author Sergey Karpushin
+ */
+public class FingerprintCacheImpl implements FingerprintCache {
+	private static Logger log = Logger.getLogger(FingerprintCacheImpl.class);
+
+	/**
+	 * File which was modified very recently might be modified again without
+	 * modification time change (granularity is as coarse as 2 seconds on FAT). We
+	 * don't cache fingerprint of such file since we can't be sure it's valid
+	 */
+	static final long MODIFICATION_TIME_GRANULARITY_MS = 2000;
+
+	@Autowired
+	private ConfigPairs fingerprints;
+	@Autowired
+	private MessageDigestFactory messageDigestFactory;
+
+	private int maxEntries = 5000;
+	/**
+	 * Number of entries in {@link #fingerprints}, counted here to avoid traversing
+	 * all pairs on each put. -1 until first put
+	 */
+	private int entriesCount = -1;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong sizeMismatches = new AtomicLong();
+
+	@Override
+	public Fingerprint getFingerprint(String file, Fingerprint comparableWith) throws Exception {
+		Preconditions.checkArgument(comparableWith != null, "comparableWith fingerprint required");
+		String algorithm = comparableWith.getAlgorithm();
+
+		Path path = Paths.get(file);
+		FingerprintCacheEntry before = FingerprintCacheEntry.stat(path);
+		if (before.getSize() != comparableWith.getSize()) {
+			sizeMismatches.incrementAndGet();
+			Fingerprint ret = new Fingerprint();
+			ret.setSize(before.getSize());
+			ret.setAlgorithm(algorithm);
+			return ret;
+		}
+
+		FingerprintCacheEntry cached = fingerprints.find(file, null);
+		if (cached != null && cached.isSameFileState(before)
+				&& algorithm.equals(cached.getFingerprint().getAlgorithm())) {
+			hits.incrementAndGet();
+			return cached.getFingerprint();
+		}
+
+		misses.incrementAndGet();
+		Fingerprint ret = new ChecksumCalculationTask(file, messageDigestFactory.createNew(algorithm)).call();
+
+		// NOTE: If file was changed while we were reading it, then we can't tell
+		// which state fingerprint corresponds to
+		FingerprintCacheEntry after = FingerprintCacheEntry.stat(path);
+		long modifiedAgo = System.currentTimeMillis() - (before.getLastModifiedNanos() / 1000000);
+		if (before.isSameFileState(after) && ret.getSize() == before.getSize()
+				&& modifiedAgo >= MODIFICATION_TIME_GRANULARITY_MS) {
+			before.setFingerprint(ret);
+			before.setCachedAt(System.currentTimeMillis());
+			put(file, before);
+		} else {
+			log.debug("Fingerprint not cached since file was modified recently: " + file);
+		}
+		return ret;
+	}
+
+	private synchronized void put(String file, FingerprintCacheEntry entry) {
+		if (entriesCount < 0) {
+			entriesCount = fingerprints.getAll().size();
+		}
+		if (fingerprints.find(file, null) == null) {
+			entriesCount++;
+		}
+		fingerprints.put(file, entry);
+		if (entriesCount <= maxEntries) {
+			return;
+		}
+
+		// NOTE: Evict down to 90% so that eviction doesn't happen on each put
+		List<Entry<String, Object>> entries = new ArrayList<>(fingerprints.getAll());
+		entries.sort(Comparator.comparingLong(x -> ((FingerprintCacheEntry) x.getValue()).getCachedAt()));
+		int toEvict = entries.size() - maxEntries * 9 / 10;
+		for (int i = 0; i < toEvict; i++) {
+			fingerprints.put(entries.get(i).getKey(), null);
+		}
+		entriesCount = entries.size() - toEvict;
+		log.debug("Evicted " + toEvict + " cached fingerprints");
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/** Number of times fingerprint was returned without reading the file */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/** Number of times file had to be read to calculate fingerprint */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/** Number of times file wasn't read because its size was different */
+	public long getSizeMismatches() {
+		return sizeMismatches.get();
+	}
+}
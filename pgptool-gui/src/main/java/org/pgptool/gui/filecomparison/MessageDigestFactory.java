@@ -28,5 +28,36 @@ import java.security.MessageDigest;
  *
  */
 public interface MessageDigestFactory {
+	/**
+	 * @return digest of configured algorithm, used for new fingerprints
+	 */
 	MessageDigest createNew();
+
+	/**
+	 * @param algorithm
+	 *            algorithm name, see {@link Fingerprint#getAlgorithm()}
+	 * @return digest of given algorithm
+	 */
+	MessageDigest createNew(String algorithm);
+
+	/**
+	 * @return factory which yields digests of the same algorithm given fingerprint
+	 *         was calculated with, so that freshly calculated fingerprint can be
+	 *         compared to it
+	 */
+	default MessageDigestFactory comparableWith(Fingerprint fingerprint) {
+		String algorithm = fingerprint.getAlgorithm();
+		MessageDigestFactory parent = this;
+		return new MessageDigestFactory() {
+			@Override
+			public MessageDigest createNew() {
+				return parent.createNew(algorithm);
+			}
+
+			@Override
+			public MessageDigest createNew(String algorithm) {
+				return parent.createNew(algorithm);
+			}
+		};
+	}
 }
@@ -18,12 +18,54 @@
 package org.pgptool.gui.filecomparison;
 
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
-import org.bouncycastle.jcajce.provider.digest.SHA1;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Digests are created using JDK providers so that hardware accelerated
+ * implementations are used where available. In addition to JDK algorithms
+ * {@link #CRC32} is supported, it's much faster but only suitable for detecting
+ * accidental changes
+ * 
+ * @author Sergey Karpushin
+ */
+public class MessageDigestFactoryImpl implements MessageDigestFactory, InitializingBean {
+	public static final String CRC32 = Crc32Digest.ALGORITHM;
+
+	private String algorithm = "SHA-256";
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Preconditions.checkArgument(algorithm != null && algorithm.length() > 0, "Algorithm must be specified");
+		// NOTE: Fail fast in case algorithm is not supported
+		createNew();
+	}
 
-public class MessageDigestFactoryImpl implements MessageDigestFactory {
 	@Override
 	public MessageDigest createNew() {
-		return new SHA1.Digest();
+		return createNew(algorithm);
+	}
+
+	@Override
+	public MessageDigest createNew(String algorithm) {
+		if (CRC32.equals(algorithm)) {
+			return new Crc32Digest();
+		}
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Fingerprint algorithm is not supported: " + algorithm, e);
+		}
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
 	}
 }
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads source stream ahead on a dedicated thread so that disk IO overlaps
+ * with whatever consumer does with the data (i.e. decompression and
+ * decryption).
+ * 
+ * Data is passed in pooled chunks through a bounded queue, so memory footprint
+ * never exceeds chunkSize * chunksCount regardless of how slow consumer is.
+ * 
+ * Not thread-safe on the consumer side, same as any other stream. Consumer MUST
+ * close this stream, otherwise reader thread will stay blocked forever.
+ * 
+ * @author Sergey Karpushin
+ */
+public class PipelinedInputStream extends InputStream {
+	private static final Chunk EOF = new Chunk(null, -1);
+
+	private final InputStream source;
+	private final BlockingQueue<Chunk> filled;
+	private final BlockingQueue<byte[]> free;
+	private final Thread reader;
+
+	private volatile boolean closed;
+	private volatile Throwable readerFailure;
+
+	private Chunk current;
+	private int currentPos;
+	private boolean eofReached;
+
+	public PipelinedInputStream(InputStream source, int chunkSize, int chunksCount) {
+		Preconditions.checkArgument(source != null, "source stream required");
+		Preconditions.checkArgument(chunkSize > 0 && chunksCount > 0, "chunkSize and chunksCount must be positive");
+		this.source = source;
+		filled = new ArrayBlockingQueue<>(chunksCount + 1);
+		free = new ArrayBlockingQueue<>(chunksCount);
+		for (int i = 0; i < chunksCount; i++) {
+			free.add(new byte[chunkSize]);
+		}
+
+		reader = new Thread(readLoop, "PipelinedReader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private Runnable readLoop = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				while (!closed) {
+					byte[] buf = free.take();
+					int read = source.read(buf);
+					if (read < 0) {
+						break;
+					}
+					filled.put(new Chunk(buf, read));
+				}
+			} catch (InterruptedException ie) {
+				// that's fine -- consumer closed the stream
+			} catch (Throwable t) {
+				if (!closed) {
+					readerFailure = t;
+				}
+			} finally {
+				// NOTE: Queue has one spare slot for this marker, so it never blocks
+				filled.offer(EOF);
+			}
+		}
+	};
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureCurrentChunk()) {
+			return -1;
+		}
+		int ret = current.buf[currentPos++] & 0xFF;
+		releaseCurrentChunkIfConsumed();
+		return ret;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureCurrentChunk()) {
+			return -1;
+		}
+		int ret = Math.min(len, current.len - currentPos);
+		System.arraycopy(current.buf, currentPos, b, off, ret);
+		currentPos += ret;
+		releaseCurrentChunkIfConsumed();
+		return ret;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return current == null ? 0 : current.len - currentPos;
+	}
+
+	private boolean ensureCurrentChunk() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		while (current == null) {
+			if (eofReached) {
+				return false;
+			}
+
+			Chunk chunk;
+			try {
+				chunk = filled.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for data");
+			}
+
+			if (chunk == EOF) {
+				eofReached = true;
+				if (readerFailure != null) {
+					throw new IOException("Failed to read source stream", readerFailure);
+				}
+				return false;
+			}
+			if (chunk.len > 0) {
+				current = chunk;
+				currentPos = 0;
+			} else {
+				free.offer(chunk.buf);
+			}
+		}
+		return true;
+	}
+
+	private void releaseCurrentChunkIfConsumed() {
+		if (currentPos < current.len) {
+			return;
+		}
+		free.offer(current.buf);
+		current = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		reader.interrupt();
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			source.close();
+		}
+	}
+
+	private static class Chunk {
+		private final byte[] buf;
+		private final int len;
+
+		private Chunk(byte[] buf, int len) {
+			this.buf = buf;
+			this.len = len;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.tools;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes to the target stream on a dedicated thread so that disk IO overlaps
+ * with whatever producer does to create the data (i.e. compression and
+ * encryption).
+ * 
+ * Data is passed in pooled chunks through a bounded queue. When writer falls
+ * behind producer is blocked, so memory footprint never exceeds chunkSize *
+ * chunksCount.
+ * 
+ * NOTE: {@link #flush()} only hands buffered data over to the writer thread, it
+ * doesn't wait for it to reach the target. Only {@link #close()} does. Producer
+ * MUST close this stream, otherwise writer thread will stay blocked forever.
+ * Write failures are reported on subsequent write or on close.
+ * 
+ * @author Sergey Karpushin
+ */
+public class PipelinedOutputStream extends OutputStream {
+	private static final Chunk EOF = new Chunk(null, -1);
+
+	private final OutputStream target;
+	private final BlockingQueue<Chunk> filled;
+	private final BlockingQueue<byte[]> free;
+	private final Thread writer;
+
+	private volatile Throwable writerFailure;
+	private boolean closed;
+
+	private byte[] current;
+	private int currentLen;
+
+	public PipelinedOutputStream(OutputStream target, int chunkSize, int chunksCount) {
+		Preconditions.checkArgument(target != null, "target stream required");
+		Preconditions.checkArgument(chunkSize > 0 && chunksCount > 0, "chunkSize and chunksCount must be positive");
+		this.target = target;
+		filled = new ArrayBlockingQueue<>(chunksCount + 1);
+		free = new ArrayBlockingQueue<>(chunksCount);
+		for (int i = 0; i < chunksCount; i++) {
+			free.add(new byte[chunkSize]);
+		}
+
+		writer = new Thread(writeLoop, "PipelinedWriter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private Runnable writeLoop = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Chunk chunk = filled.take();
+					if (chunk == EOF) {
+						return;
+					}
+					try {
+						if (writerFailure == null) {
+							target.write(chunk.buf, 0, chunk.len);
+						}
+					} catch (Throwable t) {
+						// NOTE: We keep draining queue so that producer will not be
+						// blocked. It'll learn about failure on next write
+						writerFailure = t;
+					}
+					free.put(chunk.buf);
+				}
+			} catch (InterruptedException ie) {
+				writerFailure = ie;
+			}
+		}
+	};
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureCurrentChunk();
+		current[currentLen++] = (byte) b;
+		if (currentLen == current.length) {
+			handOverCurrentChunk();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			ensureCurrentChunk();
+			int toCopy = Math.min(len, current.length - currentLen);
+			System.arraycopy(b, off, current, currentLen, toCopy);
+			currentLen += toCopy;
+			off += toCopy;
+			len -= toCopy;
+			if (currentLen == current.length) {
+				handOverCurrentChunk();
+			}
+		}
+	}
+
+	private void ensureCurrentChunk() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		throwIfWriterFailed();
+		if (current != null) {
+			return;
+		}
+		try {
+			current = free.take();
+			currentLen = 0;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for writer");
+		}
+	}
+
+	private void handOverCurrentChunk() throws IOException {
+		if (current == null) {
+			return;
+		}
+		if (currentLen == 0) {
+			free.offer(current);
+			current = null;
+			return;
+		}
+		try {
+			filled.put(new Chunk(current, currentLen));
+			current = null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for writer");
+		}
+	}
+
+	private void throwIfWriterFailed() throws IOException {
+		if (writerFailure != null) {
+			throw new IOException("Failed to write target stream", writerFailure);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+		throwIfWriterFailed();
+		handOverCurrentChunk();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		try {
+			handOverCurrentChunk();
+		} finally {
+			closed = true;
+			// NOTE: Queue has one spare slot for this marker, so it never blocks
+			filled.offer(EOF);
+			boolean interrupted = false;
+			while (writer.isAlive()) {
+				try {
+					writer.join();
+				} catch (InterruptedException e) {
+					// NOTE: We must not leave until writer is done with the target
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			target.close();
+		}
+		throwIfWriterFailed();
+	}
+
+	private static class Chunk {
+		private final byte[] buf;
+		private final int len;
+
+		private Chunk(byte[] buf, int len) {
+			this.buf = buf;
+			this.len = len;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.tools.fileswatcher;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.nio.file.WatchEvent.Kind;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Accumulates file events until there are no new events during quiet window
+ * and then delivers them as single batch to the handler on the separate
+ * dispatcher thread. Events for the same file are collapsed into one net
+ * change, i.e. delete followed by create (typical for editors saving file) is
+ * reported as modification, while create followed by delete is not reported at
+ * all.
+ * 
+ * <p>
+ * To make sure events are not postponed forever by constant activity, batch is
+ * delivered anyway once {@link #MAX_DELAY_WINDOWS} quiet windows passed since
+ * first event in the batch.
+ * 
+ * @author Sergey Karpushin
+ */
+class FileEventsCoalescer {
+	private static Logger log = Logger.getLogger(FileEventsCoalescer.class);
+
+	public static final int MAX_DELAY_WINDOWS = 10;
+
+	private final FilesWatcherHandler handler;
+	private final long quietWindowNs;
+	private final ScheduledExecutorService dispatcher;
+
+	private final Object lock = new Object();
+	private Map<String, PendingChange> pending = new LinkedHashMap<>();
+	private long firstEventAt;
+	private long lastEventAt;
+	private ScheduledFuture<?> scheduledDispatch;
+
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+
+	private static class PendingChange {
+		final Kind<?> first;
+		Kind<?> last;
+
+		PendingChange(Kind<?> first) {
+			this.first = first;
+			this.last = first;
+		}
+
+		/**
+		 * @return net change or null if file state is same as it was before first
+		 *         event
+		 */
+		Kind<?> getNetChange() {
+			boolean existedBefore = !ENTRY_CREATE.equals(first);
+			boolean existsAfter = !ENTRY_DELETE.equals(last);
+			if (existedBefore && existsAfter) {
+				return ENTRY_MODIFY;
+			}
+			if (existedBefore) {
+				return ENTRY_DELETE;
+			}
+			return existsAfter ? ENTRY_CREATE : null;
+		}
+	}
+
+	FileEventsCoalescer(FilesWatcherHandler handler, String name, long quietWindowMs) {
+		this.handler = handler;
+		this.quietWindowNs = TimeUnit.MILLISECONDS.toNanos(quietWindowMs);
+		dispatcher = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("FilesWatcherDispatch-" + name).setDaemon(true).build());
+	}
+
+	void submit(Kind<?> kind, String file) {
+		synchronized (lock) {
+			lastEventAt = System.nanoTime();
+			PendingChange change = pending.get(file);
+			if (change != null) {
+				change.last = kind;
+				coalesced.incrementAndGet();
+			} else {
+				if (pending.isEmpty()) {
+					firstEventAt = lastEventAt;
+				}
+				pending.put(file, new PendingChange(kind));
+			}
+			if (scheduledDispatch == null && !dispatcher.isShutdown()) {
+				scheduledDispatch = dispatcher.schedule(this::dispatch, quietWindowNs, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	private void dispatch() {
+		Map<String, PendingChange> batch;
+		synchronized (lock) {
+			long now = System.nanoTime();
+			long dispatchAt = Math.min(lastEventAt + quietWindowNs, firstEventAt + quietWindowNs * MAX_DELAY_WINDOWS);
+			if (now < dispatchAt) {
+				scheduledDispatch = dispatcher.schedule(this::dispatch, dispatchAt - now, TimeUnit.NANOSECONDS);
+				return;
+			}
+			batch = pending;
+			pending = new LinkedHashMap<>();
+			scheduledDispatch = null;
+		}
+
+		Map<String, Kind<?>> changes = new LinkedHashMap<>();
+		for (Entry<String, PendingChange> entry : batch.entrySet()) {
+			Kind<?> netChange = entry.getValue().getNetChange();
+			if (netChange == null) {
+				dropped.incrementAndGet();
+				continue;
+			}
+			changes.put(entry.getKey(), netChange);
+		}
+		if (changes.isEmpty()) {
+			return;
+		}
+
+		batches.incrementAndGet();
+		try {
+			handler.handleFilesChanged(Collections.unmodifiableMap(changes));
+		} catch (Throwable t) {
+			log.error("Failed to handle file changes " + changes, t);
+		}
+	}
+
+	/**
+	 * Stop dispatching. Changes which were not dispatched yet are dropped
+	 */
+	void stop() {
+		dispatcher.shutdownNow();
+		synchronized (lock) {
+			dropped.addAndGet(pending.size());
+			pending.clear();
+		}
+	}
+
+	/**
+	 * @return number of events which were merged with previous events for the
+	 *         same file
+	 */
+	long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return number of files which changes were not delivered because net change
+	 *         is none or because dispatcher was stopped
+	 */
+	long getDroppedCount() {
+		return dropped.get();
+	}
+
+	long getBatchesCount() {
+		return batches.get();
+	}
+}
@@ -18,7 +18,19 @@
 package org.pgptool.gui.tools.fileswatcher;
 
 import java.nio.file.WatchEvent.Kind;
+import java.util.Map;
 
 public interface FilesWatcherHandler {
 	void handleFileChanged(Kind<?> entryDelete, String fileAbsolutePathname);
+
+	/**
+	 * Handle batch of net changes. By default each change is handled separately
+	 * 
+	 * @param changes
+	 *            map from absolute file path name to change kind, ordered by
+	 *            first event
+	 */
+	default void handleFilesChanged(Map<String, Kind<?>> changes) {
+		changes.forEach((file, kind) -> handleFileChanged(kind, file));
+	}
 }
@@ -22,83 +22,89 @@ import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 
 import java.io.File;
-import java.nio.file.ClosedWatchServiceException;
-import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
+import java.nio.file.WatchEvent.Kind;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.log4j.Logger;
-import org.summerb.utils.threads.RecurringBackgroundTask;
-
-// NOTE: Consider migrating to org.apache.commons.io.monitor.FileAlterationObserver, it appears we introduced bycle here
-
+import org.pgptool.gui.tools.fileswatcher.SharedWatchService.DirectoryListener;
+
+/**
+ * Watches individual files by watching their parent folders. Parent folders of
+ * the watched folders are watched as well (up to the root), so that removal or
+ * renaming of any of them is detected by the event rather than by polling.
+ * When that happens {@link java.nio.file.StandardWatchEventKinds#ENTRY_DELETE} is reported
+ * for every watched file in the removed folder. Parent folders are watched only
+ * for removals, so that activity in them (e.g. in user home) doesn't wake up
+ * watcher thread.
+ * 
+ * <p>
+ * All instances share single {@link SharedWatchService}. Events are passed
+ * through {@link FileEventsCoalescer}, so handler receives net changes in
+ * batches on the dispatcher thread of this watcher.
+ */
 public class MultipleFilesWatcher {
 	private static Logger log = Logger.getLogger(MultipleFilesWatcher.class);
 
 	private FilesWatcherHandler dirWatcherHandler;
 	private String watcherName;
 
-	private Map<WatchKey, BaseFolder> keys = new HashMap<>();
-	private Map<String, BaseFolder> baseFolders = new HashMap<>();
-
-	private Thread workerThread;
-	private WatchService watcher;
-
+	private final Object lock = new Object();
+	/**
+	 * Folders with watched files, sorted so that folders affected by removal of
+	 * some parent folder can be found without scanning all of them
+	 */
+	private NavigableMap<String, BaseFolder> baseFolders = new TreeMap<>();
 	/**
-	 * since WatchService is not notifying us in case of parent folders removal AND
-	 * we don't want to overcomplicate code to watch ALL parent folders we're having
-	 * here another simple thread that will go and check folders existance
+	 * Folders registered in shared watch service, either as base folders or as
+	 * parents of base folders
 	 */
-	private RecurringBackgroundTask dirsExistanceWatcherTask;
+	private Set<Path> registeredDirs = new HashSet<>();
+
+	private SharedWatchService watchService;
+	private FileEventsCoalescer coalescer;
 
 	public MultipleFilesWatcher(FilesWatcherHandler dirWatcherHandler, String watcherName) {
+		this(dirWatcherHandler, watcherName, 0);
+	}
+
+	/**
+	 * @param quietWindowMs
+	 *            events are delivered to handler once there were no new events
+	 *            during this time, see {@link FileEventsCoalescer}
+	 */
+	public MultipleFilesWatcher(FilesWatcherHandler dirWatcherHandler, String watcherName, long quietWindowMs) {
 		this.dirWatcherHandler = dirWatcherHandler;
 		this.watcherName = watcherName;
-		startWatcher();
+		startWatcher(quietWindowMs);
 	}
 
-	private void startWatcher() {
+	private void startWatcher(long quietWindowMs) {
 		try {
-			watcher = FileSystems.getDefault().newWatchService();
-			workerThread = buildThreadAndStart();
-			dirsExistanceWatcherTask = new RecurringBackgroundTask(dirsExistanceWatcher, 2000);
+			coalescer = new FileEventsCoalescer(dirWatcherHandler, watcherName, quietWindowMs);
+			watchService = SharedWatchService.acquire();
 		} catch (Throwable t) {
 			throw new RuntimeException("failed to install watcher", t);
 		}
 	}
 
-	private Runnable dirsExistanceWatcher = new Runnable() {
-		@Override
-		public void run() {
-			synchronized (watcherName) {
-				for (BaseFolder bf : new ArrayList<>(baseFolders.values())) {
-					if (new File(bf.folder).exists()) {
-						continue;
-					}
-
-					for (String file : new ArrayList<>(bf.interestedFiles)) {
-						String filePathName = bf.folder + File.separator + file;
-						dirWatcherHandler.handleFileChanged(ENTRY_DELETE, filePathName);
-					}
-				}
-			}
-		}
-	};
-
 	public void watchForFileChanges(String filePathName) {
 		try {
 			String baseFolderStr = FilenameUtils.getFullPathNoEndSeparator(filePathName);
 			String relativeFilename = FilenameUtils.getName(filePathName);
 
-			synchronized (watcherName) {
+			synchronized (lock) {
 				BaseFolder baseFolder = baseFolders.get(baseFolderStr);
 				if (baseFolder != null) {
 					log.debug("Parent directory is already being watched " + baseFolderStr
@@ -108,11 +114,15 @@ public class MultipleFilesWatcher {
 				}
 
 				Path path = Paths.get(baseFolderStr);
-				WatchKey key = path.register(watcher, ENTRY_DELETE, ENTRY_MODIFY, ENTRY_CREATE);
-				baseFolder = new BaseFolder(baseFolderStr, key, path, relativeFilename);
-
-				keys.put(key, baseFolder);
+				// NOTE: Folder might be registered already as a parent of other base folder,
+				// in such case it's registered again for all event kinds
+				if (!watchService.register(path, directoryListener, ENTRY_DELETE, ENTRY_MODIFY, ENTRY_CREATE)) {
+					throw new IllegalStateException("Failed to watch folder " + baseFolderStr);
+				}
+				registeredDirs.add(path);
+				baseFolder = new BaseFolder(baseFolderStr, path, relativeFilename);
 				baseFolders.put(baseFolderStr, baseFolder);
+				registerParents(path);
 
 				log.debug("New watch key created for folder " + baseFolderStr + ", add first file " + relativeFilename);
 			}
@@ -122,12 +132,26 @@ public class MultipleFilesWatcher {
 		}
 	}
 
+	private void registerParents(Path path) {
+		for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+			if (registeredDirs.contains(parent)) {
+				// NOTE: It means all it's parents are registered as well
+				return;
+			}
+			if (!watchService.register(parent, directoryListener, ENTRY_DELETE)) {
+				// NOTE: Not fatal. Removal of this parent just will not be noticed
+				continue;
+			}
+			registeredDirs.add(parent);
+		}
+	}
+
 	public void stopWatchingFile(String filePathName) {
 		try {
 			String baseFolderStr = FilenameUtils.getFullPathNoEndSeparator(filePathName);
 			String relativeFilename = FilenameUtils.getName(filePathName);
 
-			synchronized (watcherName) {
+			synchronized (lock) {
 				BaseFolder baseFolder = baseFolders.get(baseFolderStr);
 				if (baseFolder == null) {
 					log.debug("No associated watchers found for " + baseFolderStr);
@@ -136,16 +160,9 @@ public class MultipleFilesWatcher {
 
 				baseFolder.interestedFiles.remove(relativeFilename);
 				log.debug("File is no longer watched in folder " + baseFolderStr + " file " + relativeFilename);
-				if (baseFolder.interestedFiles.size() > 0) {
-					return;
-				}
 
-				// NOTE: Decided to turn this off, because file might re-appear in case it's app
-				// re-created it. See #91, #75
-				// keys.remove(baseFolder.key);
-				// baseFolders.remove(baseFolder.folder);
-				// baseFolder.key.cancel();
-				// log.debug("Folder watch key is canceled " + baseFolderStr);
+				// NOTE: Folder remains watched even if there are no files of interest, because
+				// file might re-appear in case it's app re-created it. See #91, #75
 			}
 		} catch (Throwable t) {
 			log.error("Failed to watch file " + filePathName, t);
@@ -153,110 +170,118 @@ public class MultipleFilesWatcher {
 		}
 	}
 
-	private Thread buildThreadAndStart() {
-		Thread ret = new Thread("FilesWatcher-" + watcherName) {
-			@Override
-			public void run() {
-				log.debug("FileWatcher thread started " + watcherName);
-				boolean continueWatching = true;
-				while (continueWatching) {
-					WatchKey key;
-					try {
-						idleIfNoKeysRegistered();
-						key = watcher.take();
-						// NOTE: Since we're watching only one folder we assume
-						// that there will be only one key for our folder
-					} catch (ClosedWatchServiceException cwe) {
-						log.error("ClosedWatchServiceException fired, stoppign thread.", cwe);
-						return;
-					} catch (InterruptedException x) {
-						log.debug("FileWatcher thread stopped by InterruptedException", x);
-						return;
-					} catch (Throwable t) {
-						log.error("Unexpected exception while checking for updates on watched file", t);
-						return;
+	private DirectoryListener directoryListener = new DirectoryListener() {
+		@Override
+		public void onEvents(Path dir, List<WatchEvent<?>> events) {
+			List<Pair<Kind<?>, String>> changes = new ArrayList<>();
+			synchronized (lock) {
+				BaseFolder baseFolder = baseFolders.get(dir.toString());
+				for (WatchEvent<?> event : events) {
+					if (!(event.context() instanceof Path)) {
+						// NOTE: i.e. OVERFLOW
+						log.debug("Watcher event ignored: " + event.kind().name() + " in " + dir);
+						continue;
 					}
-
-					BaseFolder baseFolder = null;
-					synchronized (watcherName) {
-						baseFolder = keys.get(key);
+					Path child = dir.resolve((Path) event.context());
+					if (ENTRY_DELETE.equals(event.kind())) {
+						collectFilesInRemovedFolder(child, changes);
 					}
 					if (baseFolder == null) {
-						key.cancel();
 						continue;
 					}
-
-					for (WatchEvent<?> event : key.pollEvents()) {
-						// Context for directory entry event is the file name of
-						// entry
-						WatchEvent<Path> ev = cast(event);
-						Path name = ev.context();
-						Path child = baseFolder.path.resolve(name);
-						String relativeFilename = FilenameUtils.getName(child.toString());
-						if (!baseFolder.interestedFiles.contains(relativeFilename)
-								&& !event.kind().equals(ENTRY_CREATE)) {
-							continue;
-						}
-
-						// print out event
-						log.debug("Watcher event: " + event.kind().name() + ", file " + child);
-						dirWatcherHandler.handleFileChanged(event.kind(), child.toString());
-					}
-
-					// reset key and remove from set if directory no longer
-					// accessible
-					boolean valid = key.reset();
-					if (!valid) {
-						synchronized (watcherName) {
-							keys.remove(key);
-							baseFolders.remove(baseFolder.folder);
-						}
+					String relativeFilename = child.getFileName().toString();
+					if (!baseFolder.interestedFiles.contains(relativeFilename) && !event.kind().equals(ENTRY_CREATE)) {
+						continue;
 					}
+					changes.add(Pair.of(event.kind(), child.toString()));
 				}
-				log.debug("FileWatcher thread stopped " + watcherName);
 			}
+			dispatch(changes);
+		}
+
+		@Override
+		public void onInvalidated(Path dir) {
+			List<Pair<Kind<?>, String>> changes = new ArrayList<>();
+			synchronized (lock) {
+				registeredDirs.remove(dir);
+				collectFilesInRemovedFolder(dir, changes);
+			}
+			dispatch(changes);
+		}
+	};
 
-			private void idleIfNoKeysRegistered() throws InterruptedException {
-				while (true) {
-					synchronized (watcherName) {
-						if (!keys.isEmpty()) {
-							break;
-						}
-					}
-					Thread.sleep(500);
-				}
-			};
-		};
-		ret.start();
-		return ret;
+	/**
+	 * Report all watched files in the removed folder or any of it's subfolders as
+	 * deleted. Such folders are no longer watched
+	 */
+	private void collectFilesInRemovedFolder(Path removed, List<Pair<Kind<?>, String>> changes) {
+		String removedStr = removed.toString();
+		String removedPrefix = removedStr.endsWith(File.separator) ? removedStr : removedStr + File.separator;
+		Map<String, BaseFolder> affected = new HashMap<>(
+				baseFolders.subMap(removedStr, true, removedPrefix + Character.MAX_VALUE, false));
+		for (BaseFolder baseFolder : affected.values()) {
+			if (!baseFolder.folder.equals(removedStr) && !baseFolder.folder.startsWith(removedPrefix)) {
+				continue;
+			}
+			log.debug("Watched folder was removed " + baseFolder.folder);
+			for (String file : baseFolder.interestedFiles) {
+				changes.add(Pair.of(ENTRY_DELETE, baseFolder.path.resolve(file).toString()));
+			}
+			baseFolders.remove(baseFolder.folder);
+			if (registeredDirs.remove(baseFolder.path)) {
+				watchService.unregister(baseFolder.path, directoryListener);
+			}
+		}
+	}
+
+	private void dispatch(List<Pair<Kind<?>, String>> changes) {
+		for (Pair<Kind<?>, String> change : changes) {
+			log.debug("Watcher event: " + change.getLeft().name() + ", file " + change.getRight());
+			coalescer.submit(change.getLeft(), change.getRight());
+		}
 	}
 
 	public void stopWatcher() {
 		try {
-			workerThread.interrupt();
-			workerThread = null;
-			watcher.close();
-			watcher = null;
-			dirsExistanceWatcherTask.tearDown(1000);
+			synchronized (lock) {
+				for (Path dir : registeredDirs) {
+					watchService.unregister(dir, directoryListener);
+				}
+				registeredDirs.clear();
+				baseFolders.clear();
+			}
+			SharedWatchService.release(watchService);
+			coalescer.stop();
+			log.debug(String.format("Watcher %s stopped: batches %d, events coalesced %d, changes dropped %d",
+					watcherName, coalescer.getBatchesCount(), coalescer.getCoalescedCount(),
+					coalescer.getDroppedCount()));
 		} catch (Throwable t) {
 			log.error("Failed to gracefully close watcher service", t);
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	static <T> WatchEvent<T> cast(WatchEvent<?> event) {
-		return (WatchEvent<T>) event;
+	/**
+	 * @return number of events merged with previous events for the same file
+	 */
+	public long getCoalescedEventsCount() {
+		return coalescer.getCoalescedCount();
+	}
+
+	/**
+	 * @return number of files which changes were not delivered to handler
+	 *         because net change was none or watcher was stopped
+	 */
+	public long getDroppedChangesCount() {
+		return coalescer.getDroppedCount();
 	}
 
 	private static class BaseFolder {
 		String folder;
 		Path path;
-		List<String> interestedFiles = new ArrayList<>();
-		WatchKey key;
+		Set<String> interestedFiles = new HashSet<>();
 
-		public BaseFolder(String folder, WatchKey key, Path path, String firstFile) {
+		public BaseFolder(String folder, Path path, String firstFile) {
 			this.folder = folder;
-			this.key = key;
 			this.path = path;
 			interestedFiles.add(firstFile);
 		}
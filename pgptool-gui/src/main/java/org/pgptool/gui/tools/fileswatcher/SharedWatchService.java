@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.tools.fileswatcher;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchEvent.Kind;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Single {@link WatchService} shared by all {@link MultipleFilesWatcher}
+ * instances. Each directory is registered only once no matter how many
+ * watchers are interested in it, events are delivered to each of them.
+ * Directory is registered only for event kinds some of the listeners are
+ * interested in, each listener receives only events of kinds it asked for.
+ * 
+ * <p>
+ * Events are read by single thread which is blocked in
+ * {@link WatchService#take()} while there is nothing to report, so it doesn't
+ * consume CPU when idle. Service and thread are closed when last watcher
+ * releases it.
+ * 
+ * @author Sergey Karpushin
+ */
+class SharedWatchService {
+	private static Logger log = Logger.getLogger(SharedWatchService.class);
+
+	private static SharedWatchService instance;
+	private static int usages;
+
+	private final WatchService watchService;
+	private final Thread workerThread;
+	private final Map<WatchKey, WatchedDir> dirs = new HashMap<>();
+	private final Map<Path, WatchedDir> dirsByPath = new HashMap<>();
+
+	interface DirectoryListener {
+		void onEvents(Path dir, List<WatchEvent<?>> events);
+
+		/**
+		 * Directory no longer watched, most likely because it was deleted
+		 */
+		void onInvalidated(Path dir);
+	}
+
+	private static class WatchedDir {
+		final Path path;
+		WatchKey key;
+		Set<Kind<?>> kinds = new HashSet<>();
+		final Map<DirectoryListener, Set<Kind<?>>> listeners = new ConcurrentHashMap<>();
+
+		WatchedDir(Path path) {
+			this.path = path;
+		}
+
+		Set<Kind<?>> getRequestedKinds() {
+			Set<Kind<?>> ret = new HashSet<>();
+			for (Set<Kind<?>> listenerKinds : listeners.values()) {
+				ret.addAll(listenerKinds);
+			}
+			return ret;
+		}
+
+		/**
+		 * Register directory (again) if set of event kinds listeners are interested
+		 * in was changed. Watch key remains the same if directory was registered
+		 * already
+		 */
+		void updateRegistration(WatchService watchService) throws IOException {
+			Set<Kind<?>> requested = getRequestedKinds();
+			if (key != null && requested.equals(kinds)) {
+				return;
+			}
+			key = path.register(watchService, requested.toArray(new Kind<?>[requested.size()]));
+			kinds = requested;
+		}
+	}
+
+	private SharedWatchService() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+		workerThread = new Thread(this::processEvents, "FilesWatcher");
+		workerThread.setDaemon(true);
+		workerThread.start();
+	}
+
+	static synchronized SharedWatchService acquire() throws IOException {
+		if (instance == null) {
+			instance = new SharedWatchService();
+		}
+		usages++;
+		return instance;
+	}
+
+	static synchronized void release(SharedWatchService service) {
+		if (service != instance) {
+			return;
+		}
+		if (--usages > 0) {
+			return;
+		}
+		instance = null;
+		service.close();
+	}
+
+	private void close() {
+		try {
+			workerThread.interrupt();
+			watchService.close();
+		} catch (Throwable t) {
+			log.error("Failed to gracefully close watch service", t);
+		}
+	}
+
+	/**
+	 * @param kinds
+	 *            event kinds listener is interested in. If listener is already
+	 *            registered for this directory, its kinds are replaced
+	 * @return true if directory is now watched for the listener
+	 */
+	boolean register(Path dir, DirectoryListener listener, Kind<?>... kinds) {
+		synchronized (dirs) {
+			WatchedDir watchedDir = dirsByPath.get(dir);
+			boolean isNew = watchedDir == null;
+			if (isNew) {
+				watchedDir = new WatchedDir(dir);
+			}
+			Set<Kind<?>> previousKinds = watchedDir.listeners.put(listener, new HashSet<>(Arrays.asList(kinds)));
+			try {
+				watchedDir.updateRegistration(watchService);
+			} catch (Throwable t) {
+				log.debug("Failed to watch directory " + dir, t);
+				if (previousKinds == null) {
+					watchedDir.listeners.remove(listener);
+				} else {
+					watchedDir.listeners.put(listener, previousKinds);
+				}
+				return false;
+			}
+			if (isNew) {
+				dirs.put(watchedDir.key, watchedDir);
+				dirsByPath.put(dir, watchedDir);
+			}
+			return true;
+		}
+	}
+
+	void unregister(Path dir, DirectoryListener listener) {
+		synchronized (dirs) {
+			WatchedDir watchedDir = dirsByPath.get(dir);
+			if (watchedDir == null) {
+				return;
+			}
+			watchedDir.listeners.remove(listener);
+			if (watchedDir.listeners.isEmpty()) {
+				dirs.remove(watchedDir.key);
+				dirsByPath.remove(dir);
+				watchedDir.key.cancel();
+				return;
+			}
+			try {
+				// NOTE: Remaining listeners might need less event kinds
+				watchedDir.updateRegistration(watchService);
+			} catch (Throwable t) {
+				log.debug("Failed to update registration of directory " + dir, t);
+			}
+		}
+	}
+
+	private void processEvents() {
+		log.debug("FileWatcher thread started");
+		while (true) {
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (ClosedWatchServiceException | InterruptedException e) {
+				log.debug("FileWatcher thread stopped");
+				return;
+			} catch (Throwable t) {
+				log.error("Unexpected exception while checking for updates on watched files", t);
+				return;
+			}
+
+			try {
+				processKey(key);
+			} catch (Throwable t) {
+				log.error("Failed to process file watcher events", t);
+			}
+		}
+	}
+
+	private void processKey(WatchKey key) {
+		WatchedDir watchedDir;
+		synchronized (dirs) {
+			watchedDir = dirs.get(key);
+		}
+		if (watchedDir == null) {
+			key.cancel();
+			return;
+		}
+
+		List<WatchEvent<?>> events = new ArrayList<>(key.pollEvents());
+		for (Entry<DirectoryListener, Set<Kind<?>>> listener : watchedDir.listeners.entrySet()) {
+			List<WatchEvent<?>> requested = filterByKinds(events, listener.getValue());
+			if (!requested.isEmpty()) {
+				listener.getKey().onEvents(watchedDir.path, requested);
+			}
+		}
+
+		if (key.reset()) {
+			return;
+		}
+		// NOTE: Directory is no longer accessible
+		synchronized (dirs) {
+			dirs.remove(key);
+			dirsByPath.remove(watchedDir.path, watchedDir);
+		}
+		for (DirectoryListener listener : watchedDir.listeners.keySet()) {
+			listener.onInvalidated(watchedDir.path);
+		}
+	}
+
+	private static List<WatchEvent<?>> filterByKinds(List<WatchEvent<?>> events, Set<Kind<?>> kinds) {
+		List<WatchEvent<?>> ret = new ArrayList<>(events.size());
+		for (WatchEvent<?> event : events) {
+			// NOTE: Overflow is reported regardless of kinds requested
+			if (kinds.contains(event.kind()) || StandardWatchEventKinds.OVERFLOW.equals(event.kind())) {
+				ret.add(event);
+			}
+		}
+		return ret;
+	}
+}
@@ -149,10 +149,10 @@ public class SingleInstanceFileBasedImpl implements SingleInstance {
 		 */
 		private InvokePrimaryInstanceArgs tryReadArgs(String fileName) throws InterruptedException {
 			long timeoutAt = System.currentTimeMillis() + LOCK_ARGS_SUBMISSION_TIMEOUT;
-			InvokePrimaryInstanceArgs args = ConfigRepositoryImpl.readObject(fileName);
+			InvokePrimaryInstanceArgs args = ConfigRepositoryImpl.readObject(fileName, InvokePrimaryInstanceArgs.class);
 			while (args == null && System.currentTimeMillis() < timeoutAt) {
 				Thread.sleep(50);
-				args = ConfigRepositoryImpl.readObject(fileName);
+				args = ConfigRepositoryImpl.readObject(fileName, InvokePrimaryInstanceArgs.class);
 			}
 			return args;
 		}
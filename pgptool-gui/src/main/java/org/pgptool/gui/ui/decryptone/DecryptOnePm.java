@@ -26,12 +26,14 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.swing.Action;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import org.apache.commons.io.FilenameUtils;
@@ -44,14 +46,12 @@ import org.pgptool.gui.configpairs.api.ConfigPairs;
 import org.pgptool.gui.decryptedlist.api.DecryptedFile;
 import org.pgptool.gui.decryptedlist.api.MonitoringDecryptedFilesService;
 import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.encryption.api.EncryptionServiceAsync;
 import org.pgptool.gui.encryption.api.KeyRingService;
+import org.pgptool.gui.encryption.api.dto.OperationResult;
 import org.pgptool.gui.encryption.implpgp.SymmetricEncryptionIsNotSupportedException;
 import org.pgptool.gui.encryptionparams.api.EncryptionParamsStorage;
-import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisor;
-import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisorImpl;
-import org.pgptool.gui.filecomparison.ChecksumCalculationTask;
 import org.pgptool.gui.filecomparison.Fingerprint;
-import org.pgptool.gui.filecomparison.MessageDigestFactory;
 import org.pgptool.gui.tempfolderfordecrypted.api.DecryptedTempFolder;
 import org.pgptool.gui.tools.FileUtilsEx;
 import org.pgptool.gui.ui.decryptonedialog.KeyAndPasswordCallback;
@@ -95,8 +95,6 @@ public class DecryptOnePm extends PresentationModelBase implements InitializingB
 	@Autowired
 	private ConfigPairs decryptionParams;
 	@Autowired
-	private ExecutorService executorService;
-	@Autowired
 	private EncryptionParamsStorage encryptionParamsStorage;
 	@Autowired
 	private DecryptedTempFolder decryptedTempFolder;
@@ -105,9 +103,9 @@ public class DecryptOnePm extends PresentationModelBase implements InitializingB
 	@Autowired
 	private EncryptionService encryptionService;
 	@Autowired
-	private MonitoringDecryptedFilesService monitoringDecryptedFilesService;
+	private EncryptionServiceAsync encryptionServiceAsync;
 	@Autowired
-	private MessageDigestFactory messageDigestFactory;
+	private MonitoringDecryptedFilesService monitoringDecryptedFilesService;
 
 	private DecryptOneHost host;
 
@@ -135,7 +133,7 @@ public class DecryptOnePm extends PresentationModelBase implements InitializingB
 	private ModelProperty<String> progressNote;
 	private ModelProperty<Boolean> isDisableControls;
 	private ProgressHandlerPmMixinImpl progressHandler;
-	private Thread operationThread;
+	private CompletableFuture<OperationResult> operationFuture;
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
@@ -462,14 +460,14 @@ public class DecryptOnePm extends PresentationModelBase implements InitializingB
 		public void actionPerformed(ActionEvent e) {
 			actionDoOperation.setEnabled(false);
 			isDisableControls.setValueByOwner(true);
-			operationThread = new Thread(operationWorker);
-			operationThread.start();
+			operationWorker.start();
 		}
 	};
 
-	private Runnable operationWorker = new Runnable() {
-		@Override
-		public void run() {
+	private OperationWorker operationWorker = new OperationWorker();
+
+	private class OperationWorker {
+		private void start() {
 			String targetFileName = getEffectiveTargetFileName();
 			if (targetFileName == null) {
 				actionDoOperation.setEnabled(true);
@@ -478,47 +476,31 @@ public class DecryptOnePm extends PresentationModelBase implements InitializingB
 			}
 
 			String sourceFileStr = sourceFile.getValue();
-			Fingerprint sourceFileFingerprint = null;
-			Fingerprint targetFileFingerprint = null;
-			Future<Fingerprint> sourceFileFingerprintFuture = null;
-			try {
-				// NOTE: In parallel we'll calculate checksum of the source. I hope IO caching
-				// layer will handle 2 reading process for same file nicely and we won't have to
-				// report progress on source checksum separately
-				sourceFileFingerprintFuture = executorService
-						.submit(new ChecksumCalculationTask(sourceFileStr, messageDigestFactory.createNew()));
-
-				// and here is an actual decryption process
-				ChecksumCalcOutputStreamSupervisor outputStreamSupervisor = new ChecksumCalcOutputStreamSupervisorImpl(
-						messageDigestFactory);
-				FileUtilsEx.baitAndSwitch(targetFileName, x -> encryptionService.decrypt(sourceFileStr, x,
-						keyAndPassword, progressHandler, outputStreamSupervisor));
-				log.debug("Decryption completed: " + targetFileName);
-
-				// NOTE: We can calculate checksum for target file because we write it in full,
-				// but input file is not really being read in full so we'll have to calculate
-				// checksum of source file separately
-				targetFileFingerprint = outputStreamSupervisor.getFingerprint();
-
-				// Calculate source file CRC
-				sourceFileFingerprint = sourceFileFingerprintFuture.get();
-
-			} catch (UserRequestedCancellationException ce) {
-				if (sourceFileFingerprintFuture != null) {
-					sourceFileFingerprintFuture.cancel(true);
-				}
-				host.handleClose();
-				return;
-			} catch (Throwable t) {
-				log.error("Failed to decrypt", t);
-				if (sourceFileFingerprintFuture != null) {
-					sourceFileFingerprintFuture.cancel(true);
+			operationFuture = encryptionServiceAsync.decryptAsync(sourceFileStr, targetFileName, keyAndPassword,
+					progressHandler);
+			operationFuture.whenCompleteAsync((result, t) -> onCompleted(sourceFileStr, targetFileName, result, t),
+					SwingUtilities::invokeLater);
+		}
+
+		private void onCompleted(String sourceFileStr, String targetFileName, OperationResult result,
+				Throwable failure) {
+			if (failure != null) {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				if (cause instanceof UserRequestedCancellationException || cause instanceof CancellationException) {
+					host.handleClose();
+					return;
 				}
-				EntryPoint.reportExceptionToUser("error.failedToDecryptFile", t);
+
+				log.error("Failed to decrypt", cause);
+				EntryPoint.reportExceptionToUser("error.failedToDecryptFile", cause);
 				actionDoOperation.setEnabled(true);
 				isDisableControls.setValueByOwner(false);
 				return;
 			}
+			log.debug("Decryption completed: " + result);
+
+			Fingerprint sourceFileFingerprint = result.getSourceFingerprint();
+			Fingerprint targetFileFingerprint = result.getTargetFingerprint();
 
 			// Remember parameters
 			persistDecryptionDialogParametersForCurrentInputs(targetFileName);
@@ -678,7 +660,7 @@ public class DecryptOnePm extends PresentationModelBase implements InitializingB
 			ret.setCreatedAt(System.currentTimeMillis());
 			return ret;
 		}
-	};
+	}
 
 	private String madeUpTargetFileName(String targetBasedPath) {
 		return targetBasedPath + File.separator + anticipatedTargetFileName;
@@ -688,8 +670,8 @@ public class DecryptOnePm extends PresentationModelBase implements InitializingB
 	protected final Action actionCancel = new LocalizedAction("action.cancel") {
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			if (operationThread != null && operationThread.isAlive()) {
-				operationThread.interrupt();
+			if (operationFuture != null && !operationFuture.isDone()) {
+				operationFuture.cancel(true);
 			} else {
 				host.handleClose();
 			}
@@ -22,14 +22,17 @@ import static org.pgptool.gui.app.Messages.text;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
 
 import javax.swing.Action;
 import javax.swing.JOptionPane;
 
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.log4j.Logger;
 import org.pgptool.gui.app.EntryPoint;
 import org.pgptool.gui.app.Message;
@@ -140,9 +143,10 @@ public class DecryptTextPm extends PresentationModelBase {
 		return targetText.getModelPropertyAccessor();
 	}
 
-	private void decrypt() throws UnsupportedEncodingException, SymmetricEncryptionIsNotSupportedException {
+	private void decrypt() throws SymmetricEncryptionIsNotSupportedException {
 		// Discover possible keys
-		ByteArrayInputStream inputStream = new ByteArrayInputStream(sourceText.getValue().getBytes("UTF-8"));
+		InputStream inputStream = new ReaderInputStream(new StringReader(sourceText.getValue()),
+				StandardCharsets.UTF_8);
 		keysIds = encryptionService.findKeyIdsForDecryption(inputStream);
 
 		// Show list of emails
@@ -201,10 +205,13 @@ public class DecryptTextPm extends PresentationModelBase {
 				}
 
 				// Decrypt
-				String decryptedText = encryptionService.decryptText(sourceText.getValue(), keyAndPassword);
+				// NOTE: Streaming variant is used so that no intermediate byte copies of
+				// the (potentially huge) text are created
+				StringBuilderWriter decryptedText = new StringBuilderWriter();
+				encryptionService.decryptText(new StringReader(sourceText.getValue()), decryptedText, keyAndPassword);
 
 				// Set target text
-				targetText.setValueByOwner(decryptedText);
+				targetText.setValueByOwner(decryptedText.toString());
 			} catch (Throwable t) {
 				log.error("Failed to decrypt text", t);
 				EntryPoint.reportExceptionToUser("error.cantParseEncryptedText", t);
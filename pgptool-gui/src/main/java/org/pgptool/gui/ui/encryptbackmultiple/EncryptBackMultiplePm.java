@@ -21,6 +21,7 @@ import static org.pgptool.gui.app.Messages.text;
 
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,6 +29,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.Action;
 import javax.swing.JOptionPane;
@@ -37,6 +44,7 @@ import org.pgptool.gui.app.GenericException;
 import org.pgptool.gui.app.MessageSeverity;
 import org.pgptool.gui.app.Messages;
 import org.pgptool.gui.bkgoperation.Progress;
+import org.pgptool.gui.bkgoperation.ProgressAggregator;
 import org.pgptool.gui.bkgoperation.ProgressHandler;
 import org.pgptool.gui.bkgoperation.UserRequestedCancellationException;
 import org.pgptool.gui.configpairs.api.ConfigPairs;
@@ -50,8 +58,8 @@ import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisor;
 import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisorImpl;
 import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisor;
 import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisorImpl;
-import org.pgptool.gui.filecomparison.ChecksumCalculationTask;
 import org.pgptool.gui.filecomparison.Fingerprint;
+import org.pgptool.gui.filecomparison.FingerprintCache;
 import org.pgptool.gui.filecomparison.MessageDigestFactory;
 import org.pgptool.gui.tools.ConsoleExceptionUtils;
 import org.pgptool.gui.tools.FileUtilsEx;
@@ -66,6 +74,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import ru.skarpushin.swingpm.base.PresentationModelBase;
 import ru.skarpushin.swingpm.modelprops.ModelProperty;
@@ -76,6 +86,12 @@ import ru.skarpushin.swingpm.valueadapters.ValueAdapterHolderImpl;
 public class EncryptBackMultiplePm extends PresentationModelBase implements InitializingBean {
 	private static Logger log = Logger.getLogger(EncryptBackMultiplePm.class);
 
+	/**
+	 * Encryption is CPU-bound, so there is no point to run more files in parallel
+	 * than we have cores
+	 */
+	private static final int MAX_PARALLEL_FILES = Runtime.getRuntime().availableProcessors();
+
 	@Autowired
 	private EncryptionParamsStorage encryptionParamsStorage;
 	@Autowired
@@ -88,6 +104,8 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 	private MonitoringDecryptedFilesService monitoringDecryptedFilesService;
 	@Autowired
 	private MessageDigestFactory messageDigestFactory;
+	@Autowired
+	private FingerprintCache fingerprintCache;
 
 	private EncryptBackMultipleHost host;
 	private Set<String> decryptedFiles;
@@ -217,14 +235,15 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 	};
 
 	private static class BatchEncryptionResult {
-		Map<String, Throwable> errors = new HashMap<>();
-		Map<String, Throwable> warnings = new HashMap<>();
-		Multimap<EncryptBackResult, String> categories = ArrayListMultimap.create();
+		Map<String, Throwable> errors = new ConcurrentHashMap<>();
+		Map<String, Throwable> warnings = new ConcurrentHashMap<>();
+		Multimap<EncryptBackResult, String> categories = Multimaps.synchronizedMultimap(ArrayListMultimap.create());
 	}
 
 	private Thread encryptionThread = new Thread("BkgOpEncryptBackAll") {
 		private int totalFiles = 0;
-		private int filesProcessed = 0;
+		private AtomicInteger filesProcessed = new AtomicInteger();
+		private ProgressAggregator progressAggregator;
 
 		@Override
 		public void run() {
@@ -254,20 +273,22 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 			}
 		}
 
+		/**
+		 * NOTE: This handler receives aggregated progress of all files being
+		 * encrypted concurrently. Calls to it are serialized by
+		 * {@link ProgressAggregator}
+		 */
 		private ProgressHandler progressHandler = new ProgressHandler() {
 			@Override
 			public void onProgressUpdated(Progress progress) {
-				if (Thread.interrupted()) {
-					progress.requestCancelation();
-				}
-
 				if (!isProgressVisible.getValue()) {
 					progressNote.setValueByOwner("");
 					progressValue.setValueByOwner(0);
 					isProgressVisible.setValueByOwner(true);
 				} else {
-					progressNote.setValueByOwner("" + filesProcessed + "/" + totalFiles + ": "
-							+ text(progress.getStepCode(), progress.getStepArgs()));
+					String stepText = progress.getStepCode() == null ? text(progress.getOperationCode())
+							: text(progress.getStepCode(), progress.getStepArgs());
+					progressNote.setValueByOwner("" + filesProcessed.get() + "/" + totalFiles + ": " + stepText);
 					progressValue.setValueByOwner(progress.getPercentage() == null ? 0 : progress.getPercentage());
 				}
 
@@ -282,16 +303,75 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 
 			boolean skipIfissingRecipients = !isIgnoreMissingRecipientsWarning.getValue();
 			totalFiles = decryptedFiles.size();
+			progressAggregator = new ProgressAggregator("encrypBackMany.action", calcTotalSize(), progressHandler);
+			progressAggregator.updateStepInfo("encryption.progress.encrypting");
+
+			int threadsCount = Math.max(1, Math.min(MAX_PARALLEL_FILES, totalFiles));
+			ExecutorService workers = Executors.newFixedThreadPool(threadsCount,
+					new ThreadFactoryBuilder().setNameFormat("BkgOpEncryptBack-%d").setDaemon(true).build());
+			try {
+				List<Future<?>> futures = new ArrayList<>(totalFiles);
+				for (String decryptedFile : decryptedFiles) {
+					futures.add(workers
+							.submit(() -> encryptOneAndPostProcess(skipIfissingRecipients, decryptedFile, ret)));
+				}
+				waitForAll(futures);
+			} finally {
+				workers.shutdown();
+			}
+			return ret;
+		}
+
+		private long calcTotalSize() {
+			long ret = 0;
 			for (String decryptedFile : decryptedFiles) {
-				filesProcessed++;
+				ret += new File(decryptedFile).length();
+			}
+			return ret;
+		}
+
+		/**
+		 * Wait for all workers to finish. If user requested cancellation (this thread
+		 * was interrupted) then all workers will be asked to cancel and we'll still
+		 * wait for them so that no encryption is left running behind the scene
+		 */
+		private void waitForAll(List<Future<?>> futures) {
+			for (Future<?> future : futures) {
+				while (true) {
+					try {
+						future.get();
+						break;
+					} catch (InterruptedException ie) {
+						log.debug("Cancellation requested for encrypt back all");
+						progressAggregator.requestCancelation();
+					} catch (ExecutionException ee) {
+						// NOTE: Not expected since encryptOneAndPostProcess catches everything
+						log.error("Encrypt back worker failed", ee);
+						break;
+					}
+				}
+			}
+		}
+
+		private void encryptOneAndPostProcess(boolean skipIfissingRecipients, String decryptedFile,
+				BatchEncryptionResult ret) {
+			File file = new File(decryptedFile);
+			ProgressAggregator.Part progressPart = progressAggregator.createPart(file.length());
+			try {
+				if (progressAggregator.isCancelationRequested()) {
+					return;
+				}
+				filesProcessed.incrementAndGet();
+
 				// Main operation
-				File file = new File(decryptedFile);
 				EncryptBackResult oneResult = null;
 				try {
-					oneResult = encryptBackOne(skipIfissingRecipients, decryptedFile, file, ret);
+					oneResult = encryptBackOne(skipIfissingRecipients, decryptedFile, file, ret, progressPart);
 					ret.categories.put(oneResult, decryptedFile);
 				} catch (UserRequestedCancellationException urc) {
-					return ret;
+					// NOTE: Cancellation of one file means user asked to cancel whole batch
+					progressAggregator.requestCancelation();
+					return;
 				}
 
 				// Post actions
@@ -305,12 +385,17 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 						ret.warnings.put(decryptedFile, t);
 					}
 				}
+			} catch (Throwable t) {
+				log.error("Unexpected failure while encrypting back " + decryptedFile, t);
+				ret.errors.put(decryptedFile, t);
+			} finally {
+				progressPart.finish();
 			}
-			return ret;
 		}
 
 		private EncryptBackResult encryptBackOne(boolean isShouldSkipIfissingRecipients, String decryptedFile,
-				File file, BatchEncryptionResult ret) throws UserRequestedCancellationException {
+				File file, BatchEncryptionResult ret, ProgressHandler progressHandler)
+				throws UserRequestedCancellationException {
 			try {
 				Preconditions.checkState(file.exists(), text("error.fileNotFound"));
 				EncryptionDialogParameters encryptionParams = mapFileToEncryptionParams.get(decryptedFile);
@@ -331,18 +416,19 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 				boolean proceedOnlyIfChanged = Boolean.TRUE.equals(isEncryptOnlyChanged.getValue());
 				boolean hasFingerprintOfDecrypted = decryptedFileDto != null
 						&& decryptedFileDto.getDecryptedFileFingerprint() != null;
-				// TBD: We could just compare size first and only if it matches go through
-				// expensive checksum calculation
+				// NOTE: Files are read only if they changed since last check, see
+				// FingerprintCache
 				if (targetFileExists && proceedOnlyIfChanged && hasFingerprintOfDecrypted) {
-					Fingerprint decryptedFileFingerprint = calculateFingerprintSync(decryptedFile);
+					Fingerprint decryptedFileFingerprint = fingerprintCache.getFingerprint(decryptedFile,
+							decryptedFileDto.getDecryptedFileFingerprint());
 					if (decryptedFileDto.getDecryptedFileFingerprint().equals(decryptedFileFingerprint)) {
 						return EncryptBackResult.TargetNotChanged;
 					}
 
 					// now let's check source file to make sure no concurrent changes
 					if (decryptedFileDto.getEncryptedFileFingerprint() != null) {
-						Fingerprint encryptedFileFingerprint = calculateFingerprintSync(
-								encryptionParams.getTargetFile());
+						Fingerprint encryptedFileFingerprint = fingerprintCache.getFingerprint(
+								encryptionParams.getTargetFile(), decryptedFileDto.getEncryptedFileFingerprint());
 						if (!decryptedFileDto.getEncryptedFileFingerprint().equals(encryptedFileFingerprint)) {
 							ret.warnings.put(decryptedFile,
 									new GenericException("error.concurrentChangeOfEncryptedFile"));
@@ -358,8 +444,9 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 						messageDigestFactory);
 
 				FileUtilsEx.baitAndSwitch(encryptionParams.getTargetFile(),
-						x -> encryptionService.encrypt(decryptedFile, x, recipients, progressHandler,
-								inputStreamSupervisor, outputStreamSupervisor));
+						x -> encryptionService.encrypt(decryptedFile, x, recipients,
+								encryptionParams.getSymmetricCipher(), progressHandler, inputStreamSupervisor,
+								outputStreamSupervisor));
 
 				// Update fingerprints in relevant DecriptedFile dto
 				updateBaselineFingerprintsIfApplicable(decryptedFileDto, decryptedFile, encryptionParams,
@@ -388,10 +475,6 @@ public class EncryptBackMultiplePm extends PresentationModelBase implements Init
 			monitoringDecryptedFilesService.addOrUpdate(newDecryptedFile);
 		}
 
-		private Fingerprint calculateFingerprintSync(String filePathname) throws Exception {
-			return new ChecksumCalculationTask(filePathname, messageDigestFactory.createNew()).call();
-		}
-
 		private String buildSummaryMessage(BatchEncryptionResult ret) {
 			StringBuilder sb = new StringBuilder();
 			if (ret.errors.size() + ret.warnings.size() == 0) {
@@ -33,6 +33,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 import javax.swing.Action;
 import javax.swing.JFileChooser;
@@ -53,17 +57,17 @@ import org.pgptool.gui.bkgoperation.UserRequestedCancellationException;
 import org.pgptool.gui.configpairs.api.ConfigPairs;
 import org.pgptool.gui.decryptedlist.api.DecryptedFile;
 import org.pgptool.gui.decryptedlist.api.MonitoringDecryptedFilesService;
-import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.encryption.api.EncryptionServiceAsync;
 import org.pgptool.gui.encryption.api.KeyRingService;
 import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.OperationResult;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
 import org.pgptool.gui.encryptionparams.api.EncryptionParamsStorage;
 import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisor;
 import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisorImpl;
-import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisor;
-import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisorImpl;
+import org.pgptool.gui.filecomparison.ChecksumCalculationTask;
 import org.pgptool.gui.filecomparison.Fingerprint;
 import org.pgptool.gui.filecomparison.MessageDigestFactory;
-import org.pgptool.gui.tools.FileUtilsEx;
 import org.pgptool.gui.ui.decryptone.DecryptOnePm;
 import org.pgptool.gui.ui.keyslist.ComparatorKeyByNameImpl;
 import org.pgptool.gui.ui.tools.ListChangeListenerAnyEventImpl;
@@ -84,6 +88,8 @@ import ru.skarpushin.swingpm.modelprops.ModelProperty;
 import ru.skarpushin.swingpm.modelprops.ModelPropertyAccessor;
 import ru.skarpushin.swingpm.modelprops.lists.ModelListProperty;
 import ru.skarpushin.swingpm.modelprops.lists.ModelMultSelInListProperty;
+import ru.skarpushin.swingpm.modelprops.lists.ModelSelInComboBoxProperty;
+import ru.skarpushin.swingpm.modelprops.lists.ModelSelInComboBoxPropertyAccessor;
 import ru.skarpushin.swingpm.tools.actions.LocalizedAction;
 import ru.skarpushin.swingpm.valueadapters.ValueAdapterHolderImpl;
 import ru.skarpushin.swingpm.valueadapters.ValueAdapterReadonlyImpl;
@@ -105,7 +111,9 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 	@Autowired
 	private KeyRingService keyRingService;
 	@Autowired
-	private EncryptionService encryptionService;
+	private EncryptionServiceAsync encryptionServiceAsync;
+	@Autowired
+	private ExecutorService executorService;
 
 	private EncryptOneHost host;
 
@@ -116,6 +124,8 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 	private ModelMultSelInListProperty<Key> selectedRecipients;
 	private ModelListProperty<Key> availabileRecipients;
 	private ModelProperty<Boolean> isNoPrivateKeysSelected;
+	private ModelListProperty<SymmetricCipher> availableCiphers;
+	private ModelSelInComboBoxProperty<SymmetricCipher> symmetricCipher;
 	private ModelProperty<Boolean> isDeleteSourceAfter;
 	private ModelProperty<Boolean> isOpenTargetFolderAfter;
 
@@ -127,8 +137,8 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 	private ModelProperty<Integer> progressValue;
 	private ModelProperty<String> progressNote;
 	private ModelProperty<Boolean> isDisableControls;
-	private ProgressHandler progressHandler;
-	private Thread operationThread;
+	private ProgressHandlerPmMixinImpl progressHandler;
+	private CompletableFuture<OperationResult> operationFuture;
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
@@ -237,7 +247,7 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 		targetFile.getModelPropertyAccessor().addPropertyChangeListener(onTargetFileChanged);
 		targetFileEnabled = new ModelProperty<>(this, new ValueAdapterHolderImpl<>(), "targetFile");
 
-		List<Key> allKeys = keyRingService.readKeys();
+		List<Key> allKeys = new ArrayList<>(keyRingService.readKeys());
 		allKeys.sort(new ComparatorKeyByNameImpl());
 		availabileRecipients = new ModelListProperty<Key>(this, new ValueAdapterReadonlyImpl<List<Key>>(allKeys),
 				"availabileRecipients");
@@ -247,6 +257,13 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 		isNoPrivateKeysSelected = new ModelProperty<>(this, new ValueAdapterHolderImpl<>(), "isNoPrivateKeysSelected");
 		onRecipientsSelectionChanged.onListChanged();
 
+		availableCiphers = new ModelListProperty<SymmetricCipher>(this,
+				new ValueAdapterReadonlyImpl<List<SymmetricCipher>>(Arrays.asList(SymmetricCipher.values())),
+				"availableCiphers");
+		symmetricCipher = new ModelSelInComboBoxProperty<SymmetricCipher>(this,
+				new ValueAdapterHolderImpl<SymmetricCipher>(SymmetricCipher.DEFAULT), "symmetricCipher",
+				availableCiphers);
+
 		isDeleteSourceAfter = new ModelProperty<>(this, new ValueAdapterHolderImpl<>(false), "deleteSourceAfter");
 		isOpenTargetFolderAfter = new ModelProperty<>(this, new ValueAdapterHolderImpl<>(false), "openTargetFolder");
 
@@ -336,6 +353,8 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 			isUseSameFolder.setValueByOwner(params.isUseSameFolder());
 			isDeleteSourceAfter.setValueByOwner(params.isDeleteSourceFile());
 			isOpenTargetFolderAfter.setValueByOwner(params.isOpenTargetFolder());
+			symmetricCipher.setValueByOwner(
+					params.getSymmetricCipher() != null ? params.getSymmetricCipher() : SymmetricCipher.DEFAULT);
 
 			Set<String> missedKeys = preselectRecipients(new HashSet<>(params.getRecipientsKeysIds()));
 			notifyUserOfMissingKeysIfAny(missedKeys);
@@ -430,48 +449,80 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 		public void actionPerformed(ActionEvent e) {
 			actionDoOperation.setEnabled(false);
 			isDisableControls.setValueByOwner(true);
-			operationThread = new Thread(operationWorker);
-			operationThread.start();
+			operationWorker.start();
 		}
 	};
 
-	private Runnable operationWorker = new Runnable() {
-		@Override
-		public void run() {
+	private OperationWorker operationWorker = new OperationWorker();
+
+	private class OperationWorker {
+		private void start() {
 			String targetFileName = getEffectiveTargetFileName();
+			String sourceFileStr = sourceFile.getValue();
+			List<Key> recipients = new ArrayList<>(selectedRecipients.getList());
+			SymmetricCipher cipher = symmetricCipher.getValue();
+
+			// NOTE: Check for concurrent changes might take a while for big files so it's
+			// done in background too, before actual encryption is started
+			CompletableFuture<OperationResult> future = new CompletableFuture<>();
+			operationFuture = future;
+			CompletableFuture.runAsync(() -> ensureNoConcurrentChanges(targetFileName, sourceFileStr), executorService)
+					.whenComplete((x, t) -> {
+						if (t != null) {
+							future.completeExceptionally(t);
+						} else if (!future.isDone()) {
+							startEncryption(future, sourceFileStr, targetFileName, recipients, cipher);
+						}
+					});
+			future.whenCompleteAsync((result, t) -> onCompleted(targetFileName, result, t),
+					SwingUtilities::invokeLater);
+		}
 
-			Fingerprint source;
-			Fingerprint target;
+		private void startEncryption(CompletableFuture<OperationResult> future, String sourceFileStr,
+				String targetFileName, List<Key> recipients, SymmetricCipher cipher) {
+			CompletableFuture<OperationResult> encryption = encryptionServiceAsync.encryptAsync(sourceFileStr,
+					targetFileName, recipients, cipher, progressHandler);
+			// NOTE: Operation might be cancelled by user, it has to reach encryption
+			future.whenComplete((result, t) -> encryption.cancel(true));
+			encryption.whenComplete((result, t) -> {
+				if (t != null) {
+					future.completeExceptionally(t);
+				} else {
+					future.complete(result);
+				}
+			});
+		}
 
+		private void ensureNoConcurrentChanges(String targetFileName, String sourceFileStr) {
 			try {
-				ChecksumCalcInputStreamSupervisor inputStreamSupervisor = new ChecksumCalcInputStreamSupervisorImpl(
-						messageDigestFactory);
-				ChecksumCalcOutputStreamSupervisor outputStreamSupervisor = new ChecksumCalcOutputStreamSupervisorImpl(
-						messageDigestFactory);
-
-				if (isEncryptedFileChangedAfterDecryption(targetFileName, sourceFile.getValue(), progressHandler)
+				if (isEncryptedFileChangedAfterDecryption(targetFileName, sourceFileStr, progressHandler)
 						&& !promptUserToOverwriteConcurrentChanges(targetFileName)) {
 					throw new UserRequestedCancellationException();
 				}
+			} catch (Throwable t) {
+				throw new CompletionException(t);
+			}
+		}
 
-				FileUtilsEx.baitAndSwitch(targetFileName, x -> encryptionService.encrypt(sourceFile.getValue(), x,
-						selectedRecipients.getList(), progressHandler, inputStreamSupervisor, outputStreamSupervisor));
-
-				source = inputStreamSupervisor.getFingerprint();
-				target = outputStreamSupervisor.getFingerprint();
+		private void onCompleted(String targetFileName, OperationResult result, Throwable failure) {
+			if (failure != null) {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				if (cause instanceof UserRequestedCancellationException || cause instanceof CancellationException) {
+					host.handleClose();
+					return;
+				}
 
-				log.debug("Encryption completed: " + targetFileName);
-			} catch (UserRequestedCancellationException ce) {
-				host.handleClose();
-				return;
-			} catch (Throwable t) {
-				log.error("Failed to encrypt", t);
-				EntryPoint.reportExceptionToUser("error.failedToEncryptFile", t);
+				log.error("Failed to encrypt", cause);
+				EntryPoint.reportExceptionToUser("error.failedToEncryptFile", cause);
 				actionDoOperation.setEnabled(true);
 				isDisableControls.setValueByOwner(false);
 				isProgressVisible.setValueByOwner(false);
 				return;
 			}
+			log.debug("Encryption completed: " + result);
+
+			Fingerprint source = result.getSourceFingerprint();
+			Fingerprint target = result.getTargetFingerprint();
 
 			// Delete source if asked
 			if (isDeleteSourceAfter.getValue()) {
@@ -520,13 +571,14 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 				return false;
 			}
 
+			Fingerprint initialFingerprint = decryptedMonitored.getEncryptedFileFingerprint();
 			ChecksumCalcInputStreamSupervisor inputStreamSupervisor = new ChecksumCalcInputStreamSupervisorImpl(
-					messageDigestFactory);
+					messageDigestFactory.comparableWith(initialFingerprint));
 			try (InputStream inputStream = inputStreamSupervisor.get(encryptedFileName)) {
 				Updater progress = Progress.create("operation.calculatingChecksum", progressHandler);
 				BigInteger fileSize = BigInteger.valueOf(targetFileObj.length());
 				progress.updateTotalSteps(fileSize);
-				byte[] buf = new byte[4096];
+				byte[] buf = new byte[ChecksumCalculationTask.READ_BUF_SIZE];
 				int read, totalRead = 0;
 				while ((read = inputStream.read(buf)) > 0) {
 					totalRead += read;
@@ -537,7 +589,6 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 				}
 			}
 
-			Fingerprint initialFingerprint = decryptedMonitored.getEncryptedFileFingerprint();
 			Fingerprint currentFingerprint = inputStreamSupervisor.getFingerprint();
 			return !initialFingerprint.equals(currentFingerprint);
 		}
@@ -584,13 +635,14 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 			ret.setTargetFile(targetFile.getValue());
 			ret.setDeleteSourceFile(isDeleteSourceAfter.getValue());
 			ret.setOpenTargetFolder(isOpenTargetFolderAfter.getValue());
+			ret.setSymmetricCipher(symmetricCipher.getValue());
 			ret.setRecipientsKeysIds(new ArrayList<>(selectedRecipients.getList().size()));
 			for (Key key : selectedRecipients.getList()) {
 				ret.getRecipientsKeysIds().add(key.getKeyInfo().getKeyId());
 			}
 			return ret;
 		}
-	};
+	}
 
 	private String madeUpTargetFileName(String sourceFileName, String targetBasedPath) {
 		File fileSource = new File(sourceFileName);
@@ -602,8 +654,8 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 	protected final Action actionCancel = new LocalizedAction("action.cancel") {
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			if (operationThread != null && operationThread.isAlive()) {
-				operationThread.interrupt();
+			if (operationFuture != null && !operationFuture.isDone()) {
+				operationFuture.cancel(true);
 			} else {
 				host.handleClose();
 			}
@@ -648,6 +700,10 @@ public class EncryptOnePm extends PresentationModelBase implements InitializingB
 		return selectedRecipients;
 	}
 
+	public ModelSelInComboBoxPropertyAccessor<SymmetricCipher> getSymmetricCipher() {
+		return symmetricCipher.getModelSelInComboBoxPropertyAccessor();
+	}
+
 	public ModelPropertyAccessor<String> getSourceFile() {
 		return sourceFile.getModelPropertyAccessor();
 	}
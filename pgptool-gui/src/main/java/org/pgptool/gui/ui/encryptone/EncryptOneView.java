@@ -30,6 +30,7 @@ import java.awt.Window;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
@@ -42,6 +43,7 @@ import javax.swing.JTextField;
 import org.jdesktop.swingx.JXLabel;
 import org.pgptool.gui.app.Messages;
 import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
 import org.pgptool.gui.ui.tools.ControlsDisabler;
 import org.pgptool.gui.ui.tools.DialogViewBaseCustom;
 import org.pgptool.gui.ui.tools.UiUtils;
@@ -67,6 +69,7 @@ public class EncryptOneView extends DialogViewBaseCustom<EncryptOnePm> {
 
 	private JCheckList<Key> recipients;
 	private JScrollPane recipientsScroller;
+	private JComboBox<SymmetricCipher> symmetricCipher;
 
 	private JCheckBox chkDeleteSourceAfter;
 	private JCheckBox chkOpenTargetFolderAfter;
@@ -89,7 +92,7 @@ public class EncryptOneView extends DialogViewBaseCustom<EncryptOnePm> {
 	}
 
 	private JPanel buildControllsPanel() {
-		SgLayout sgl = new SgLayout(2, 10, spacing(1), 2);
+		SgLayout sgl = new SgLayout(2, 11, spacing(1), 2);
 		sgl.setColSize(0, 1, SgLayout.SIZE_TYPE_ASKCOMPONENT);
 		sgl.setColSize(1, spacing(30), SgLayout.SIZE_TYPE_WEIGHTED);
 
@@ -140,6 +143,11 @@ public class EncryptOneView extends DialogViewBaseCustom<EncryptOnePm> {
 		row++;
 		sgl.setRowSize(row, 30, SgLayout.SIZE_TYPE_WEIGHTED);
 
+		// cipher
+		row++;
+		ret.add(new JLabel(text("term.symmetricCipher")), sgl.cs(0, row));
+		ret.add(symmetricCipher = new JComboBox<>(), sgl.cs(1, row));
+
 		// spacing
 		row++;
 		ret.add(buildEmptyLine(), sgl.cs(0, row, 2, 1));
@@ -207,6 +215,7 @@ public class EncryptOneView extends DialogViewBaseCustom<EncryptOnePm> {
 
 		bindingContext
 				.add(new ModelMultSelInCheckListBinding<>(bindingContext, pm.getSelectedRecipients(), recipients));
+		bindingContext.setupBinding(pm.getSymmetricCipher(), symmetricCipher);
 
 		bindingContext.setupBinding(pm.getIsDeleteSourceAfter(), chkDeleteSourceAfter);
 		bindingContext.setupBinding(pm.getIsOpenTargetFolderAfter(), chkOpenTargetFolderAfter);
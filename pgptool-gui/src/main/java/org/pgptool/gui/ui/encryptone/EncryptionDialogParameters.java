@@ -20,6 +20,7 @@ package org.pgptool.gui.ui.encryptone;
 import java.io.Serializable;
 import java.util.ArrayList;
 
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
 import org.pgptool.gui.encryptionparams.api.EncryptionParamsStorage;
 import org.summerb.approaches.jdbccrud.common.DtoBase;
 
@@ -45,6 +46,11 @@ public class EncryptionDialogParameters implements Serializable, DtoBase {
 	private ArrayList<String> recipientsKeysIds;
 	private boolean isDeleteSourceFile;
 	private boolean isOpenTargetFolder;
+	/**
+	 * Cipher that was used for these recipients. Might be null for parameters
+	 * persisted by older versions, in such case default cipher should be used
+	 */
+	private SymmetricCipher symmetricCipher;
 
 	/**
 	 * If true it means this instance was created by decrypt dialog to help suggest
@@ -107,6 +113,14 @@ public class EncryptionDialogParameters implements Serializable, DtoBase {
 		this.isOpenTargetFolder = isOpenTargetFolder;
 	}
 
+	public SymmetricCipher getSymmetricCipher() {
+		return symmetricCipher;
+	}
+
+	public void setSymmetricCipher(SymmetricCipher symmetricCipher) {
+		this.symmetricCipher = symmetricCipher;
+	}
+
 	public boolean isPropagatedFromDecrypt() {
 		return isPropagatedFromDecrypt;
 	}
@@ -22,6 +22,7 @@ import static org.pgptool.gui.app.Messages.text;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -32,6 +33,7 @@ import java.util.Set;
 import javax.swing.Action;
 import javax.swing.JOptionPane;
 
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.log4j.Logger;
 import org.pgptool.gui.app.EntryPoint;
 import org.pgptool.gui.app.MessageSeverity;
@@ -130,7 +132,7 @@ public class EncryptTextPm extends PresentationModelBase {
 	}
 
 	private void initModelProperties() {
-		List<Key> allKeys = keyRingService.readKeys();
+		List<Key> allKeys = new ArrayList<>(keyRingService.readKeys());
 		allKeys.sort(new ComparatorKeyByNameImpl());
 		availabileRecipients = new ModelListProperty<Key>(this, new ValueAdapterReadonlyImpl<List<Key>>(allKeys),
 				"availabileRecipients");
@@ -181,9 +183,12 @@ public class EncryptTextPm extends PresentationModelBase {
 		@Override
 		public void actionPerformed(ActionEvent e) {
 			try {
-				String encryptedTextStr = encryptionService.encryptText(sourceText.getValue(),
-						selectedRecipients.getList());
-				targetText.setValueByOwner(encryptedTextStr);
+				// NOTE: Streaming variant is used so that no intermediate byte copies of
+				// the (potentially huge) text are created
+				StringBuilderWriter encryptedText = new StringBuilderWriter();
+				encryptionService.encryptText(new StringReader(sourceText.getValue()), encryptedText,
+						selectedRecipients.getList(), null);
+				targetText.setValueByOwner(encryptedText.toString());
 			} catch (Throwable t) {
 				log.error("Failed to encrypt", t);
 				EntryPoint.reportExceptionToUser("error.failedToEncryptText", t);
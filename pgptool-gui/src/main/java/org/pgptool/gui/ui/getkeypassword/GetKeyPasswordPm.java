@@ -22,9 +22,7 @@ import static org.pgptool.gui.app.Messages.text;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -35,6 +33,7 @@ import org.apache.log4j.Logger;
 import org.pgptool.gui.app.Message;
 import org.pgptool.gui.encryption.api.KeyFilesOperations;
 import org.pgptool.gui.encryption.api.KeyRingService;
+import org.pgptool.gui.encryption.api.UnlockedKeysCache;
 import org.pgptool.gui.encryption.api.dto.Key;
 import org.pgptool.gui.encryption.api.dto.MatchedKey;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,8 +65,8 @@ import ru.skarpushin.swingpm.valueadapters.ValueAdapterReadonlyImpl;
  * {@link GetKeyPasswordHost#onPasswordDeterminedForKey(PasswordDeterminedForKey)}
  * method.
  * 
- * It will also cache passwords and if password was found in cache then thre
- * will be no need to show UI again.
+ * It will also use {@link UnlockedKeysCache} and if key was already unlocked
+ * then thre will be no need to show UI again.
  * 
  * @author Sergey Karpushin
  *
@@ -75,7 +74,6 @@ import ru.skarpushin.swingpm.valueadapters.ValueAdapterReadonlyImpl;
 public class GetKeyPasswordPm extends PresentationModelBase {
 	private static Logger log = Logger.getLogger(GetKeyPasswordPm.class);
 	private static final String FN_PASSWORD = "password";
-	private static final Map<String, PasswordDeterminedForKey> CACHE_KEYID_TO_PASSWORD = new HashMap<>();
 
 	@Autowired
 	private KeyRingService keyRingService;
@@ -83,6 +81,8 @@ public class GetKeyPasswordPm extends PresentationModelBase {
 	private KeyFilesOperations keyFilesOperations;
 	@Autowired
 	private EventBus eventBus;
+	@Autowired
+	private UnlockedKeysCache unlockedKeysCache;
 
 	private GetKeyPasswordHost host;
 
@@ -131,8 +131,9 @@ public class GetKeyPasswordPm extends PresentationModelBase {
 
 	private boolean passwordWasCached(GetKeyPasswordHost host, List<MatchedKey> matchedKeys) {
 		for (MatchedKey k : matchedKeys) {
-			if (CACHE_KEYID_TO_PASSWORD.containsKey(k.getRequestedKeyId())) {
-				host.onPasswordDeterminedForKey(CACHE_KEYID_TO_PASSWORD.get(k.getRequestedKeyId()));
+			PasswordDeterminedForKey cached = unlockedKeysCache.find(k.getRequestedKeyId());
+			if (cached != null) {
+				host.onPasswordDeterminedForKey(cached);
 				return true;
 			}
 		}
@@ -203,8 +204,8 @@ public class GetKeyPasswordPm extends PresentationModelBase {
 			}
 
 			// If everything is ok -- return
+			// NOTE: Validation above has put unlocked key into unlockedKeysCache
 			PasswordDeterminedForKey ret = new PasswordDeterminedForKey(requestedKeyId, key, passwordStr);
-			CACHE_KEYID_TO_PASSWORD.put(requestedKeyId, ret);
 			// host.onPasswordDeterminedForKey(ret);
 			eventBus.post(ret);
 		}
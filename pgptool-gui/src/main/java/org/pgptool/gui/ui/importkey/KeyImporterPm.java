@@ -268,6 +268,15 @@ public class KeyImporterPm extends PresentationModelBase {
 		}
 
 		private int importKeysSafe(Map<String, Throwable> exceptions) {
+			try {
+				keyRingService.addKeys(keys.getList());
+				return keys.getList().size();
+			} catch (Throwable t) {
+				// NOTE: Import them one by one so that user will know which exactly
+				// keys failed to import
+				log.debug("Failed to import keys in one transaction", t);
+			}
+
 			int loadedCount = 0;
 			for (Key key : keys.getList()) {
 				try {
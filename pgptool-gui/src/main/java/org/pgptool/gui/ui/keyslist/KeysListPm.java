@@ -65,7 +65,7 @@ public class KeysListPm extends PresentationModelBase {
 		Preconditions.checkArgument(host != null);
 		this.host = host;
 
-		List<Key> initialKeys = keyRingService.readKeys();
+		List<Key> initialKeys = new ArrayList<>(keyRingService.readKeys());
 		initialKeys.sort(keySorterByNameAsc);
 		tableModelProp = new ModelTableProperty<>(this, initialKeys, "keys", new KeysTableModel());
 		hasData = new ModelProperty<>(this, new ValueAdapterHolderImpl<>(!initialKeys.isEmpty()), "hasData");
@@ -99,7 +99,7 @@ public class KeysListPm extends PresentationModelBase {
 			return;
 		}
 
-		List<Key> newKeysList = keyRingService.readKeys();
+		List<Key> newKeysList = new ArrayList<>(keyRingService.readKeys());
 		newKeysList.sort(keySorterByNameAsc);
 		tableModelProp.getList().clear();
 		tableModelProp.getList().addAll(newKeysList);
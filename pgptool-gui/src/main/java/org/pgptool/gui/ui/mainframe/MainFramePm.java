@@ -35,6 +35,7 @@ import org.pgptool.gui.app.EntryPoint;
 import org.pgptool.gui.app.Messages;
 import org.pgptool.gui.decryptedlist.api.DecryptedFile;
 import org.pgptool.gui.decryptedlist.api.MonitoringDecryptedFilesService;
+import org.pgptool.gui.encryption.api.UnlockedKeysCache;
 import org.pgptool.gui.hintsforusage.api.HintsHolder;
 import org.pgptool.gui.hintsforusage.ui.HintPm;
 import org.pgptool.gui.tempfolderfordecrypted.api.DecryptedTempFolder;
@@ -73,6 +74,8 @@ public class MainFramePm extends PresentationModelBase implements ApplicationCon
 	private MonitoringDecryptedFilesService monitoringDecryptedFilesService;
 	@Autowired
 	private DecryptedTempFolder decryptedTempFolder;
+	@Autowired
+	private UnlockedKeysCache unlockedKeysCache;
 
 	private HistoryQuickSearchView historyQuickSearchView;
 	private HistoryQuickSearchPm historyQuickSearchPm;
@@ -254,6 +257,14 @@ public class MainFramePm extends PresentationModelBase implements ApplicationCon
 		}
 	};
 
+	@SuppressWarnings("serial")
+	protected Action actionForgetPasswords = new LocalizedAction("action.forgetPasswords") {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			unlockedKeysCache.purge();
+		}
+	};
+
 	@SuppressWarnings("serial")
 	protected Action actionEncryptBackAll = new LocalizedAction("encrypBackMany.encryptBackAll") {
 		@Override
@@ -308,6 +319,10 @@ public class MainFramePm extends PresentationModelBase implements ApplicationCon
 		return host.getActionShowKeysList();
 	}
 
+	public Action getActionForgetPasswords() {
+		return actionForgetPasswords;
+	}
+
 	public Action getActionEncrypt() {
 		return host.getActionForEncrypt();
 	}
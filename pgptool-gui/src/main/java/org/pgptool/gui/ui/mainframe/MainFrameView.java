@@ -102,6 +102,7 @@ public class MainFrameView extends ViewBase<MainFramePm> implements HasWindow {
 	private JMenuItem miPgpImportKey;
 	private JMenuItem miPgpImportKeyFromText;
 	private JMenuItem miShowKeyList;
+	private JMenuItem miForgetPasswords;
 	private JMenuItem miChangeTempFolderForDecrypted;
 	private JMenuItem miBmc;
 	private JMenuItem miFaq;
@@ -439,6 +440,8 @@ public class MainFrameView extends ViewBase<MainFramePm> implements HasWindow {
 		menuKeyring.add(miPgpImportKey = new JMenuItem());
 		menuKeyring.add(miPgpImportKeyFromText = new JMenuItem());
 		menuKeyring.add(miPgpCreateKey = new JMenuItem());
+		menuKeyring.addSeparator();
+		menuKeyring.add(miForgetPasswords = new JMenuItem());
 
 		JMenu menuActions = new JMenu(Messages.get("term.actions"));
 		menuActions.add(miEncrypt = new JMenuItem());
@@ -543,6 +546,7 @@ public class MainFrameView extends ViewBase<MainFramePm> implements HasWindow {
 		bindingContext.setupBinding(pm.getActionImportKeyFromText(), miPgpImportKeyFromText);
 		bindingContext.setupBinding(pm.getActionCreateKey(), miPgpCreateKey);
 		bindingContext.setupBinding(pm.getActionShowKeysList(), miShowKeyList);
+		bindingContext.setupBinding(pm.getActionForgetPasswords(), miForgetPasswords);
 		bindingContext.setupBinding(pm.getActionChangeFolderForDecrypted(), miChangeTempFolderForDecrypted);
 		bindingContext.setupBinding(pm.getActionEncrypt(), miEncrypt);
 		bindingContext.setupBinding(pm.getActionEncryptText(), miEncryptText);
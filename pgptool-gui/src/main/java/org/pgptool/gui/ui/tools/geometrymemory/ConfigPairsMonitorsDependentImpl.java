@@ -20,12 +20,13 @@ package org.pgptool.gui.ui.tools.geometrymemory;
 import java.awt.DisplayMode;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.pgptool.gui.configpairs.api.ConfigPairs;
 import org.springframework.util.StringUtils;
 
@@ -100,10 +101,22 @@ public class ConfigPairsMonitorsDependentImpl implements ConfigPairs {
 		return prefix + key;
 	}
 
+	@Override
+	public SortedMap<String, Object> getAllWithPrefixedKey(String keyPrefix) {
+		Preconditions.checkArgument(StringUtils.hasText(keyPrefix));
+		String monitorsPrefix = buildKey(null);
+		return withoutPrefix(monitorsPrefix, configPairs.getAllWithPrefixedKey(monitorsPrefix + keyPrefix));
+	}
+
+	private static SortedMap<String, Object> withoutPrefix(String prefix, SortedMap<String, Object> pairs) {
+		SortedMap<String, Object> ret = new TreeMap<>();
+		pairs.forEach((k, v) -> ret.put(k.substring(prefix.length()), v));
+		return Collections.unmodifiableSortedMap(ret);
+	}
+
 	@Override
 	public Set<Entry<String, Object>> getAll() {
-		String prefix = buildKey(null);
-		return configPairs.getAll().stream().filter(x -> x.getKey().startsWith(prefix))
-				.map(x -> Pair.of(x.getKey().substring(prefix.length()), x.getValue())).collect(Collectors.toSet());
+		String monitorsPrefix = buildKey(null);
+		return withoutPrefix(monitorsPrefix, configPairs.getAllWithPrefixedKey(monitorsPrefix)).entrySet();
 	}
 }
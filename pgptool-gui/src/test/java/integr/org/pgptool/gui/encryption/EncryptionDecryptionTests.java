@@ -18,10 +18,19 @@
 package integr.org.pgptool.gui.encryption;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -36,11 +45,24 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.pgptool.gui.encryption.api.EncryptionService;
+import org.pgptool.gui.encryption.api.EncryptionServiceAsync;
+import org.pgptool.gui.encryption.api.InputStreamSupervisor;
 import org.pgptool.gui.encryption.api.KeyFilesOperations;
 import org.pgptool.gui.encryption.api.KeyGeneratorService;
 import org.pgptool.gui.encryption.api.KeyRingService;
+import org.pgptool.gui.encryption.api.UnlockedKeysCache;
+import org.pgptool.gui.encryption.api.dto.CompressionAlgorithm;
 import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.OperationResult;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
+import org.pgptool.gui.encryption.implpgp.CompressionPolicyAdaptiveImpl;
+import org.pgptool.gui.encryption.implpgp.EncryptionServicePgpImpl;
 import org.pgptool.gui.encryption.implpgp.SymmetricEncryptionIsNotSupportedException;
+import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisor;
+import org.pgptool.gui.filecomparison.ChecksumCalcInputStreamSupervisorImpl;
+import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisor;
+import org.pgptool.gui.filecomparison.ChecksumCalcOutputStreamSupervisorImpl;
+import org.pgptool.gui.filecomparison.MessageDigestFactory;
 import org.pgptool.gui.tools.TextFile;
 import org.pgptool.gui.ui.getkeypassword.PasswordDeterminedForKey;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -50,8 +72,11 @@ import org.springframework.test.annotation.ProfileValueSourceConfiguration;
 import org.springframework.test.annotation.SystemProfileValueSource;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.summerb.approaches.security.api.exceptions.InvalidPasswordException;
 import org.summerb.approaches.validation.FieldValidationException;
 
+import com.google.common.io.CountingInputStream;
+
 import integr.org.pgptool.gui.TestTools;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -67,8 +92,14 @@ public class EncryptionDecryptionTests {
 	@Autowired
 	private EncryptionService encryptionService;
 	@Autowired
+	private EncryptionServiceAsync encryptionServiceAsync;
+	@Autowired
 	private KeyGeneratorService keyGeneratorService;
 	@Autowired
+	private UnlockedKeysCache unlockedKeysCache;
+	@Autowired
+	private MessageDigestFactory messageDigestFactory;
+	@Autowired
 	private String tempDirPath;
 
 	private Map<String, Key> keys = new HashMap<>();
@@ -105,14 +136,201 @@ public class EncryptionDecryptionTests {
 
 		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "pass");
 
-		encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null);
+		encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null, null);
 		String result = TextFile.read(targetFilename + ".test");
 		assertEquals(testSubjectContents, result);
 	}
 
+	@Test
+	public void testWeCanDecryptTheProductOfEncryptionWithCipherNotProvidedByJre() throws Exception {
+		String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename) + ".pgp";
+		encryptionService.encrypt(testSubjectFilename, targetFilename, keys.values(), SymmetricCipher.TWOFISH, null,
+				null, null);
+
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "pass");
+
+		encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null, null);
+		assertEquals(testSubjectContents, TextFile.read(targetFilename + ".test"));
+	}
+
+	@Test
+	public void testAsyncDecryptionOfAsyncEncryptionProductYieldsMatchingFingerprints() throws Exception {
+		String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename)
+				+ ".pgp";
+		OperationResult encrypted = encryptionServiceAsync
+				.encryptAsync(testSubjectFilename, targetFilename, keys.values(), null, null).get();
+		assertNotNull(encrypted.getSourceFingerprint());
+		assertNotNull(encrypted.getTargetFingerprint());
+
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "pass");
+		OperationResult decrypted = encryptionServiceAsync
+				.decryptAsync(targetFilename, targetFilename + ".test", keyAndPassword, null).get();
+		assertEquals(testSubjectContents, TextFile.read(targetFilename + ".test"));
+		assertEquals(encrypted.getTargetFingerprint(), decrypted.getSourceFingerprint());
+		assertEquals(encrypted.getSourceFingerprint(), decrypted.getTargetFingerprint());
+	}
+
+	@Test
+	public void testWeCanDecryptTheProductOfEncryptionWithEachCipher() throws Exception {
+		for (SymmetricCipher cipher : SymmetricCipher.values()) {
+			String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename)
+					+ "-" + cipher.name() + ".pgp";
+			encryptionService.encrypt(testSubjectFilename, targetFilename, keys.values(), cipher, null, null, null);
+
+			PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc",
+					"pass");
+			encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null, null);
+			assertEquals(cipher.name(), testSubjectContents, TextFile.read(targetFilename + ".test"));
+		}
+	}
+
+	@Test
+	public void testWeCanDecryptTheProductOfEncryptionWithEachCompression() throws Exception {
+		CompressionPolicyAdaptiveImpl compressionPolicy = new CompressionPolicyAdaptiveImpl();
+		((EncryptionServicePgpImpl) encryptionService).setCompressionPolicy(compressionPolicy);
+		for (CompressionAlgorithm compression : CompressionAlgorithm.values()) {
+			compressionPolicy.setCompressionOverride(compression.name());
+			String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename)
+					+ "-" + compression.name() + ".pgp";
+			encryptionService.encrypt(testSubjectFilename, targetFilename, keys.values(), null, null, null);
+
+			PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc",
+					"pass");
+			encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null, null);
+			assertEquals(compression.name(), testSubjectContents, TextFile.read(targetFilename + ".test"));
+		}
+	}
+
+	@Test
+	public void testWeCanDecryptTheProductOfEncryptionInPipelinedMode() throws Exception {
+		((EncryptionServicePgpImpl) encryptionService).setPipelined(true);
+		String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename) + ".pgp";
+		encryptionService.encrypt(testSubjectFilename, targetFilename, keys.values(), null, null, null);
+
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "pass");
+		encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null, null);
+		assertEquals(testSubjectContents, TextFile.read(targetFilename + ".test"));
+	}
+
+	@Test
+	public void testDecryptExpectSourceReadOnceAndChecksumCalculatedAlongTheWay() throws Exception {
+		String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename) + ".pgp";
+		ChecksumCalcOutputStreamSupervisor encryptedSupervisor = new ChecksumCalcOutputStreamSupervisorImpl(
+				messageDigestFactory);
+		encryptionService.encrypt(testSubjectFilename, targetFilename, keys.values(), null, null, encryptedSupervisor);
+		long encryptedSize = new File(targetFilename).length();
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "pass");
+
+		for (boolean pipelined : new boolean[] { false, true }) {
+			((EncryptionServicePgpImpl) encryptionService).setPipelined(pipelined);
+			ChecksumCalcInputStreamSupervisor checksumSupervisor = new ChecksumCalcInputStreamSupervisorImpl(
+					messageDigestFactory);
+			List<CountingInputStream> opened = new ArrayList<>();
+			InputStreamSupervisor countingSupervisor = fileName -> {
+				CountingInputStream ret = new CountingInputStream(checksumSupervisor.get(fileName));
+				opened.add(ret);
+				return ret;
+			};
+
+			encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null,
+					countingSupervisor, null);
+			assertEquals(testSubjectContents, TextFile.read(targetFilename + ".test"));
+			assertEquals(1, opened.size());
+			assertEquals(encryptedSize, opened.get(0).getCount());
+			assertEquals(encryptedSupervisor.getFingerprint(), checksumSupervisor.getFingerprint());
+		}
+	}
+
+	@Test
+	public void testWeCanDecryptInSinglePassResolvingTargetByInitialFileName() throws Exception {
+		String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename) + ".pgp";
+		encryptionService.encrypt(testSubjectFilename, targetFilename, keys.values(), null, null, null);
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "pass");
+
+		String expectedTarget = tempDirPath + File.separator + "decrypted-"
+				+ FilenameUtils.getName(testSubjectFilename);
+		String result = encryptionService.decrypt(targetFilename, (initialFileName, modificationTime) -> {
+			assertEquals(FilenameUtils.getName(testSubjectFilename), initialFileName);
+			return tempDirPath + File.separator + "decrypted-" + initialFileName;
+		}, keyAndPassword, null, null, null);
+
+		assertEquals(expectedTarget, result);
+		assertEquals(testSubjectContents, TextFile.read(result));
+	}
+
+	@Test
+	public void testWeCanDecryptTheProductOfTextEncryption() throws Exception {
+		String text = testSubjectContents + " \u041f\u0440\u0438\u0432\u0435\u0442";
+		String encrypted = encryptionService.encryptText(text, keys.values());
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForText(encrypted, "Alice.asc", "pass");
+		assertEquals(text, encryptionService.decryptText(encrypted, keyAndPassword));
+	}
+
+	@Test
+	public void testWeCanDecryptTheProductOfTextEncryptionUsingStreams() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 1 << 20) {
+			sb.append(testSubjectContents).append(" \u041f\u0440\u0438\u0432\u0435\u0442 ").append(sb.length())
+					.append('\n');
+		}
+		String text = sb.toString();
+
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		encryptionService.encryptText(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), encrypted,
+				keys.values(), null);
+		String encryptedText = encrypted.toString("US-ASCII");
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForText(encryptedText, "Alice.asc", "pass");
+
+		StringWriter decrypted = new StringWriter();
+		encryptionService.decryptText(new StringReader(encryptedText), decrypted, keyAndPassword);
+		assertEquals(text, decrypted.toString());
+	}
+
+	@Test
+	public void testUnlockedKeyIsReusedForSubsequentDecryption() throws Exception {
+		String targetFilename = tempDirPath + File.separator + FilenameUtils.getBaseName(testSubjectFilename) + ".pgp";
+		encryptionService.encrypt(testSubjectFilename, targetFilename, keys.values(), null, null, null);
+		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "pass");
+		unlockedKeysCache.purge();
+
+		encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null, null);
+		long misses = unlockedKeysCache.getMissesCount();
+		long hits = unlockedKeysCache.getHitsCount();
+		encryptionService.decrypt(targetFilename, targetFilename + ".test2", keyAndPassword, null, null, null);
+		assertEquals(testSubjectContents, TextFile.read(targetFilename + ".test2"));
+		assertEquals(misses, unlockedKeysCache.getMissesCount());
+		assertEquals(hits + 1, unlockedKeysCache.getHitsCount());
+		assertEquals(keyAndPassword, unlockedKeysCache.find(keyAndPassword.getDecryptionKeyId()));
+
+		// wrong password must not be served from cache
+		PasswordDeterminedForKey wrongPassword = buildPasswordDeterminedForKey(targetFilename, "Alice.asc", "wrong");
+		try {
+			encryptionService.getNameOfFileEncrypted(targetFilename, wrongPassword);
+			fail("Wrong password was accepted");
+		} catch (InvalidPasswordException e) {
+			// that's expected
+		}
+
+		unlockedKeysCache.purge();
+		assertNull(unlockedKeysCache.find(keyAndPassword.getDecryptionKeyId()));
+	}
+
 	private PasswordDeterminedForKey buildPasswordDeterminedForKey(String encryptedFile, String keyName,
 			String password) throws SymmetricEncryptionIsNotSupportedException {
-		Set<String> decryptionKeys = encryptionService.findKeyIdsForDecryption(encryptedFile);
+		return buildPasswordDeterminedForKey(encryptionService.findKeyIdsForDecryption(encryptedFile), keyName,
+				password);
+	}
+
+	private PasswordDeterminedForKey buildPasswordDeterminedForText(String encryptedText, String keyName,
+			String password) throws SymmetricEncryptionIsNotSupportedException {
+		return buildPasswordDeterminedForKey(
+				encryptionService.findKeyIdsForDecryption(
+						new ByteArrayInputStream(encryptedText.getBytes(StandardCharsets.US_ASCII))),
+				keyName, password);
+	}
+
+	private PasswordDeterminedForKey buildPasswordDeterminedForKey(Set<String> decryptionKeys, String keyName,
+			String password) {
 		Key key = keys.get(keyName);
 		Optional<String> requestedKeyId = decryptionKeys.stream().filter(x -> key.getKeyData().isHasAlternativeId(x))
 				.findFirst();
@@ -131,7 +349,7 @@ public class EncryptionDecryptionTests {
 		String decryptionKeyId = (String) encryptionService.findKeyIdsForDecryption(targetFilename).iterator().next();
 		PasswordDeterminedForKey keyAndPassword = new PasswordDeterminedForKey(decryptionKeyId, key, "pass");
 
-		encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null);
+		encryptionService.decrypt(targetFilename, targetFilename + ".test", keyAndPassword, null, null, null);
 		String result = TextFile.read(targetFilename + ".test");
 		assertEquals(testSubjectContents, result);
 	}
@@ -166,7 +384,7 @@ public class EncryptionDecryptionTests {
 
 		String encryptedFile = TestTools.getFileNameForResource("encrypted/" + sourceFile);
 		PasswordDeterminedForKey keyAndPassword = buildPasswordDeterminedForKey(encryptedFile, "Alice.asc", "pass");
-		encryptionService.decrypt(encryptedFile, targetFilename, keyAndPassword, null, null);
+		encryptionService.decrypt(encryptedFile, targetFilename, keyAndPassword, null, null, null);
 		assertTrue(new File(targetFilename).exists());
 	}
 }
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package integr.org.pgptool.gui.encryption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.pgptool.gui.config.api.ConfigRepository;
+import org.pgptool.gui.encryption.api.KeyFilesOperations;
+import org.pgptool.gui.encryption.api.KeyGeneratorService;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.implpgp.KeyRingServicePgpImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.eventbus.EventBus;
+
+import integr.org.pgptool.gui.TestTools;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:integr-test-context.xml")
+@DirtiesContext(classMode = ClassMode.BEFORE_CLASS)
+public class KeyRingServiceConcurrencyTest {
+	private static final int READERS = 8;
+	private static final int WRITER_ROUNDS = 50;
+
+	@Autowired
+	private KeyFilesOperations keyFilesOperations;
+	@Autowired
+	private ConfigRepository configRepository;
+	@Autowired
+	private EventBus eventBus;
+
+	@Test
+	public void testReadersAlwaysSeeConsistentSnapshotWhileKeysAreChanged() throws Exception {
+		List<Key> keys = new ArrayList<>();
+		for (String name : new String[] { "Alice.asc", "Bob.asc", "John.asc", "Paul.asc" }) {
+			keys.add(keyFilesOperations.readKeyFromFile(TestTools.getFileNameForResource("keys/" + name)));
+		}
+
+		KeyRingServicePgpImpl keyRingService = new KeyRingServicePgpImpl();
+		keyRingService.setConfigRepository(configRepository);
+		keyRingService.setEventBus(eventBus);
+		keyRingService.setKeyGeneratorService(Mockito.mock(KeyGeneratorService.class));
+
+		AtomicBoolean writerDone = new AtomicBoolean();
+		AtomicLong reads = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(READERS);
+		try {
+			List<Future<?>> readers = new ArrayList<>();
+			for (int i = 0; i < READERS; i++) {
+				readers.add(executor.submit(() -> {
+					start.await();
+					while (!writerDone.get()) {
+						List<Key> snapshot = keyRingService.readKeys();
+						Set<String> ids = new HashSet<>();
+						for (Key key : snapshot) {
+							assertNotNull(key);
+							assertTrue("Duplicate key in snapshot", ids.add(key.getKeyInfo().getKeyId()));
+						}
+						assertTrue(snapshot.size() <= keys.size());
+						try {
+							snapshot.add(keys.get(0));
+							fail("Snapshot must not be modifiable");
+						} catch (UnsupportedOperationException e) {
+							// that's expected
+						}
+						reads.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+
+			start.countDown();
+			for (int round = 0; round < WRITER_ROUNDS; round++) {
+				for (Key key : keys) {
+					keyRingService.addKey(key);
+					assertEquals(key, keyRingService.findKeyById(key.getKeyInfo().getKeyId()));
+				}
+				for (Key key : keys) {
+					keyRingService.removeKey(key);
+				}
+			}
+			writerDone.set(true);
+
+			for (Future<?> reader : readers) {
+				reader.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			writerDone.set(true);
+			executor.shutdownNow();
+		}
+
+		assertTrue(reads.get() > 0);
+		assertTrue(keyRingService.readKeys().isEmpty());
+	}
+}
@@ -19,7 +19,11 @@ package integr.org.pgptool.gui.encryption;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
@@ -31,6 +35,8 @@ import org.pgptool.gui.encryption.api.KeyGeneratorService;
 import org.pgptool.gui.encryption.api.KeyRingService;
 import org.pgptool.gui.encryption.api.dto.CreateKeyParams;
 import org.pgptool.gui.encryption.api.dto.Key;
+import org.pgptool.gui.encryption.api.dto.MatchedKey;
+import org.pgptool.gui.encryption.implpgp.KeyDataPgp;
 import org.pgptool.gui.encryption.implpgp.KeyRingServicePgpImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
@@ -77,6 +83,29 @@ public class KeyRingServiceTest {
 		assertEquals("Alice <alice@email.com>", keys.get(0).getKeyInfo().getUser());
 	}
 
+	@Test
+	public void testKeyRingServiceExpectCanFindKeyBySubKeyId() throws Exception {
+		Key key = keyFilesOperations.readKeyFromFile(TestTools.getFileNameForResource("keys/Bob.asc"));
+		long[] keyIds = KeyDataPgp.get(key).getKeyIds();
+		assertTrue(keyIds.length > 1);
+		String subKeyId = KeyDataPgp.buildKeyIdStr(keyIds[1]);
+
+		KeyRingService keyRingService = buildAnotherKeyRingService();
+		assertNull(keyRingService.findKeyById(subKeyId));
+		keyRingService.addKey(key);
+
+		assertEquals(key, keyRingService.findKeyById(subKeyId));
+		assertEquals(key, keyRingService.findKeyById(key.getKeyInfo().getKeyId()));
+		assertEquals(Arrays.asList(key), keyRingService.findMatchingKeys(Collections.singleton(subKeyId)));
+		List<MatchedKey> matched = keyRingService.findMatchingDecryptionKeys(Collections.singleton(subKeyId));
+		assertEquals(1, matched.size());
+		assertEquals(subKeyId, matched.get(0).getRequestedKeyId());
+
+		keyRingService.removeKey(key);
+		assertNull(keyRingService.findKeyById(subKeyId));
+		assertTrue(keyRingService.findMatchingKeys(Collections.singleton(subKeyId)).isEmpty());
+	}
+
 	private KeyRingService buildAnotherKeyRingService() {
 		KeyRingServicePgpImpl keyRingService1 = new KeyRingServicePgpImpl();
 		keyRingService1.setConfigRepository(configRepository);
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.config.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pgptool.gui.configpairs.impl.ConfigPairsEnvelop;
+import org.pgptool.gui.tools.singleinstance.InvokePrimaryInstanceArgs;
+
+import integr.org.pgptool.gui.TestTools;
+
+public class ConfigRepositoryImplTest {
+	private static String tempFolder;
+
+	@BeforeClass
+	public static void beforeAll() {
+		tempFolder = TestTools.getTempDir();
+	}
+
+	@AfterClass
+	public static void afterAll() throws IOException {
+		FileUtils.deleteDirectory(new File(tempFolder));
+	}
+
+	private static ConfigPairsEnvelop buildConfigPairs() {
+		ConfigPairsEnvelop ret = new ConfigPairsEnvelop();
+		ret.put("string", "value \u0436");
+		ret.put("boolean", true);
+		ret.put("integer", 42);
+		ret.put("long", Long.MAX_VALUE);
+		ret.put("null", null);
+		ret.put("serializable", new Dimension(640, 480));
+		ret.put("longString", new String(new char[100000]).replace('\0', 'x'));
+		return ret;
+	}
+
+	@Test
+	public void testWriteObjectExpectSameConfigPairsRead() throws Exception {
+		String fileName = tempFolder + File.separator + "pairs";
+		ConfigPairsEnvelop pairs = buildConfigPairs();
+
+		ConfigRepositoryImpl.writeObject(pairs, fileName);
+		ConfigPairsEnvelop result = ConfigRepositoryImpl.readObject(fileName, ConfigPairsEnvelop.class);
+
+		assertEquals(pairs, result);
+		assertTrue(result.containsKey("null"));
+		assertTrue(!new File(fileName + ".tmp").exists());
+	}
+
+	@Test
+	public void testReadObjectExpectLegacyFormatSupported() throws Exception {
+		String fileName = tempFolder + File.separator + "legacy-pairs";
+		ConfigPairsEnvelop pairs = buildConfigPairs();
+		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(fileName))) {
+			oos.writeObject(pairs);
+		}
+
+		ConfigPairsEnvelop result = ConfigRepositoryImpl.readObject(fileName, ConfigPairsEnvelop.class);
+		assertEquals(pairs, result);
+
+		// converted to the current format when written
+		ConfigRepositoryImpl.writeObject(result, fileName);
+		assertEquals(pairs, ConfigRepositoryImpl.readObject(fileName, ConfigPairsEnvelop.class));
+	}
+
+	@Test
+	public void testReadObjectExpectNullForCorruptedFile() throws Exception {
+		String fileName = tempFolder + File.separator + "corrupted";
+		ConfigRepositoryImpl.writeObject(buildConfigPairs(), fileName);
+		File file = new File(fileName);
+		byte[] bytes = FileUtils.readFileToByteArray(file);
+		FileUtils.writeByteArrayToFile(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+		assertNull(ConfigRepositoryImpl.readObject(fileName, ConfigPairsEnvelop.class));
+	}
+
+	@Test
+	public void testReadObjectExpectNullIfStoredMapIsNotExpectedClass() throws Exception {
+		String fileName = tempFolder + File.separator + "unexpected";
+		ConfigRepositoryImpl.writeObject(buildConfigPairs(), fileName);
+
+		assertNull(ConfigRepositoryImpl.readObject(fileName, InvokePrimaryInstanceArgs.class));
+	}
+
+	@Test
+	public void testWriteObjectExpectTempFileRemovedOnFailure() throws Exception {
+		String fileName = tempFolder + File.separator + "failed";
+		ConfigPairsEnvelop pairs = buildConfigPairs();
+		ConfigRepositoryImpl.writeObject(pairs, fileName);
+
+		ConfigPairsEnvelop notSerializable = buildConfigPairs();
+		notSerializable.put("notSerializable", new Object());
+		try {
+			ConfigRepositoryImpl.writeObject(notSerializable, fileName);
+			fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		assertFalse(new File(fileName + ".tmp").exists());
+		assertEquals(pairs, ConfigRepositoryImpl.readObject(fileName, ConfigPairsEnvelop.class));
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.configpairs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SortedMap;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.pgptool.gui.config.api.ConfigRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.eventbus.EventBus;
+
+public class ConfigPairsImplTest {
+	private ConfigRepository configRepository = mock(ConfigRepository.class);
+
+	private ConfigPairsImpl buildFixture(long flushDelayMs) throws Exception {
+		when(configRepository.readOrConstruct(ConfigPairsEnvelop.class, "test")).thenReturn(new ConfigPairsEnvelop());
+		ConfigPairsImpl ret = new ConfigPairsImpl("test");
+		ReflectionTestUtils.setField(ret, "configRepository", configRepository);
+		ReflectionTestUtils.setField(ret, "eventBus", new EventBus());
+		ret.setFlushDelayMs(flushDelayMs);
+		ret.afterPropertiesSet();
+		return ret;
+	}
+
+	@Test
+	public void testPutExpectWrittenImmediatelyWhenNoFlushDelay() throws Exception {
+		ConfigPairsImpl fixture = buildFixture(0);
+
+		fixture.put("a", "1");
+		fixture.put("b", "2");
+
+		verify(configRepository, times(2)).persist(any(ConfigPairsEnvelop.class), eq("test"));
+		assertEquals(0, fixture.getWritesAvoided());
+	}
+
+	@Test
+	public void testPutExpectBurstCoalescedIntoSingleWrite() throws Exception {
+		ConfigPairsImpl fixture = buildFixture(60000);
+
+		for (int i = 0; i < 100; i++) {
+			fixture.put("key" + i, i);
+		}
+		verify(configRepository, never()).persist(any(ConfigPairsEnvelop.class), eq("test"));
+
+		fixture.flush();
+		verify(configRepository, times(1)).persist(any(ConfigPairsEnvelop.class), eq("test"));
+		assertEquals(99, fixture.getWritesAvoided());
+		assertEquals(1, fixture.getFlushesCount());
+
+		// nothing changed since last flush
+		fixture.flush();
+		verify(configRepository, times(1)).persist(any(ConfigPairsEnvelop.class), eq("test"));
+	}
+
+	@Test
+	public void testDestroyExpectPendingChangesFlushed() throws Exception {
+		ConfigPairsImpl fixture = buildFixture(60000);
+		fixture.put("a", "1");
+
+		fixture.destroy();
+
+		verify(configRepository, times(1)).persist(any(ConfigPairsEnvelop.class), eq("test"));
+		assertEquals("1", fixture.find("a", null));
+	}
+
+	@Test
+	public void testDestroyExpectChangesWrittenAfterFailedFlush() throws Exception {
+		ConfigPairsImpl fixture = buildFixture(50);
+		doThrow(new IllegalStateException("Disk full")).doNothing().when(configRepository)
+				.persist(any(ConfigPairsEnvelop.class), eq("test"));
+		fixture.put("a", "1");
+		verify(configRepository, timeout(5000)).persist(any(ConfigPairsEnvelop.class), eq("test"));
+
+		fixture.destroy();
+
+		ArgumentCaptor<ConfigPairsEnvelop> captor = ArgumentCaptor.forClass(ConfigPairsEnvelop.class);
+		verify(configRepository, times(2)).persist(captor.capture(), eq("test"));
+		assertEquals("1", captor.getValue().get("a"));
+	}
+
+	@Test
+	public void testPutExpectFlushedAfterDelay() throws Exception {
+		ConfigPairsImpl fixture = buildFixture(50);
+		fixture.put("a", "1");
+
+		verify(configRepository, timeout(5000)).persist(any(ConfigPairsEnvelop.class),
+				eq("test"));
+		fixture.destroy();
+	}
+
+	@Test
+	public void testGetAllWithPrefixedKeyExpectOnlyPrefixedPairsInOrder() throws Exception {
+		ConfigPairsImpl fixture = buildFixture(0);
+		fixture.put("/home/user/b.txt", "b");
+		fixture.put("/home/user/a.txt", "a");
+		fixture.put("/home/user2/c.txt", "c");
+		fixture.put("/home/use", "d");
+
+		SortedMap<String, Object> result = fixture.getAllWithPrefixedKey("/home/user/");
+
+		assertEquals(Arrays.asList("/home/user/a.txt", "/home/user/b.txt"), new ArrayList<>(result.keySet()));
+		assertEquals(Arrays.asList("a", "b"), fixture.findAllWithPrefixedKey("/home/user/"));
+		assertEquals(4, fixture.getAll().size());
+
+		// views are live
+		fixture.put("/home/user/c.txt", "c");
+		assertEquals(3, result.size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testGetAllExpectReadOnlyView() throws Exception {
+		ConfigPairsImpl fixture = buildFixture(0);
+		fixture.put("a", "1");
+		fixture.getAll().clear();
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.decryptedlist.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pgptool.gui.config.api.ConfigRepository;
+import org.pgptool.gui.configpairs.impl.ConfigPairsEnvelop;
+import org.pgptool.gui.configpairs.impl.ConfigPairsImpl;
+import org.pgptool.gui.decryptedlist.api.DecryptedFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.eventbus.EventBus;
+
+import integr.org.pgptool.gui.TestTools;
+
+public class MonitoringDecryptedFilesServiceImplTest {
+	private String tempFolder;
+	private ConfigPairsEnvelop persisted = new ConfigPairsEnvelop();
+	private MonitoringDecryptedFilesServiceImpl fixture;
+
+	@Before
+	public void setUp() throws Exception {
+		tempFolder = TestTools.getTempDir();
+	}
+
+	private void buildFixture() throws Exception {
+		ConfigRepository configRepository = mock(ConfigRepository.class);
+		when(configRepository.readOrConstruct(ConfigPairsEnvelop.class, "mon-decr")).thenReturn(persisted);
+		ConfigPairsImpl monitoredDecrypted = new ConfigPairsImpl("mon-decr");
+		ReflectionTestUtils.setField(monitoredDecrypted, "configRepository", configRepository);
+		ReflectionTestUtils.setField(monitoredDecrypted, "eventBus", new EventBus());
+
+		fixture = new MonitoringDecryptedFilesServiceImpl();
+		ReflectionTestUtils.setField(fixture, "monitoredDecrypted", monitoredDecrypted);
+		fixture.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (fixture != null) {
+			fixture.destroy();
+		}
+		FileUtils.deleteDirectory(new File(tempFolder));
+	}
+
+	private DecryptedFile buildDecryptedFile(String encrypted, String decrypted) throws IOException {
+		File file = new File(tempFolder, decrypted);
+		FileUtils.write(file, decrypted, "UTF-8");
+		return new DecryptedFile(new File(tempFolder, encrypted).getAbsolutePath(), file.getAbsolutePath());
+	}
+
+	@Test
+	public void testFindExpectIndexesFollowChanges() throws Exception {
+		buildFixture();
+		DecryptedFile a1 = buildDecryptedFile("a.pgp", "a1.txt");
+		DecryptedFile a2 = buildDecryptedFile("a.pgp", "a2.txt");
+		fixture.addOrUpdate(a1);
+		fixture.addOrUpdate(a2);
+
+		assertSame(a1, fixture.findByDecryptedFile(a1.getDecryptedFile()));
+		assertSame(a2, fixture.findByEncryptedFile(a1.getEncryptedFile(), x -> x.getDecryptedFile().endsWith("2.txt")));
+		assertEquals(2, fixture.getDecryptedFiles().size());
+
+		// same decrypted file now belongs to other encrypted file
+		DecryptedFile b1 = buildDecryptedFile("b.pgp", "a1.txt");
+		fixture.addOrUpdate(b1);
+		assertSame(b1, fixture.findByDecryptedFile(a1.getDecryptedFile()));
+		assertSame(a2, fixture.findByEncryptedFile(a1.getEncryptedFile(), x -> true));
+		assertSame(b1, fixture.findByEncryptedFile(b1.getEncryptedFile(), x -> true));
+
+		fixture.remove(a2.getDecryptedFile());
+		assertNull(fixture.findByDecryptedFile(a2.getDecryptedFile()));
+		assertNull(fixture.findByEncryptedFile(a2.getEncryptedFile(), x -> true));
+		assertEquals(1, fixture.getDecryptedFiles().size());
+	}
+
+	@Test
+	public void testAfterPropertiesSetExpectMissingFilesRemovedInBackground() throws Exception {
+		DecryptedFile existing = buildDecryptedFile("a.pgp", "a.txt");
+		persisted.put(existing.getDecryptedFile(), existing);
+		for (int i = 0; i < 20; i++) {
+			String missing = new File(tempFolder, "missing" + i + ".txt").getAbsolutePath();
+			persisted.put(missing, new DecryptedFile(existing.getEncryptedFile(), missing));
+		}
+
+		buildFixture();
+
+		long timeoutAt = System.currentTimeMillis() + 5000;
+		while (fixture.getDecryptedFiles().size() > 1 && System.currentTimeMillis() < timeoutAt) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, fixture.getDecryptedFiles().size());
+		assertSame(existing, fixture.findByEncryptedFile(existing.getEncryptedFile(), x -> true));
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pgptool.gui.encryption.api.dto.CompressionAlgorithm;
+import org.pgptool.gui.encryption.api.dto.CompressionSettings;
+
+public class CompressionPolicyAdaptiveImplTest {
+	private CompressionPolicyAdaptiveImpl policy = new CompressionPolicyAdaptiveImpl();
+
+	@Test
+	public void testRandomDataIsNotCompressed() {
+		byte[] sample = new byte[1 << 16];
+		new Random(1).nextBytes(sample);
+		assertEquals(CompressionAlgorithm.NONE, policy.chooseCompression("a.bin", sample).getAlgorithm());
+	}
+
+	@Test
+	public void testTextIsCompressed() {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 10000) {
+			sb.append("The quick brown fox jumps over the lazy dog. ");
+		}
+		CompressionSettings result = policy.chooseCompression("a.txt", sb.toString().getBytes());
+		assertEquals(CompressionAlgorithm.ZIP, result.getAlgorithm());
+		assertEquals(CompressionSettings.DEFAULT_LEVEL, result.getLevel());
+	}
+
+	@Test
+	public void testKnownCompressedFormatIsNotCompressed() {
+		byte[] sample = new byte[100];
+		Arrays.fill(sample, (byte) 'a');
+		sample[0] = 'P';
+		sample[1] = 'K';
+		sample[2] = 3;
+		sample[3] = 4;
+		assertEquals(CompressionAlgorithm.NONE, policy.chooseCompression("a.docx", sample).getAlgorithm());
+	}
+
+	@Test
+	public void testUserOverrideWins() {
+		byte[] sample = new byte[1 << 16];
+		new Random(1).nextBytes(sample);
+		policy.setCompressionOverride("bzip2");
+		assertEquals(CompressionAlgorithm.BZIP2, policy.chooseCompression("a.bin", sample).getAlgorithm());
+		policy.setCompressionOverride(CompressionPolicyAdaptiveImpl.AUTO);
+		assertEquals(CompressionAlgorithm.NONE, policy.chooseCompression("a.bin", sample).getAlgorithm());
+	}
+
+	@Test
+	public void testEntropyEstimate() {
+		assertEquals(0, CompressionPolicyAdaptiveImpl.estimateEntropy(new byte[1000]), 0.0001);
+		byte[] allValues = new byte[256];
+		for (int i = 0; i < allValues.length; i++) {
+			allValues[i] = (byte) i;
+		}
+		assertEquals(8, CompressionPolicyAdaptiveImpl.estimateEntropy(allValues), 0.0001);
+	}
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.bouncycastle.openpgp.operator.PGPDataEncryptor;
+import org.bouncycastle.openpgp.operator.PGPDataEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDataEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcePGPDataEncryptorBuilder;
+import org.junit.Test;
+import org.pgptool.gui.encryption.api.dto.SymmetricCipher;
+
+public class EncryptionServicePgpImplTest {
+	@Test
+	public void testJceUsedWhenPolicyAllowsKeyLength() {
+		PGPDataEncryptorBuilder builder = EncryptionServicePgpImpl.buildDataEncryptorBuilder(SymmetricCipher.AES_256,
+				Integer.MAX_VALUE);
+		assertTrue(builder instanceof JcePGPDataEncryptorBuilder);
+	}
+
+	@Test
+	public void testBcUsedWhenPolicyIsLimited() throws Exception {
+		// NOTE: This is the default policy of Java 8 runtimes prior to 8u161
+		int limitedPolicyKeyBits = 128;
+		PGPDataEncryptorBuilder builder = EncryptionServicePgpImpl.buildDataEncryptorBuilder(SymmetricCipher.AES_256,
+				limitedPolicyKeyBits);
+		assertTrue(builder instanceof BcPGPDataEncryptorBuilder);
+
+		PGPDataEncryptor encryptor = builder.build(new byte[SymmetricCipher.AES_256.getKeyBits() / 8]);
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		try (OutputStream os = encryptor.getOutputStream(target)) {
+			os.write(new byte[16]);
+		}
+		assertEquals(16, target.size());
+		assertFalse(Arrays.equals(new byte[16], target.toByteArray()));
+
+		builder = EncryptionServicePgpImpl.buildDataEncryptorBuilder(SymmetricCipher.AES_128, limitedPolicyKeyBits);
+		assertTrue(builder instanceof JcePGPDataEncryptorBuilder);
+	}
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+import org.pgptool.gui.encryption.api.dto.Key;
+
+import integr.org.pgptool.gui.TestTools;
+
+public class KeyDataPgpTest {
+	private static byte[] serialize(Object object) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+			oos.writeObject(object);
+		}
+		return baos.toByteArray();
+	}
+
+	private static KeyDataPgp deserialize(byte[] bytes) throws Exception {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (KeyDataPgp) ois.readObject();
+		}
+	}
+
+	@Test
+	public void testDeserializedKeyExpectIdsAndCapabilitiesAvailable() throws Exception {
+		Key key = new KeyFilesOperationsPgpImpl().readKeyFromFile(TestTools.getFileNameForResource("keys/Alice.asc"));
+		KeyDataPgp original = KeyDataPgp.get(key);
+
+		KeyDataPgp restored = deserialize(serialize(original));
+
+		assertArrayEquals(original.getKeyIds(), restored.getKeyIds());
+		assertTrue(restored.isCanBeUsedForDecryption());
+		assertTrue(restored.isCanBeUsedForEncryption());
+		for (long keyId : original.getKeyIds()) {
+			assertTrue(restored.isHasAlternativeId(keyId));
+		}
+		assertFalse(restored.isHasAlternativeId(0));
+	}
+
+	@Test
+	public void testDeserializedKeyExpectSameBytesWhenSerializedAgain() throws Exception {
+		Key key = new KeyFilesOperationsPgpImpl().readKeyFromFile(TestTools.getFileNameForResource("keys/Paul.asc"));
+		byte[] serialized = serialize(KeyDataPgp.get(key));
+
+		KeyDataPgp restored = deserialize(serialized);
+		assertArrayEquals(serialized, serialize(restored));
+
+		assertNotNull(restored.getPublicKeyRing());
+		assertEquals(restored.getPublicKeyRing().getPublicKey().getKeyID(), restored.getKeyIds()[0]);
+		assertFalse(restored.isCanBeUsedForDecryption());
+	}
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pgptool.gui.config.api.ConfigRepository;
+import org.pgptool.gui.config.impl.ConfigRepositoryImpl;
+import org.pgptool.gui.encryption.api.dto.Key;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.eventbus.EventBus;
+
+import integr.org.pgptool.gui.TestTools;
+
+public class KeyRingJournalTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ConfigRepositoryImpl configRepository;
+	private KeyRingJournal journal;
+	private Key alice;
+	private Key bob;
+
+	@Before
+	public void setUp() throws Exception {
+		String basePath = tempFolder.getRoot().getAbsolutePath();
+		configRepository = new ConfigRepositoryImpl();
+		configRepository.setConfigsBasePathResolver(() -> basePath);
+		configRepository.setEventBus(new EventBus());
+		configRepository.afterPropertiesSet();
+
+		KeyFilesOperationsPgpImpl keyFilesOperations = new KeyFilesOperationsPgpImpl();
+		alice = keyFilesOperations.readKeyFromFile(TestTools.getFileNameForResource("keys/Alice.asc"));
+		bob = keyFilesOperations.readKeyFromFile(TestTools.getFileNameForResource("keys/Bob.asc"));
+
+		journal = buildJournal(100);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		journal.destroy();
+	}
+
+	private KeyRingJournal buildJournal(int compactionThreshold) throws Exception {
+		KeyRingJournal ret = new KeyRingJournal();
+		ret.setConfigRepository(configRepository);
+		ret.setConfigsBasePathResolver(configRepository.getConfigsBasePathResolver());
+		ret.setCompactionThreshold(compactionThreshold);
+		ret.afterPropertiesSet();
+		return ret;
+	}
+
+	@Test
+	public void testJournaledChangesAreReplayed() throws Exception {
+		assertTrue(journal.read().isEmpty());
+		journal.append(Collections.emptyList(), Arrays.asList(alice, bob), ring(alice, bob));
+		journal.append(Collections.singletonList(alice), Collections.emptyList(), ring(bob));
+
+		List<Key> keys = buildJournal(100).read();
+		assertEquals(1, keys.size());
+		assertEquals(bob.getKeyInfo().getKeyId(), keys.get(0).getKeyInfo().getKeyId());
+	}
+
+	@Test
+	public void testIncompleteRecordIsDiscarded() throws Exception {
+		journal.read();
+		journal.append(Collections.emptyList(), Collections.singletonList(alice), ring(alice));
+		journal.append(Collections.emptyList(), Collections.singletonList(bob), ring(alice, bob));
+
+		File journalFile = findJournalFile();
+		long lengthBeforeTornWrite = journalFile.length();
+		try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+			raf.setLength(lengthBeforeTornWrite - 5);
+		}
+
+		List<Key> keys = buildJournal(100).read();
+		assertEquals(1, keys.size());
+		assertEquals(alice.getKeyInfo().getKeyId(), keys.get(0).getKeyInfo().getKeyId());
+		assertTrue(journalFile.length() < lengthBeforeTornWrite - 5);
+	}
+
+	@Test
+	public void testJournalIsCompactedIntoBase() throws Exception {
+		journal.destroy();
+		journal = buildJournal(1);
+		journal.read();
+		journal.append(Collections.emptyList(), Arrays.asList(alice, bob), ring(alice, bob));
+		// NOTE: destroy waits for scheduled compaction to complete
+		journal.destroy();
+
+		assertFalse(findJournalFile().exists());
+		assertEquals(2, configRepository.read(PgpKeysRing.class).size());
+		assertEquals(2, buildJournal(100).read().size());
+	}
+
+	private File findJournalFile() {
+		return new File(tempFolder.getRoot(), "configs" + File.separator + "PgpKeysRing.journal");
+	}
+
+	@Test
+	public void testBaseWithoutKeysIndexIsRewrittenOnce() throws Exception {
+		// NOTE: This is how keys persisted by older versions look like
+		ReflectionTestUtils.setField(alice.getKeyData(), "indexMissing", true);
+		ConfigRepository legacyRepository = mock(ConfigRepository.class);
+		when(legacyRepository.readOrConstruct(PgpKeysRing.class)).thenReturn(ring(alice, bob));
+
+		KeyRingJournal fixture = new KeyRingJournal();
+		fixture.setConfigRepository(legacyRepository);
+		fixture.setConfigsBasePathResolver(configRepository.getConfigsBasePathResolver());
+		fixture.afterPropertiesSet();
+		try {
+			assertEquals(2, fixture.read().size());
+			verify(legacyRepository, timeout(5000)).persist(any(PgpKeysRing.class));
+
+			// subsequent changes are not compacted until threshold is reached
+			fixture.append(Collections.emptyList(), Collections.singletonList(bob), ring(alice, bob));
+		} finally {
+			fixture.destroy();
+		}
+		verify(legacyRepository, times(1)).persist(any(PgpKeysRing.class));
+	}
+
+	@Test
+	public void testBaseWithKeysIndexIsNotRewritten() throws Exception {
+		configRepository.persist(ring(alice, bob));
+		PgpKeysRing restored = configRepository.read(PgpKeysRing.class);
+		assertFalse(((KeyDataPgp) restored.get(0).getKeyData()).isIndexMissing());
+
+		ConfigRepository repository = mock(ConfigRepository.class);
+		when(repository.readOrConstruct(PgpKeysRing.class)).thenReturn(restored);
+		KeyRingJournal fixture = new KeyRingJournal();
+		fixture.setConfigRepository(repository);
+		fixture.setConfigsBasePathResolver(configRepository.getConfigsBasePathResolver());
+		fixture.afterPropertiesSet();
+		fixture.read();
+		fixture.destroy();
+		verify(repository, never()).persist(any(PgpKeysRing.class));
+	}
+
+	private static PgpKeysRing ring(Key... keys) {
+		PgpKeysRing ret = new PgpKeysRing();
+		ret.addAll(Arrays.asList(keys));
+		return ret;
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.encryption.implpgp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.pgptool.gui.config.api.ConfigRepository;
+
+public class RecipientsIndexTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private ConfigRepository configRepository;
+	private RecipientsIndex index;
+
+	@Before
+	public void setUp() throws Exception {
+		configRepository = mock(ConfigRepository.class);
+		when(configRepository.readOrConstruct(RecipientsIndexEntries.class)).thenReturn(new RecipientsIndexEntries());
+		index = new RecipientsIndex();
+		index.setConfigRepository(configRepository);
+		index.setMaxEntries(2);
+		index.afterPropertiesSet();
+	}
+
+	@Test
+	public void testIndexedFileIsFound() throws Exception {
+		File file = tempFolder.newFile();
+		FileUtils.writeStringToFile(file, "content", "UTF-8");
+		index.put(file, Collections.singleton("ABCD"));
+
+		Set<String> result = index.find(file);
+		assertNotNull(result);
+		assertEquals(Collections.singleton("ABCD"), result);
+		verify(configRepository).persist(any(RecipientsIndexEntries.class));
+	}
+
+	@Test
+	public void testChangedFileIsNotFound() throws Exception {
+		File file = tempFolder.newFile();
+		FileUtils.writeStringToFile(file, "content", "UTF-8");
+		index.put(file, Collections.singleton("ABCD"));
+
+		FileUtils.writeStringToFile(file, "another content", "UTF-8");
+		assertNull(index.find(file));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+		File a = tempFolder.newFile();
+		File b = tempFolder.newFile();
+		File c = tempFolder.newFile();
+		index.put(a, Collections.singleton("A"));
+		index.put(b, Collections.singleton("B"));
+		assertNotNull(index.find(a));
+		index.put(c, Collections.singleton("C"));
+
+		assertNotNull(index.find(a));
+		assertNull(index.find(b));
+		assertNotNull(index.find(c));
+	}
+
+	@Test
+	public void testChangesAreWrittenBehindInSingleWrite() throws Exception {
+		RecipientsIndex fixture = new RecipientsIndex();
+		fixture.setConfigRepository(configRepository);
+		fixture.setFlushDelayMs(60000);
+		fixture.afterPropertiesSet();
+
+		File a = tempFolder.newFile();
+		File b = tempFolder.newFile();
+		fixture.put(a, Collections.singleton("A"));
+		fixture.put(b, Collections.singleton("B"));
+		verify(configRepository, never()).persist(any(RecipientsIndexEntries.class));
+
+		fixture.flush();
+		verify(configRepository, times(1)).persist(any(RecipientsIndexEntries.class));
+		fixture.flush();
+		verify(configRepository, times(1)).persist(any(RecipientsIndexEntries.class));
+	}
+
+	@Test
+	public void testRemovalOfStaleEntryIsPersisted() throws Exception {
+		File file = tempFolder.newFile();
+		FileUtils.writeStringToFile(file, "content", "UTF-8");
+		index.put(file, Collections.singleton("ABCD"));
+
+		FileUtils.writeStringToFile(file, "another content", "UTF-8");
+		assertNull(index.find(file));
+		ArgumentCaptor<RecipientsIndexEntries> persisted = ArgumentCaptor.forClass(RecipientsIndexEntries.class);
+		verify(configRepository, times(2)).persist(persisted.capture());
+		assertEquals(0, persisted.getValue().size());
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.filecomparison;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChecksumCalculationTaskTest {
+	private MessageDigestFactoryImpl messageDigestFactory;
+	private File file;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws Exception {
+		messageDigestFactory = new MessageDigestFactoryImpl();
+		messageDigestFactory.afterPropertiesSet();
+
+		// NOTE: Not a multiple of read buffer size, so last read is partial
+		content = new byte[ChecksumCalculationTask.READ_BUF_SIZE * 2 + 12345];
+		new Random(42).nextBytes(content);
+		file = File.createTempFile("pgptool-fingerprint", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testLegacyFingerprintIsComparable() throws Exception {
+		Fingerprint legacy = write(messageDigestFactory.createNew("SHA-1"));
+		// NOTE: This is how fingerprints persisted by previous versions look like
+		legacy.setAlgorithm(null);
+
+		Fingerprint recalculated = calculate(messageDigestFactory.comparableWith(legacy).createNew());
+		assertEquals(legacy, recalculated);
+
+		Fingerprint current = calculate(messageDigestFactory.createNew());
+		assertEquals("SHA-256", current.getAlgorithm());
+		assertNotEquals(legacy, current);
+	}
+
+	@Test
+	public void testStreamAndTaskFingerprintsAreSame() throws Exception {
+		for (String algorithm : new String[] { "SHA-1", "SHA-256", MessageDigestFactoryImpl.CRC32 }) {
+			Fingerprint written = write(messageDigestFactory.createNew(algorithm));
+			Fingerprint calculated = calculate(messageDigestFactory.createNew(algorithm));
+			assertEquals(algorithm, calculated.getAlgorithm());
+			assertEquals(content.length, calculated.getSize());
+			assertEquals(written, calculated);
+		}
+	}
+
+	@Test
+	public void testCrc32ChecksumIsSameAsJdkCrc32() throws Exception {
+		write(messageDigestFactory.createNew());
+		Fingerprint fingerprint = calculate(messageDigestFactory.createNew(MessageDigestFactoryImpl.CRC32));
+
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		byte[] expected = ByteBuffer.allocate(4).putInt((int) crc.getValue()).array();
+		assertEquals(Base64.getEncoder().encodeToString(expected), fingerprint.getChecksum());
+	}
+
+	private Fingerprint write(MessageDigest messageDigest) throws Exception {
+		CompletableFuture<Fingerprint> future = new CompletableFuture<>();
+		try (OutputStream os = new ChecksumCalcOutputStream(messageDigest, file.getAbsolutePath(), future)) {
+			os.write(content);
+		}
+		return future.get();
+	}
+
+	private Fingerprint calculate(MessageDigest messageDigest) throws Exception {
+		return new ChecksumCalculationTask(file.getAbsolutePath(), messageDigest).call();
+	}
+}
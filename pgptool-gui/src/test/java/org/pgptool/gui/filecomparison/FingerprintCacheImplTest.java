@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.filecomparison;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.pgptool.gui.config.api.ConfigRepository;
+import org.pgptool.gui.configpairs.impl.ConfigPairsEnvelop;
+import org.pgptool.gui.configpairs.impl.ConfigPairsImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.eventbus.EventBus;
+
+public class FingerprintCacheImplTest {
+	private ConfigRepository configRepository = mock(ConfigRepository.class);
+	private EventBus eventBus = mock(EventBus.class);
+	private MessageDigestFactoryImpl messageDigestFactory = new MessageDigestFactoryImpl();
+	private File file;
+	private long lastModified;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("pgptool-fingerprint", ".bin");
+		write(1000);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private void write(int size) throws Exception {
+		byte[] content = new byte[size];
+		new Random().nextBytes(content);
+		try (OutputStream os = new FileOutputStream(file)) {
+			os.write(content);
+		}
+		// NOTE: Recently modified files are not cached, see
+		// FingerprintCacheImpl.MODIFICATION_TIME_GRANULARITY_MS
+		lastModified = lastModified == 0 ? System.currentTimeMillis() - 60000 : lastModified + 1000;
+		file.setLastModified(lastModified);
+	}
+
+	private ConfigPairsImpl buildConfigPairs(ConfigPairsEnvelop persisted) throws Exception {
+		when(configRepository.readOrConstruct(ConfigPairsEnvelop.class, "fingerprints")).thenReturn(persisted);
+		ConfigPairsImpl ret = new ConfigPairsImpl("fingerprints");
+		ReflectionTestUtils.setField(ret, "configRepository", configRepository);
+		ReflectionTestUtils.setField(ret, "eventBus", eventBus);
+		ret.afterPropertiesSet();
+		return ret;
+	}
+
+	private FingerprintCacheImpl buildFixture(ConfigPairsImpl configPairs) {
+		FingerprintCacheImpl ret = new FingerprintCacheImpl();
+		ReflectionTestUtils.setField(ret, "fingerprints", configPairs);
+		ReflectionTestUtils.setField(ret, "messageDigestFactory", messageDigestFactory);
+		return ret;
+	}
+
+	private Fingerprint calculate() throws Exception {
+		return new ChecksumCalculationTask(file.getAbsolutePath(), messageDigestFactory.createNew()).call();
+	}
+
+	@Test
+	public void testGetFingerprintExpectFileNotReadAgainIfNotChanged() throws Exception {
+		FingerprintCacheImpl fixture = buildFixture(buildConfigPairs(new ConfigPairsEnvelop()));
+		Fingerprint baseline = calculate();
+
+		assertEquals(baseline, fixture.getFingerprint(file.getAbsolutePath(), baseline));
+		assertEquals(baseline, fixture.getFingerprint(file.getAbsolutePath(), baseline));
+		assertEquals(1, fixture.getMisses());
+		assertEquals(1, fixture.getHits());
+	}
+
+	@Test
+	public void testGetFingerprintExpectCacheChangesNotBroadcasted() throws Exception {
+		FingerprintCacheImpl fixture = buildFixture(buildConfigPairs(new ConfigPairsEnvelop()));
+		Fingerprint baseline = calculate();
+		fixture.getFingerprint(file.getAbsolutePath(), baseline);
+		write(1000);
+		fixture.getFingerprint(file.getAbsolutePath(), baseline);
+
+		verify(eventBus, never()).post(any());
+	}
+
+	@Test
+	public void testGetFingerprintExpectChangeDetected() throws Exception {
+		FingerprintCacheImpl fixture = buildFixture(buildConfigPairs(new ConfigPairsEnvelop()));
+		Fingerprint baseline = calculate();
+		fixture.getFingerprint(file.getAbsolutePath(), baseline);
+
+		// same size, different content and modification time
+		write(1000);
+		assertNotEquals(baseline, fixture.getFingerprint(file.getAbsolutePath(), baseline));
+		assertEquals(2, fixture.getMisses());
+		assertEquals(0, fixture.getHits());
+	}
+
+	@Test
+	public void testGetFingerprintExpectSizeMismatchDetectedWithoutReading() throws Exception {
+		FingerprintCacheImpl fixture = buildFixture(buildConfigPairs(new ConfigPairsEnvelop()));
+		Fingerprint baseline = calculate();
+
+		write(2000);
+		Fingerprint result = fixture.getFingerprint(file.getAbsolutePath(), baseline);
+		assertNotEquals(baseline, result);
+		assertEquals(2000, result.getSize());
+		assertNull(result.getChecksum());
+		assertEquals(1, fixture.getSizeMismatches());
+		assertEquals(0, fixture.getMisses());
+	}
+
+	@Test
+	public void testGetFingerprintExpectRecentlyModifiedFileNotCached() throws Exception {
+		FingerprintCacheImpl fixture = buildFixture(buildConfigPairs(new ConfigPairsEnvelop()));
+		file.setLastModified(System.currentTimeMillis());
+		Fingerprint baseline = calculate();
+
+		fixture.getFingerprint(file.getAbsolutePath(), baseline);
+		fixture.getFingerprint(file.getAbsolutePath(), baseline);
+		assertEquals(2, fixture.getMisses());
+	}
+
+	@Test
+	public void testGetFingerprintExpectCachePersisted() throws Exception {
+		ConfigPairsImpl configPairs = buildConfigPairs(new ConfigPairsEnvelop());
+		Fingerprint baseline = calculate();
+		buildFixture(configPairs).getFingerprint(file.getAbsolutePath(), baseline);
+
+		ArgumentCaptor<ConfigPairsEnvelop> persisted = ArgumentCaptor.forClass(ConfigPairsEnvelop.class);
+		verify(configRepository).persist(persisted.capture(), eq("fingerprints"));
+
+		// simulate application restart
+		FingerprintCacheImpl fixture = buildFixture(buildConfigPairs(persisted.getValue()));
+		assertEquals(baseline, fixture.getFingerprint(file.getAbsolutePath(), baseline));
+		assertEquals(1, fixture.getHits());
+		assertEquals(0, fixture.getMisses());
+	}
+
+	@Test
+	public void testGetFingerprintExpectLegacyAlgorithmUsed() throws Exception {
+		FingerprintCacheImpl fixture = buildFixture(buildConfigPairs(new ConfigPairsEnvelop()));
+		MessageDigest sha1 = messageDigestFactory.createNew("SHA-1");
+		Fingerprint legacy = new ChecksumCalculationTask(file.getAbsolutePath(), sha1).call();
+		legacy.setAlgorithm(null);
+
+		assertEquals(legacy, fixture.getFingerprint(file.getAbsolutePath(), legacy));
+		// NOTE: Cached fingerprint of other algorithm is not comparable
+		Fingerprint current = calculate();
+		assertEquals(current, fixture.getFingerprint(file.getAbsolutePath(), current));
+		assertEquals(2, fixture.getMisses());
+	}
+
+	@Test
+	public void testPutExpectOldestEntriesEvicted() throws Exception {
+		ConfigPairsImpl configPairs = buildConfigPairs(new ConfigPairsEnvelop());
+		FingerprintCacheImpl fixture = buildFixture(configPairs);
+		fixture.setMaxEntries(10);
+		for (int i = 0; i < 11; i++) {
+			FingerprintCacheEntry entry = new FingerprintCacheEntry();
+			entry.setCachedAt(i);
+			configPairs.put("file" + i, entry);
+		}
+
+		Fingerprint baseline = calculate();
+		fixture.getFingerprint(file.getAbsolutePath(), baseline);
+		assertEquals(9, configPairs.getAll().size());
+		assertNull(configPairs.find("file0", null));
+		assertEquals(baseline, configPairs.<FingerprintCacheEntry>find(file.getAbsolutePath(), null).getFingerprint());
+	}
+}
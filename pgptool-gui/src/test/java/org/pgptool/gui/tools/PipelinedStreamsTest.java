@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class PipelinedStreamsTest {
+	private static byte[] buildData(int size) {
+		byte[] ret = new byte[size];
+		new Random(size).nextBytes(ret);
+		return ret;
+	}
+
+	@Test
+	public void testInputStreamDeliversSameBytes() throws Exception {
+		byte[] data = buildData(1000003);
+		try (InputStream in = new PipelinedInputStream(new ByteArrayInputStream(data), 4096, 3)) {
+			assertArrayEquals(data, IOUtils.toByteArray(in));
+		}
+	}
+
+	@Test
+	public void testInputStreamEmptySource() throws Exception {
+		try (InputStream in = new PipelinedInputStream(new ByteArrayInputStream(new byte[0]), 4096, 3)) {
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testOutputStreamDeliversSameBytes() throws Exception {
+		byte[] data = buildData(1000003);
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		try (OutputStream out = new PipelinedOutputStream(target, 4096, 3)) {
+			out.write(data, 0, 10);
+			out.write(data[10]);
+			out.write(data, 11, data.length - 11);
+		}
+		assertArrayEquals(data, target.toByteArray());
+	}
+
+	@Test
+	public void testInputStreamReportsSourceFailure() throws Exception {
+		InputStream failing = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("test");
+			}
+		};
+		try (InputStream in = new PipelinedInputStream(failing, 4096, 3)) {
+			in.read();
+			fail();
+		} catch (IOException e) {
+			assertEquals("test", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testOutputStreamReportsTargetFailure() throws Exception {
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("test");
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				throw new IOException("test");
+			}
+		};
+		OutputStream out = new PipelinedOutputStream(failing, 16, 2);
+		try {
+			out.write(buildData(1000));
+			out.close();
+			fail();
+		} catch (IOException e) {
+			assertEquals("test", e.getCause().getMessage());
+		} finally {
+			IoStreamUtils.safeClose(out);
+		}
+	}
+
+	@Test
+	public void testInputStreamCanBeClosedBeforeFullyRead() throws Exception {
+		InputStream in = new PipelinedInputStream(new ByteArrayInputStream(buildData(100000)), 16, 2);
+		in.read();
+		// NOTE: Reader is blocked on a full queue at this point, close must not hang
+		in.close();
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.tools.fileswatcher;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.WatchEvent.Kind;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileEventsCoalescerTest {
+	private BlockingQueue<Map<String, Kind<?>>> batches = new LinkedBlockingQueue<>();
+	private FileEventsCoalescer fixture;
+
+	@Before
+	public void setUp() {
+		fixture = new FileEventsCoalescer(new FilesWatcherHandler() {
+			@Override
+			public void handleFileChanged(Kind<?> kind, String file) {
+				throw new IllegalStateException("Changes are expected to be delivered in batches");
+			}
+
+			@Override
+			public void handleFilesChanged(Map<String, Kind<?>> changes) {
+				batches.add(changes);
+			}
+		}, "test", 100);
+	}
+
+	@After
+	public void tearDown() {
+		fixture.stop();
+	}
+
+	@Test
+	public void testSubmitExpectBurstDeliveredAsSingleBatchOfNetChanges() throws Exception {
+		fixture.submit(ENTRY_DELETE, "/saved-by-editor");
+		fixture.submit(ENTRY_MODIFY, "/modified");
+		fixture.submit(ENTRY_CREATE, "/saved-by-editor");
+		fixture.submit(ENTRY_CREATE, "/temp");
+		fixture.submit(ENTRY_MODIFY, "/saved-by-editor");
+		fixture.submit(ENTRY_DELETE, "/temp");
+		fixture.submit(ENTRY_CREATE, "/created");
+		fixture.submit(ENTRY_DELETE, "/deleted");
+
+		Map<String, Kind<?>> batch = batches.poll(5, TimeUnit.SECONDS);
+		assertNotNull(batch);
+		Map<String, Kind<?>> expected = new LinkedHashMap<>();
+		expected.put("/saved-by-editor", ENTRY_MODIFY);
+		expected.put("/modified", ENTRY_MODIFY);
+		expected.put("/created", ENTRY_CREATE);
+		expected.put("/deleted", ENTRY_DELETE);
+		assertEquals(expected, batch);
+		assertEquals(Arrays.asList(expected.keySet().toArray()), Arrays.asList(batch.keySet().toArray()));
+
+		assertNull(batches.poll(300, TimeUnit.MILLISECONDS));
+		assertEquals(3, fixture.getCoalescedCount());
+		assertEquals(1, fixture.getDroppedCount());
+		assertEquals(1, fixture.getBatchesCount());
+	}
+
+	@Test
+	public void testSubmitExpectBatchDeliveredDespiteConstantActivity() throws Exception {
+		long startedAt = System.currentTimeMillis();
+		// NOTE: Events keep coming more often than quiet window
+		while (batches.isEmpty() && System.currentTimeMillis() - startedAt < 5000) {
+			fixture.submit(ENTRY_MODIFY, "/busy");
+			Thread.sleep(20);
+		}
+
+		assertNotNull(batches.poll());
+		long delay = System.currentTimeMillis() - startedAt;
+		assertTrue("Batch delivered in " + delay + "ms", delay < 100 * (FileEventsCoalescer.MAX_DELAY_WINDOWS + 5));
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * PGPTool is a desktop application for pgp encryption/decryption
+ * Copyright (C) 2019 Sergey Karpushin
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ ******************************************************************************/
+package org.pgptool.gui.tools.fileswatcher;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import integr.org.pgptool.gui.TestTools;
+
+public class MultipleFilesWatcherTest {
+	private static final int FOLDERS = 1000;
+	private static final int FILES_PER_FOLDER = 10;
+	private static final long WAIT_TIMEOUT_MS = 10000;
+	private static final long MAX_LATENCY_MS = 1000;
+
+	private static String tempFolder;
+	private Set<String> deleted = ConcurrentHashMap.newKeySet();
+	private Set<String> modified = ConcurrentHashMap.newKeySet();
+	private MultipleFilesWatcher fixture;
+
+	/**
+	 * NOTE: Files are created once, each test deletes files in different folders
+	 */
+	@BeforeClass
+	public static void beforeAll() throws IOException {
+		tempFolder = TestTools.getTempDir();
+		for (int i = 0; i < FOLDERS; i++) {
+			for (int j = 0; j < FILES_PER_FOLDER; j++) {
+				FileUtils.write(buildFile(i, j), "content", "UTF-8");
+			}
+		}
+	}
+
+	@AfterClass
+	public static void afterAll() throws IOException {
+		FileUtils.deleteDirectory(new File(tempFolder));
+	}
+
+	@Before
+	public void setUp() {
+		fixture = new MultipleFilesWatcher((kind, file) -> {
+			if (ENTRY_DELETE.equals(kind)) {
+				deleted.add(file);
+			} else if (ENTRY_MODIFY.equals(kind)) {
+				modified.add(file);
+			}
+		}, "test", 0);
+	}
+
+	@After
+	public void tearDown() {
+		fixture.stopWatcher();
+	}
+
+	private static File buildFile(int folder, int file) {
+		return new File(tempFolder + File.separator + "folder" + folder + File.separator + "file" + file + ".txt");
+	}
+
+	private void watchAll() {
+		for (int i = 0; i < FOLDERS; i++) {
+			for (int j = 0; j < FILES_PER_FOLDER; j++) {
+				fixture.watchForFileChanges(buildFile(i, j).getAbsolutePath());
+			}
+		}
+	}
+
+	private static void waitFor(Set<String> events, int expectedCount) throws InterruptedException {
+		long timeoutAt = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+		while (events.size() < expectedCount && System.currentTimeMillis() < timeoutAt) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static long getWatcherThreadCpuTimeNs() {
+		ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+		long ret = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if ("FilesWatcher".equals(thread.getName())) {
+				ret += threadMxBean.getThreadCpuTime(thread.getId());
+			}
+		}
+		return ret;
+	}
+
+	@Test
+	public void testWatchManyFilesExpectNoCpuUsedWhenIdle() throws Exception {
+		watchAll();
+
+		long cpuBefore = getWatcherThreadCpuTimeNs();
+		Thread.sleep(1000);
+		long cpuUsedMs = (getWatcherThreadCpuTimeNs() - cpuBefore) / 1000000;
+
+		assertTrue("Watcher consumed " + cpuUsedMs + "ms of CPU while idle", cpuUsedMs < 50);
+	}
+
+	@Test
+	public void testWatchManyFilesExpectDeletionReported() throws Exception {
+		watchAll();
+
+		File file = buildFile(FOLDERS / 2, 0);
+		long startedAt = System.currentTimeMillis();
+		assertTrue(file.delete());
+		waitFor(deleted, 1);
+
+		assertEquals(1, deleted.size());
+		assertTrue(deleted.contains(file.getAbsolutePath()));
+		long latency = System.currentTimeMillis() - startedAt;
+		assertTrue("Deletion reported in " + latency + "ms", latency < MAX_LATENCY_MS);
+	}
+
+	@Test
+	public void testWatchManyFilesExpectFolderDeletionReportedForEachFile() throws Exception {
+		watchAll();
+
+		FileUtils.deleteDirectory(buildFile(7, 0).getParentFile());
+		waitFor(deleted, FILES_PER_FOLDER);
+
+		assertEquals(FILES_PER_FOLDER, deleted.size());
+		for (int j = 0; j < FILES_PER_FOLDER; j++) {
+			assertTrue(deleted.contains(buildFile(7, j).getAbsolutePath()));
+		}
+	}
+
+	@Test
+	public void testWatchFileInParentFolderExpectModificationReported() throws Exception {
+		watchAll();
+		// NOTE: Temp folder is watched only for removals at this point as a parent
+		File file = new File(tempFolder + File.separator + "parent-file.txt");
+		FileUtils.write(file, "content", "UTF-8");
+		fixture.watchForFileChanges(file.getAbsolutePath());
+
+		FileUtils.write(file, "changed content", "UTF-8");
+		waitFor(modified, 1);
+
+		assertTrue(modified.contains(file.getAbsolutePath()));
+	}
+
+	@Test
+	public void testStopWatchingFileExpectDeletionNotReported() throws Exception {
+		watchAll();
+		fixture.stopWatchingFile(buildFile(3, 0).getAbsolutePath());
+
+		assertTrue(buildFile(3, 0).delete());
+		assertTrue(buildFile(3, 1).delete());
+		waitFor(deleted, 1);
+		Thread.sleep(200);
+
+		assertEquals(1, deleted.size());
+		assertTrue(deleted.contains(buildFile(3, 1).getAbsolutePath()));
+	}
+}